@@ -0,0 +1,211 @@
+package boyuai.trainsys;
+
+import boyuai.trainsys.config.Config;
+import boyuai.trainsys.core.Session;
+import boyuai.trainsys.core.TrainSystem;
+import boyuai.trainsys.util.CommandParser;
+import boyuai.trainsys.util.ThreadOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命令服务器：在 TCP 上提供与控制台相同的命令
+ * 协议按行进行（UTF-8）：客户端每发送一行命令，服务器返回该命令的全部输出，并以只含一个 "." 的行结束；
+ * 输出中以 "." 开头的行在前面再加一个 "."，客户端读到以 "." 开头的其他行时去掉第一个 "."（与 SMTP 相同）。
+ * 一行命令最长 Config.MAX_COMMAND_LENGTH 个字符，超出的部分不会被保存，该命令以错误信息回复。
+ * 收到 exit 或连接断开时关闭连接。
+ * 每个连接在一个虚拟线程中处理，拥有自己的命令解析器和会话（初始未登录），所有连接共享同一个 TrainSystem。
+ * 命令的输出先写入该连接自己的缓冲区（见 ThreadOutput），命令执行完毕后一次写回客户端。
+ */
+public class CommandServer implements Closeable {
+
+    private static final byte[] END_OF_RESPONSE = ".\n".getBytes(StandardCharsets.UTF_8);
+    private static final int READ_BUFFER_CHARS = 512;  // 命令都很短，减小每个连接占用的内存
+
+    private final TrainSystem system;
+    private final ServerSocket serverSocket;
+    private final ThreadOutput output;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 构造函数，绑定端口并接管 System.out
+     * @param system 系统
+     * @param port 端口，为0时由系统分配
+     * @param backlog 等待接受的连接队列长度
+     */
+    public CommandServer(TrainSystem system, int port, int backlog) throws IOException {
+        this.system = system;
+        this.serverSocket = new ServerSocket(port, backlog);
+        this.output = new ThreadOutput(new FileOutputStream(FileDescriptor.out));
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 接受连接，直到服务器被关闭
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            connections.submit(() -> handle(socket));
+        }
+    }
+
+    /**
+     * 处理一个连接上的全部命令
+     */
+    private void handle(Socket socket) {
+        Session session = system.openSession();
+        CommandParser parser = new CommandParser(system, session);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        output.redirect(response);
+        try (socket;
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), READ_BUFFER_CHARS)) {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            LineReader lines = new LineReader(reader, Config.MAX_COMMAND_LENGTH);
+            String command;
+            while ((command = lines.readLine()) != null) {
+                command = command.trim();
+                int exitCode = 0;
+                if (lines.isTooLong()) {
+                    System.out.println("Command too long.");
+                } else if (command.isEmpty()) {
+                    continue;
+                } else if (command.equals("help")) {
+                    Main.printHelp();
+                } else {
+                    exitCode = parser.parseCommand(command);
+                    if (exitCode != 1) {
+                        system.sync();  // 命令的修改落盘后才算完成
+                    }
+                }
+                writeResponse(response.toByteArray(), out);
+                out.flush();
+                response.reset();
+                if (exitCode == 1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // 客户端异常断开，直接结束该连接
+        } finally {
+            output.redirect(null);
+            system.closeSession(session);
+        }
+    }
+
+    /**
+     * 写出一条命令的输出：以 "." 开头的行前面再加一个 "."，最后补全换行并写出结束行
+     */
+    private static void writeResponse(byte[] data, OutputStream out) throws IOException {
+        int lineStart = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n') {
+                writeLine(data, lineStart, i + 1, out);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < data.length) {
+            writeLine(data, lineStart, data.length, out);
+            out.write('\n');
+        }
+        out.write(END_OF_RESPONSE);
+    }
+
+    private static void writeLine(byte[] data, int from, int to, OutputStream out) throws IOException {
+        if (data[from] == '.') {
+            out.write('.');
+        }
+        out.write(data, from, to - from);
+    }
+
+    /**
+     * 按行读取命令，一行最多保存 maxLength 个字符：更长的行读到行尾为止，超出的部分直接丢弃
+     */
+    private static final class LineReader {
+        private final Reader in;
+        private final int maxLength;
+        private final StringBuilder line = new StringBuilder();
+        private boolean tooLong;
+
+        LineReader(Reader in, int maxLength) {
+            this.in = in;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * 读取下一行（不含行尾的 "\r\n" 或 "\n"）
+         * @return 读到的行，连接已结束且没有剩余字符时返回null
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (line.length() < maxLength) {
+                    line.append((char) c);
+                } else {
+                    tooLong = true;
+                }
+            }
+            if (c == -1 && line.length() == 0 && !tooLong) {
+                return null;
+            }
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+
+        /**
+         * 上一次读到的行是否超过了最大长度
+         */
+        boolean isTooLong() {
+            return tooLong;
+        }
+    }
+
+    /**
+     * 停止接受连接，并中断仍在处理的连接
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        try {
+            connections.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package boyuai.trainsys;
 
+import boyuai.trainsys.config.Config;
 import boyuai.trainsys.core.TrainSystem;
 import boyuai.trainsys.util.CommandParser;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
 
 /**
  * 主程序入口
+ * 无参数时从标准输入读取命令；参数为 server [端口] 时以命令服务器方式运行（见 CommandServer）
  */
 public class Main {
 
@@ -16,6 +20,10 @@ public class Main {
         System.out.println("当前工作目录: " + new File("").getAbsolutePath());
 
         TrainSystem system = new TrainSystem();
+        if (args.length > 0 && args[0].equals("server")) {
+            serve(system, args.length > 1 ? Integer.parseInt(args[1]) : Config.SERVER_PORT);
+            return;
+        }
         CommandParser parser = new CommandParser(system);
 
         Scanner scanner = new Scanner(System.in);
@@ -38,17 +46,40 @@ public class Main {
             if (parser.parseCommand(command) == 1) { // 读入到exit指令
                 break;
             }
+            system.sync();  // 命令的修改落盘后才算完成
         }
 
         // 关闭系统
         scanner.close();
+        system.close();
         System.out.println("系统已关闭");
     }
 
+    /**
+     * 以命令服务器方式运行，直到进程被终止
+     */
+    private static void serve(TrainSystem system, int port) {
+        try {
+            CommandServer server = new CommandServer(system, port, Config.SERVER_BACKLOG);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // 进程即将退出，忽略
+                }
+                system.close();
+            }));
+            System.out.println("命令服务器已启动，端口: " + server.getPort());
+            server.serve();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * 打印帮助信息
      */
-    private static void printHelp() {
+    static void printHelp() {
         System.out.println("可用命令 (需使用短参 -x value 形式):");
         System.out.println("  用户管理:");
         System.out.println("    register -i <用户ID> -u <用户名> -p <密码>   - 注册用户");
@@ -59,26 +90,33 @@ public class Main {
         System.out.println("    query_profile     -i <用户ID>                 - 查看用户资料");
         System.out.println();
         System.out.println("  运行计划(管理员):");
-        System.out.println("    add_train   -i <车次ID> -m <席位数> -n <站数> -s <站1/站2/...> -t <时长1/时长2/...> -p <票价1/票价2/...>   - 添加列车");
+        System.out.println("    add_train   -i <车次ID> -m <席位数> -n <站数> -s <站1/站2/...> -t <时长1/时长2/...> -p <票价1/票价2/...> [-x <始发时刻HH:MM>]   - 添加列车");
         System.out.println("    query_train -i <车次ID>                       - 查询列车信息");
+        System.out.println("    delete_train -i <车次ID>                      - 删除列车");
         System.out.println();
         System.out.println("  票务(管理员):");
         System.out.println("    release_ticket -i <车次ID> -d <日期>          - 发布车票");
         System.out.println("    expire_ticket  -i <车次ID> -d <日期>          - 使车票过期");
+        System.out.println("    query_order_stats                             - 查看购票流水线各分片的队列与时延");
         System.out.println();
         System.out.println("  购/退票:");
-        System.out.println("    query_remaining -i <车次ID> -d <日期> -f <出发站名>   - 查询余票");
-        System.out.println("    buy_ticket      -i <车次ID> -d <日期> -f <出发站名>   - 购票");
+        System.out.println("    query_remaining -i <车次ID> -d <日期> -f <出发站名> [-t <到达站名>]   - 查询余票");
+        System.out.println("    buy_ticket      -i <车次ID> -d <日期> -f <出发站名> [-t <到达站名>]   - 购票");
         System.out.println("    query_order                                      - 查询我的订单");
-        System.out.println("    refund_ticket   -i <车次ID> -d <日期> -f <出发站名>   - 退票");
+        System.out.println("    refund_ticket   -i <车次ID> -d <日期> -f <出发站名> [-t <到达站名>]   - 退票");
         System.out.println();
         System.out.println("  路线:");
         System.out.println("    display_route    -s <起点站名> -t <终点站名>           - 显示所有可达路线");
-        System.out.println("    query_best_path  -s <起点站名> -t <终点站名> -p <time or price>   - 查询最优路线");
+        System.out.println("    query_best_path  -s <起点站名> -t <终点站名> -p <time or price> [-m <dijkstra|bidirectional|alt>]   - 查询最优路线");
+        System.out.println("    query_best_path  -s <起点站名> -t <终点站名> -p <time or price> -k <条数>   - 查询前k条备选路线");
+        System.out.println("    query_earliest   -s <起点站名> -t <终点站名> -d <日期> -x <HH:MM>   - 按时刻表查询最早到达方案");
+        System.out.println("    query_journeys   -s <起点站名> -t <终点站名> -d <日期> -x <HH:MM>   - 查询时间、票价、换乘次数的全部最优方案");
         System.out.println("    query_accessibility -s <起点站名> -t <终点站名>        - 查询站点是否连通");
         System.out.println();
         System.out.println("  系统:");
         System.out.println("    help");
         System.out.println("    exit");
+        System.out.println();
+        System.out.println("  以 server [端口] 参数启动时，在 TCP 上按行接受以上命令，每条命令的输出以只含 \".\" 的行结束");
     }
 }
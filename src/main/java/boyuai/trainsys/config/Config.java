@@ -1,5 +1,7 @@
 package boyuai.trainsys.config;
 
+import boyuai.trainsys.datastructure.PageFile;
+
 /**
  * 系统配置常量
  */
@@ -20,5 +22,40 @@ public final class Config {
 
     public static final int BUSY_STATE_THRESHOLD = 1;
 
+    // 各管理器B+树数据文件的实现方式，改为 MAPPED 时使用分段内存映射
+    public static final PageFile.Type PAGE_FILE_TYPE = PageFile.Type.RANDOM_ACCESS;
+
+    // 余票与购票流水线按车次散列的分片数，每个分片有自己的锁和处理线程
+    public static final int INVENTORY_SHARDS = 8;
+
+    // 购票/退票流水线：每个分片的缓冲区容量（满时拒绝新请求）与每批最多处理的请求数
+    public static final int ORDER_QUEUE_CAPACITY = 8192;
+    public static final int ORDER_BATCH_SIZE = 1024;
+
+    // 是否按座位分配车票（行程中记录座位号），关闭时只按区间段计数
+    public static final boolean TRACK_SEAT_NUMBERS = false;
+
+    // 是否为最优路线查询预处理收缩层次（后台构建，适合站点很多、线路很少变化的情形）
+    public static final boolean USE_CONTRACTION_HIERARCHY = false;
+
+    // 是否为最优路线查询预先计算全源距离表（后台并行构建，适合站点不超过几千的情形）
+    public static final boolean USE_DISTANCE_TABLE = false;
+    // 距离表映射的数据文件，为null时放在堆外内存中
+    public static final String DISTANCE_TABLE_FILE = null;
+
+    // 显示路线时的上限：每条路线最多经过的区间数、最多列出的条数、最长搜索时间（毫秒）
+    public static final int MAX_ROUTE_HOPS = 16;
+    public static final int MAX_ROUTE_RESULTS = 100;
+    public static final long ROUTE_SEARCH_TIMEOUT_MS = 500;
+
+    // 最优路线查询结果缓存的容量（条目数）
+    public static final int PATH_CACHE_SIZE = 4096;
+
+    // 命令服务器的默认端口与等待接受的连接队列长度
+    public static final int SERVER_PORT = 7000;
+    public static final int SERVER_BACKLOG = 4096;
+    // 命令服务器接受的一行命令的最大长度（字符），超出的命令被拒绝
+    public static final int MAX_COMMAND_LENGTH = 4096;
+
     public static final int MAX_STRING_LENGTH = 50;
 }
@@ -0,0 +1,197 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.JourneyInfo;
+import boyuai.trainsys.util.Time;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+
+import java.util.Arrays;
+
+/**
+ * 基于连接扫描（Connection Scan Algorithm）的最早到达查询
+ * 每个运行计划的每个区间段是一条"连接"（出发站、到达站、出发时刻、到达时刻），
+ * 列车每天按相同时刻运行。连接按一天内的出发时刻排好序存放在平行数组中，
+ * 查询时从出发时刻起按时间顺序扫描一遍即可得到各站的最早到达时刻，无需优先级队列。
+ * 跨过午夜的连接折算到后一天的相应时刻，并记下折算的天数，
+ * 这样逐天扫描同一个数组时，出发时刻仍是全局有序的。
+ * 对象创建后不再改变，运行计划变化时需重新构建。
+ */
+public final class ConnectionScan {
+
+    public static final int SEARCH_DAYS = 3;       // 从出发日起最多向后搜索的天数
+    private static final int MINUTES_PER_DAY = 1440;
+
+    private final int stationCount;
+    private final int connectionCount;
+    // 连接按 (当天出发时刻, 车次, 区间段序号) 排序
+    private final int[] depStation;
+    private final int[] arrStation;
+    private final int[] depTime;    // 当天零点起的分钟数，[0, 1440)
+    private final int[] arrTime;    // 相对同一天零点，可能超过 1440
+    private final int[] train;
+    private final int[] dayShift;   // 该连接相对列车始发日推后了几天
+    private final TrainID[] trains;
+    private final int maxShift;
+
+    /**
+     * 由运行计划构建
+     * @param schedulers 全部运行计划
+     */
+    public ConnectionScan(SeqList<TrainScheduler> schedulers) {
+        int count = 0;
+        int maxStation = -1;
+        for (int i = 0; i < schedulers.length(); i++) {
+            TrainScheduler scheduler = schedulers.visit(i);
+            count += Math.max(0, scheduler.getPassingStationNum() - 1);
+            for (int j = 0; j < scheduler.getPassingStationNum(); j++) {
+                maxStation = Math.max(maxStation, scheduler.getStation(j).value());
+            }
+        }
+        this.stationCount = maxStation + 1;
+        this.connectionCount = count;
+        this.trains = new TrainID[schedulers.length()];
+
+        // 先生成未排序的连接，再按出发时刻求出排列
+        int[] rawDepStation = new int[count];
+        int[] rawArrStation = new int[count];
+        int[] rawDep = new int[count];
+        int[] rawArr = new int[count];
+        int[] rawTrain = new int[count];
+        int[] rawShift = new int[count];
+        int c = 0;
+        int shiftBound = 0;
+        for (int i = 0; i < schedulers.length(); i++) {
+            TrainScheduler scheduler = schedulers.visit(i);
+            trains[i] = scheduler.getTrainID();
+            int time = scheduler.getStartTime();
+            for (int j = 0; j + 1 < scheduler.getPassingStationNum(); j++) {
+                int shift = time / MINUTES_PER_DAY;
+                rawDepStation[c] = scheduler.getStation(j).value();
+                rawArrStation[c] = scheduler.getStation(j + 1).value();
+                rawDep[c] = time - shift * MINUTES_PER_DAY;
+                rawArr[c] = time + scheduler.getDuration(j) - shift * MINUTES_PER_DAY;
+                rawTrain[c] = i;
+                rawShift[c] = shift;
+                shiftBound = Math.max(shiftBound, shift);
+                time += scheduler.getDuration(j);
+                c++;
+            }
+        }
+        this.maxShift = shiftBound;
+
+        // 连接在 raw 数组中已按 (车次, 区间段序号) 排列，按出发时刻做一次稳定的计数排序即可
+        int[] bucket = new int[MINUTES_PER_DAY + 1];
+        for (int k = 0; k < count; k++) {
+            bucket[rawDep[k] + 1]++;
+        }
+        for (int t = 0; t < MINUTES_PER_DAY; t++) {
+            bucket[t + 1] += bucket[t];
+        }
+        this.depStation = new int[count];
+        this.arrStation = new int[count];
+        this.depTime = new int[count];
+        this.arrTime = new int[count];
+        this.train = new int[count];
+        this.dayShift = new int[count];
+        for (int k = 0; k < count; k++) {
+            int slot = bucket[rawDep[k]]++;
+            depStation[slot] = rawDepStation[k];
+            arrStation[slot] = rawArrStation[k];
+            depTime[slot] = rawDep[k];
+            arrTime[slot] = rawArr[k];
+            train[slot] = rawTrain[k];
+            dayShift[slot] = rawShift[k];
+        }
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * 查询在给定时刻之后从出发站出发、最早到达到达站的方案
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     * @param departAfter 最早出发时刻
+     * @return 方案，找不到时 isFound() 为false
+     */
+    public JourneyInfo earliestArrival(int departureStationID, int arrivalStationID, Time departAfter) {
+        SeqList<JourneyInfo.Leg> legs = new SeqList<>();
+        if (departureStationID < 0 || departureStationID >= stationCount
+                || arrivalStationID < 0 || arrivalStationID >= stationCount
+                || departureStationID == arrivalStationID) {
+            return new JourneyInfo(legs);
+        }
+
+        int start = departAfter.getHour() * 60 + departAfter.getMin();
+        int serviceDays = SEARCH_DAYS + maxShift;
+        int[] earliest = new int[stationCount];          // 各站最早到达时刻（相对出发日零点）
+        int[] inConnection = new int[stationCount];      // 到达各站所乘坐的连接（编码为 天 * 连接数 + 下标）
+        int[] boardedAt = new int[trains.length * serviceDays];  // 各车次各始发日的上车连接，-1表示未上车
+        Arrays.fill(earliest, Integer.MAX_VALUE);
+        Arrays.fill(inConnection, -1);
+        Arrays.fill(boardedAt, -1);
+        earliest[departureStationID] = start;
+
+        int first = lowerBound(start);
+        scan:
+        for (int day = 0; day < SEARCH_DAYS; day++) {
+            int offset = day * MINUTES_PER_DAY;
+            for (int k = day == 0 ? first : 0; k < connectionCount; k++) {
+                int dep = depTime[k] + offset;
+                if (dep >= earliest[arrivalStationID]) {
+                    break scan;  // 之后的连接都不可能更早到达
+                }
+                int trip = train[k] * serviceDays + day - dayShift[k] + maxShift;
+                if (boardedAt[trip] < 0) {
+                    if (earliest[depStation[k]] > dep) {
+                        continue;  // 既不在车上，也赶不上这趟车
+                    }
+                    boardedAt[trip] = day * connectionCount + k;
+                }
+                int arr = arrTime[k] + offset;
+                if (arr < earliest[arrStation[k]]) {
+                    earliest[arrStation[k]] = arr;
+                    inConnection[arrStation[k]] = day * connectionCount + k;
+                }
+            }
+        }
+        if (inConnection[arrivalStationID] < 0) {
+            return new JourneyInfo(legs);
+        }
+
+        // 从到达站倒推：每次找到到达所乘的连接，以及这趟车的上车连接
+        Time midnight = new Time(0, 0, departAfter.getDate().getMon(), departAfter.getDate().getMday());
+        int station = arrivalStationID;
+        while (station != departureStationID) {
+            int alight = inConnection[station];
+            int k = alight % connectionCount;
+            int day = alight / connectionCount;
+            int board = boardedAt[train[k] * serviceDays + day - dayShift[k] + maxShift];
+            int b = board % connectionCount;
+            int boardOffset = board / connectionCount * MINUTES_PER_DAY;
+            legs.insert(0, new JourneyInfo.Leg(trains[train[k]], new StationID(depStation[b]), new StationID(station),
+                    midnight.addMinutes(depTime[b] + boardOffset), midnight.addMinutes(arrTime[k] + day * MINUTES_PER_DAY)));
+            station = depStation[b];
+        }
+        return new JourneyInfo(legs);
+    }
+
+    /**
+     * 第一个出发时刻不早于 time 的连接下标
+     */
+    private int lowerBound(int time) {
+        int low = 0;
+        int high = connectionCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (depTime[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
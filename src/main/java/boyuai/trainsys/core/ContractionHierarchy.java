@@ -0,0 +1,399 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.PathInfo;
+
+import java.util.Arrays;
+
+/**
+ * 收缩层次（Contraction Hierarchies），用于某一度量（价格或时间）下的最短路查询
+ * 预处理时按"边差"从小到大依次收缩顶点：收缩 v 时，对每对未收缩的邻居 u→v→w，
+ * 若找不到不经过 v 且不长于 u→v→w 的路径（见证路径），就添加捷径 u→w。
+ * 顶点的收缩次序即其层级。查询时从起点沿"向上"的边（通往更高层级）做正向 Dijkstra，
+ * 从终点沿反向的向上边做反向 Dijkstra，两边在某个顶点相遇即得到最短路；
+ * 搜索空间只有很小一部分顶点，与站点总数基本无关。捷径记录了它所替代的两条边，用于还原完整路径。
+ * 对象创建后不再改变，可以被多个线程同时查询。
+ */
+public final class ContractionHierarchy {
+
+    // 见证搜索最多确定的顶点数：估计优先级时用较小的上限，真正收缩时用较大的上限
+    private static final int SIMULATE_SETTLE_LIMIT = 50;
+    private static final int CONTRACT_SETTLE_LIMIT = 500;
+
+    private final RailwaySnapshot snapshot;
+    private final int type;
+    private final int vertexCount;
+
+    // 全部边（原始边与捷径），捷径的 child1/child2 是它替代的两条边，原始边为-1
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final long[] edgeWeight;
+    private final int[] child1;
+    private final int[] child2;
+
+    // 向上图：fwd 为各顶点通往更高层级的出边，bwd 为从更高层级顶点进入的入边
+    private final int[] fwdOffset;
+    private final int[] fwdEdge;
+    private final int[] bwdOffset;
+    private final int[] bwdEdge;
+
+    private static final ThreadLocal<SearchWorkspace> FORWARD = ThreadLocal.withInitial(SearchWorkspace::new);
+    private static final ThreadLocal<SearchWorkspace> BACKWARD = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    /**
+     * 可增长的边下标列表，预处理时作为每个顶点的出边表、入边表
+     */
+    private static final class IntList {
+        int[] items = new int[4];
+        int size;
+
+        void add(int x) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = x;
+        }
+    }
+
+    /**
+     * 预处理过程中的可变状态
+     */
+    private static final class Builder {
+        final int n;
+        int edgeCount;
+        int[] from = new int[16];
+        int[] to = new int[16];
+        long[] weight = new long[16];
+        int[] c1 = new int[16];
+        int[] c2 = new int[16];
+        final IntList[] out;
+        final IntList[] in;
+        final boolean[] contracted;
+        final int[] contractedNeighbors;
+        final int[] rank;
+        final SearchWorkspace witness = new SearchWorkspace();
+
+        Builder(int n) {
+            this.n = n;
+            this.out = new IntList[n];
+            this.in = new IntList[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new IntList();
+                in[v] = new IntList();
+            }
+            this.contracted = new boolean[n];
+            this.contractedNeighbors = new int[n];
+            this.rank = new int[n];
+        }
+
+        int addEdge(int u, int v, long w, int first, int second) {
+            if (edgeCount == from.length) {
+                int capacity = edgeCount * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                c1 = Arrays.copyOf(c1, capacity);
+                c2 = Arrays.copyOf(c2, capacity);
+            }
+            from[edgeCount] = u;
+            to[edgeCount] = v;
+            weight[edgeCount] = w;
+            c1[edgeCount] = first;
+            c2[edgeCount] = second;
+            out[u].add(edgeCount);
+            in[v].add(edgeCount);
+            return edgeCount++;
+        }
+
+        /**
+         * 见证搜索：在未收缩的顶点中，从 source 出发、不经过 skip 做 Dijkstra，
+         * 距离超过 limit 或确定的顶点数超过 settleLimit 即停止，结果留在 witness 工作区中
+         */
+        void witnessSearch(int source, int skip, long limit, int settleLimit) {
+            SearchWorkspace ws = witness;
+            ws.begin(n);
+            ws.setDistance(source, 0, -1);
+            ws.heap.offer(source, 0);
+            int settled = 0;
+            while (!ws.heap.isEmpty()) {
+                int u = ws.heap.deQueue();
+                long d = ws.distance[u];
+                if (d > limit || ++settled > settleLimit) {
+                    break;
+                }
+                IntList edges = out[u];
+                for (int i = 0; i < edges.size; i++) {
+                    int e = edges.items[i];
+                    int v = to[e];
+                    if (contracted[v] || v == skip) continue;
+                    long nd = d + weight[e];
+                    if (nd < ws.distance(v)) {
+                        ws.setDistance(v, nd, u);
+                        ws.heap.offer(v, nd);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 收缩（或模拟收缩）顶点 v
+         * @param apply 是否真正添加捷径
+         * @return 需要添加的捷径数
+         */
+        int contract(int v, boolean apply) {
+            int shortcuts = 0;
+            IntList ins = in[v];
+            IntList outs = out[v];
+            long maxOut = 0;
+            for (int j = 0; j < outs.size; j++) {
+                int e = outs.items[j];
+                if (!contracted[to[e]] && to[e] != v) maxOut = Math.max(maxOut, weight[e]);
+            }
+            // 每个入邻居 u 只做一次见证搜索，再逐个检查出邻居 w
+            for (int i = 0; i < ins.size; i++) {
+                int inEdge = ins.items[i];
+                int u = from[inEdge];
+                if (contracted[u] || u == v) continue;
+                witnessSearch(u, v, weight[inEdge] + maxOut, apply ? CONTRACT_SETTLE_LIMIT : SIMULATE_SETTLE_LIMIT);
+                for (int j = 0; j < outs.size; j++) {
+                    int outEdge = outs.items[j];
+                    int w = to[outEdge];
+                    if (contracted[w] || w == v || w == u) continue;
+                    long via = weight[inEdge] + weight[outEdge];
+                    if (witness.distance(w) > via) {
+                        shortcuts++;
+                        if (apply) {
+                            addEdge(u, w, via, inEdge, outEdge);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * 收缩次序的优先级：边差加上已收缩的邻居数，越小越先收缩
+         */
+        long priority(int v) {
+            int degree = 0;
+            for (int i = 0; i < in[v].size; i++) {
+                if (!contracted[from[in[v].items[i]]]) degree++;
+            }
+            for (int i = 0; i < out[v].size; i++) {
+                if (!contracted[to[out[v].items[i]]]) degree++;
+            }
+            return contract(v, false) - degree + contractedNeighbors[v];
+        }
+    }
+
+    private ContractionHierarchy(RailwaySnapshot snapshot, int type, Builder builder) {
+        this.snapshot = snapshot;
+        this.type = type;
+        this.vertexCount = builder.n;
+        int m = builder.edgeCount;
+        this.edgeFrom = Arrays.copyOf(builder.from, m);
+        this.edgeTo = Arrays.copyOf(builder.to, m);
+        this.edgeWeight = Arrays.copyOf(builder.weight, m);
+        this.child1 = Arrays.copyOf(builder.c1, m);
+        this.child2 = Arrays.copyOf(builder.c2, m);
+
+        int[] rank = builder.rank;
+        this.fwdOffset = new int[vertexCount + 1];
+        this.bwdOffset = new int[vertexCount + 1];
+        for (int e = 0; e < m; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                fwdOffset[edgeFrom[e] + 1]++;
+            } else {
+                bwdOffset[edgeTo[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            fwdOffset[v + 1] += fwdOffset[v];
+            bwdOffset[v + 1] += bwdOffset[v];
+        }
+        this.fwdEdge = new int[fwdOffset[vertexCount]];
+        this.bwdEdge = new int[bwdOffset[vertexCount]];
+        int[] fwdNext = Arrays.copyOf(fwdOffset, vertexCount);
+        int[] bwdNext = Arrays.copyOf(bwdOffset, vertexCount);
+        for (int e = 0; e < m; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                fwdEdge[fwdNext[edgeFrom[e]]++] = e;
+            } else {
+                bwdEdge[bwdNext[edgeTo[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * 对运行图快照做预处理
+     * @param snapshot 运行图快照
+     * @param type 0-按价格，1-按时间
+     * @return 收缩层次
+     */
+    public static ContractionHierarchy build(RailwaySnapshot snapshot, int type) {
+        int n = snapshot.vertexCount();
+        Builder builder = new Builder(n);
+        for (int u = 0; u < n; u++) {
+            for (int e = snapshot.begin(u); e < snapshot.end(u); e++) {
+                if (snapshot.target(e) != u) {
+                    builder.addEdge(u, snapshot.target(e), snapshot.weight(e, type), -1, -1);
+                }
+            }
+        }
+
+        // 按优先级依次收缩，出队时重新计算优先级（惰性更新），仍是最小的才真正收缩
+        IndexedPriorityQueue queue = new IndexedPriorityQueue(n);
+        for (int v = 0; v < n; v++) {
+            queue.offer(v, builder.priority(v));
+        }
+        int order = 0;
+        while (!queue.isEmpty()) {
+            int v = queue.deQueue();
+            long p = builder.priority(v);
+            if (!queue.isEmpty() && p > queue.priorityOf(queue.peek())) {
+                queue.offer(v, p);
+                continue;
+            }
+            builder.contract(v, true);
+            builder.contracted[v] = true;
+            builder.rank[v] = order++;
+            for (int i = 0; i < builder.in[v].size; i++) {
+                builder.contractedNeighbors[builder.from[builder.in[v].items[i]]]++;
+            }
+            for (int i = 0; i < builder.out[v].size; i++) {
+                builder.contractedNeighbors[builder.to[builder.out[v].items[i]]]++;
+            }
+        }
+        return new ContractionHierarchy(snapshot, type, builder);
+    }
+
+    /**
+     * 构建时所用的运行图快照
+     */
+    public RailwaySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * 捷径在内的总边数
+     */
+    public int edgeCount() {
+        return edgeFrom.length;
+    }
+
+    /**
+     * 顶点是否在层次中
+     */
+    public boolean contains(int v) {
+        return v >= 0 && v < vertexCount;
+    }
+
+    /**
+     * 查询最短路：双向向上搜索，某一方向队首距离不小于当前最优值时停止该方向
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     * @return 查询结果，不可达时 isFound() 为false
+     */
+    public PathInfo query(int departureStationID, int arrivalStationID) {
+        if (departureStationID == arrivalStationID) {
+            SeqList<Integer> path = new SeqList<>();
+            path.pushBack(departureStationID);
+            return new PathInfo(path, 0, type);
+        }
+        if (!contains(departureStationID) || !contains(arrivalStationID)) {
+            return PathInfo.notFound(type);
+        }
+        SearchWorkspace forward = FORWARD.get();
+        SearchWorkspace backward = BACKWARD.get();
+        forward.begin(vertexCount);
+        backward.begin(vertexCount);
+        forward.setDistance(departureStationID, 0, -1);
+        forward.heap.offer(departureStationID, 0);
+        backward.setDistance(arrivalStationID, 0, -1);
+        backward.heap.offer(arrivalStationID, 0);
+
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+        boolean forwardDone = false;
+        boolean backwardDone = false;
+        while (!forwardDone || !backwardDone) {
+            if (!forwardDone) {
+                if (forward.heap.isEmpty() || forward.heap.priorityOf(forward.heap.peek()) >= best) {
+                    forwardDone = true;
+                } else {
+                    int u = forward.heap.deQueue();
+                    long through = backward.distance(u);
+                    if (through != Long.MAX_VALUE && forward.distance[u] + through < best) {
+                        best = forward.distance[u] + through;
+                        meet = u;
+                    }
+                    relax(forward, u, fwdOffset, fwdEdge, edgeTo);
+                }
+            }
+            if (!backwardDone) {
+                if (backward.heap.isEmpty() || backward.heap.priorityOf(backward.heap.peek()) >= best) {
+                    backwardDone = true;
+                } else {
+                    int u = backward.heap.deQueue();
+                    long through = forward.distance(u);
+                    if (through != Long.MAX_VALUE && backward.distance[u] + through < best) {
+                        best = backward.distance[u] + through;
+                        meet = u;
+                    }
+                    relax(backward, u, bwdOffset, bwdEdge, edgeFrom);
+                }
+            }
+        }
+        if (meet < 0) {
+            return PathInfo.notFound(type);
+        }
+
+        // 两侧分别回溯到相遇点，再把捷径展开成原始边
+        SeqList<Integer> path = new SeqList<>();
+        path.pushBack(departureStationID);
+        SeqList<Integer> forwardEdges = new SeqList<>();
+        for (int v = meet; forward.prev[v] >= 0; v = edgeFrom[forward.prev[v]]) {
+            forwardEdges.insert(0, forward.prev[v]);
+        }
+        for (int i = 0; i < forwardEdges.length(); i++) {
+            unpack(forwardEdges.visit(i), path);
+        }
+        for (int v = meet; backward.prev[v] >= 0; v = edgeTo[backward.prev[v]]) {
+            unpack(backward.prev[v], path);
+        }
+        return new PathInfo(path, best, type);
+    }
+
+    /**
+     * 沿向上图松弛顶点 u 的边，prev 记录到达各顶点所用的边
+     */
+    private void relax(SearchWorkspace ws, int u, int[] offset, int[] edges, int[] endpoint) {
+        long base = ws.distance[u];
+        for (int i = offset[u]; i < offset[u + 1]; i++) {
+            int e = edges[i];
+            int v = endpoint[e];
+            long d = base + edgeWeight[e];
+            if (d < ws.distance(v)) {
+                ws.setDistance(v, d, e);
+                ws.heap.offer(v, d);
+            }
+        }
+    }
+
+    /**
+     * 把边 e 展开为原始边，依次追加终点（不含起点）
+     */
+    private void unpack(int e, SeqList<Integer> path) {
+        if (child1[e] < 0) {
+            path.pushBack(edgeTo[e]);
+            return;
+        }
+        unpack(child1[e], path);
+        unpack(child2[e], path);
+    }
+}
@@ -0,0 +1,177 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.PathInfo;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 全源最短路距离表
+ * 对每个起点各做一次 Dijkstra（按价格、按时间各一遍），结果存放在 n * n 的 int 矩阵中：
+ * 距离矩阵的 [s * n + t] 为 s 到 t 的最短代价（不可达为-1），
+ * 前驱矩阵的 [s * n + t] 为以 s 为根的最短路树中 t 的前驱，查询时由它回溯出路径。
+ * 用前驱而不是下一跳，是因为票价可以为 0：零代价的环上，逐站查下一跳可能绕圈。
+ * 矩阵放在堆外（直接缓冲区），也可以映射到磁盘文件；各起点互不依赖，
+ * 构建时按起点区间拆成 ForkJoin 任务并行计算。
+ * 对象创建后不再改变，可以被多个线程同时读取。适合站点数不超过几千的运行图。
+ */
+public final class DistanceTable {
+
+    public static final int MAX_STATIONS = 8000;   // n * n * 4 字节须能放进一个缓冲区
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final RailwaySnapshot snapshot;
+    private final int n;
+    private final IntBuffer[] dist = new IntBuffer[2];  // 按类型（0-价格，1-时间）
+    private final IntBuffer[] prev = new IntBuffer[2];
+
+    private DistanceTable(RailwaySnapshot snapshot, String filename) {
+        this.snapshot = snapshot;
+        this.n = snapshot.vertexCount();
+        long bytes = (long) n * n * Integer.BYTES;
+        if (filename == null) {
+            for (int type = 0; type < 2; type++) {
+                dist[type] = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+                prev[type] = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        } else {
+            // 四个矩阵依次存放在同一个文件中，文件在映射建立后即可关闭
+            try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+                 FileChannel channel = file.getChannel()) {
+                file.setLength(bytes * 4);
+                for (int type = 0; type < 2; type++) {
+                    dist[type] = channel.map(FileChannel.MapMode.READ_WRITE, bytes * (2 * type), bytes)
+                            .order(ByteOrder.nativeOrder()).asIntBuffer();
+                    prev[type] = channel.map(FileChannel.MapMode.READ_WRITE, bytes * (2 * type + 1), bytes)
+                            .order(ByteOrder.nativeOrder()).asIntBuffer();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 并行构建距离表
+     * @param snapshot 运行图快照，顶点数不超过 MAX_STATIONS
+     * @param pool 执行构建任务的线程池
+     * @param filename 映射的数据文件，为null时放在堆外内存中
+     * @return 距离表
+     */
+    public static DistanceTable build(RailwaySnapshot snapshot, ForkJoinPool pool, String filename) {
+        if (snapshot.vertexCount() > MAX_STATIONS) {
+            throw new IllegalArgumentException("Too many stations for a distance table: " + snapshot.vertexCount());
+        }
+        DistanceTable table = new DistanceTable(snapshot, filename);
+        pool.invoke(table.new BuildTask(0, table.n));
+        return table;
+    }
+
+    /**
+     * 计算 [from, to) 区间内各起点的行，区间较大时一分为二
+     */
+    private final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        BuildTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SOURCES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BuildTask(from, mid), new BuildTask(mid, to));
+                return;
+            }
+            SearchWorkspace ws = new SearchWorkspace();
+            for (int s = from; s < to; s++) {
+                for (int type = 0; type < 2; type++) {
+                    fillRow(ws, s, type);
+                }
+            }
+        }
+    }
+
+    /**
+     * 从 source 出发做一遍 Dijkstra，写入两个矩阵的第 source 行
+     */
+    private void fillRow(SearchWorkspace ws, int source, int type) {
+        ws.begin(n);
+        IndexedPriorityQueue heap = ws.heap;
+        ws.setDistance(source, 0, source);
+        heap.offer(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.deQueue();
+            long base = ws.distance[u];
+            for (int e = snapshot.begin(u); e < snapshot.end(u); e++) {
+                int v = snapshot.target(e);
+                long d = base + snapshot.weight(e, type);
+                if (d < ws.distance(v)) {
+                    ws.setDistance(v, d, u);
+                    heap.offer(v, d);
+                }
+            }
+        }
+        int row = source * n;
+        for (int v = 0; v < n; v++) {
+            long d = ws.distance(v);
+            if (d == Long.MAX_VALUE) {
+                dist[type].put(row + v, -1);
+                prev[type].put(row + v, -1);
+            } else {
+                dist[type].put(row + v, (int) Math.min(d, Integer.MAX_VALUE));  // 超出 int 的代价按上限保存
+                prev[type].put(row + v, ws.prev[v]);
+            }
+        }
+    }
+
+    /**
+     * 查表得到最短路径
+     * @param departureStationID 出发站ID，须在表中
+     * @param arrivalStationID 到达站ID，须在表中
+     * @param type 0-按价格最优，1-按时间最优
+     * @return 查询结果，不可达时 isFound() 为false
+     */
+    public PathInfo query(int departureStationID, int arrivalStationID, int type) {
+        int row = departureStationID * n;
+        int total = dist[type].get(row + arrivalStationID);
+        if (total < 0) {
+            return PathInfo.notFound(type);
+        }
+        SeqList<Integer> path = new SeqList<>();
+        for (int u = arrivalStationID; u != departureStationID; u = prev[type].get(row + u)) {
+            path.insert(0, u);
+        }
+        path.insert(0, departureStationID);
+        return new PathInfo(path, total, type);
+    }
+
+    /**
+     * 查表得到最短代价，不可达时返回-1
+     */
+    public int distance(int departureStationID, int arrivalStationID, int type) {
+        return dist[type].get(departureStationID * n + arrivalStationID);
+    }
+
+    public boolean contains(int stationID) {
+        return stationID >= 0 && stationID < n;
+    }
+
+    public RailwaySnapshot getSnapshot() {
+        return snapshot;
+    }
+}
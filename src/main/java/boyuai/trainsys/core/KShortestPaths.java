@@ -0,0 +1,239 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
+import boyuai.trainsys.datastructure.PriorityQueue;
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.PathInfo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 前 k 条最短的简单路径（Yen 算法）
+ * 第 i 条路径确定后，依次以它上面的每个站点为偏离点（spur）：保留从出发站到偏离点的前缀，
+ * 屏蔽前缀上的其余站点以及已有路径在同一前缀之后走过的下一站，再求偏离点到到达站的最短路，
+ * 拼成一条候选路径；所有候选中代价最小的即为第 i + 1 条。
+ * 实现上的几点：
+ * 1. 屏蔽只体现在搜索时跳过被屏蔽的站点和边，不复制运行图；
+ * 2. 事先求出各站到到达站的最短距离（不屏蔽时），屏蔽只会让距离变大，因此它是一致的下界，
+ *    偏离点的搜索用它做 A*，只会确定很少的顶点；
+ * 3. 第 i 条路径是从第 j 个站点偏离得到的，则它在第 j 个站点之前与上一条路径相同，
+ *    以这些站点为偏离点得到的候选都已生成过，只需从第 j 个站点开始（Lawler 的改进）。
+ * 同一对站点之间有多趟车次时按最便宜（最快）的一趟计算，结果中的路径按站点序列互不相同。
+ * 搜索有截止时间：每次偏离点搜索之前检查，超时后只返回已确定的路径。
+ */
+final class KShortestPaths {
+
+    private static final long INF = ShortestPathTree.INF;
+
+    private final RailwaySnapshot graph;
+    private final SearchWorkspace ws;
+    private final int arrival;
+    private final int type;
+    private final long deadline;        // System.nanoTime() 意义下的截止时刻
+    private boolean timedOut;
+    private final long[] toArrival;     // 各站到到达站的最短距离（不屏蔽）
+    private final boolean[] blocked;    // 被屏蔽的站点
+    private int[] blockedNext = new int[4];  // 偏离点处被屏蔽的下一站
+    private int blockedNextCount;
+
+    /**
+     * 一条路径：站点序列、到每个站点的累计代价，以及生成它时的偏离位置
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final int[] stations;
+        final long[] prefixCost;
+        final int deviation;
+
+        Candidate(int[] stations, long[] prefixCost, int deviation) {
+            this.stations = stations;
+            this.prefixCost = prefixCost;
+            this.deviation = deviation;
+        }
+
+        long cost() {
+            return prefixCost[prefixCost.length - 1];
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int c = Long.compare(cost(), other.cost());
+            return c != 0 ? c : Integer.compare(stations.length, other.stations.length);
+        }
+    }
+
+    private KShortestPaths(RailwaySnapshot graph, SearchWorkspace ws, int arrival, int type, long timeoutMillis) {
+        this.graph = graph;
+        this.ws = ws;
+        this.arrival = arrival;
+        this.type = type;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.toArrival = ShortestPathTree.to(graph, arrival, type);
+        this.blocked = new boolean[graph.vertexCount()];
+    }
+
+    /**
+     * 求出发站到到达站的前 k 条最短简单路径
+     * @param graph 运行图快照
+     * @param ws 搜索工作区
+     * @param departure 出发站ID，须在快照中
+     * @param arrival 到达站ID，须在快照中
+     * @param k 条数
+     * @param type 0-按价格，1-按时间
+     * @param timeoutMillis 从现在起允许搜索的毫秒数
+     * @return 按代价从小到大排列的路径，不足 k 条或超时时返回已确定的全部
+     */
+    static SeqList<PathInfo> find(RailwaySnapshot graph, SearchWorkspace ws, int departure, int arrival,
+                                  int k, int type, long timeoutMillis) {
+        SeqList<PathInfo> result = new SeqList<>();
+        if (k <= 0) {
+            return result;
+        }
+        KShortestPaths search = new KShortestPaths(graph, ws, arrival, type, timeoutMillis);
+        Candidate first = search.spur(departure, null, 0);
+        if (first == null) {
+            return result;
+        }
+
+        SeqList<Candidate> accepted = new SeqList<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(Arrays.toString(first.stations));
+        Candidate current = first;
+        while (true) {
+            accepted.pushBack(current);
+            result.pushBack(search.toPathInfo(current));
+            if (result.length() == k) {
+                break;
+            }
+            search.expand(current, accepted, candidates, seen);
+            // 超时时候选集不完整，其中最小者未必是下一条最短路，不再取用
+            if (search.timedOut || candidates.isEmpty()) {
+                break;
+            }
+            current = candidates.deQueue();
+        }
+        return result;
+    }
+
+    /**
+     * 以 path 上第 deviation 个及之后的站点为偏离点生成候选路径
+     */
+    private void expand(Candidate path, SeqList<Candidate> accepted, PriorityQueue<Candidate> candidates,
+                        Set<String> seen) {
+        int[] stations = path.stations;
+        for (int i = path.deviation; i < stations.length - 1; i++) {
+            if (System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                return;
+            }
+            // 已有路径中前缀与 stations[0..i] 相同者，屏蔽其第 i + 1 站
+            blockedNextCount = 0;
+            for (int j = 0; j < accepted.length(); j++) {
+                int[] other = accepted.visit(j).stations;
+                if (other.length > i + 1 && samePrefix(stations, other, i + 1)) {
+                    blockNext(other[i + 1]);
+                }
+            }
+            // 屏蔽前缀上偏离点以外的站点，保证路径不重复经过站点
+            for (int j = 0; j < i; j++) {
+                blocked[stations[j]] = true;
+            }
+            Candidate candidate = spur(stations[i], path, i);
+            for (int j = 0; j < i; j++) {
+                blocked[stations[j]] = false;
+            }
+            if (candidate != null && seen.add(Arrays.toString(candidate.stations))) {
+                candidates.enQueue(candidate);
+            }
+        }
+    }
+
+    private static boolean samePrefix(int[] a, int[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    private void blockNext(int v) {
+        if (blockedNextCount == blockedNext.length) {
+            blockedNext = Arrays.copyOf(blockedNext, blockedNextCount * 2);
+        }
+        blockedNext[blockedNextCount++] = v;
+    }
+
+    private boolean isBlockedNext(int v) {
+        for (int i = 0; i < blockedNextCount; i++) {
+            if (blockedNext[i] == v) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 从偏离点出发做带屏蔽的 A*，并与 root 的前缀拼接
+     * @param spurNode 偏离点
+     * @param root 提供前缀的路径，为null时表示从出发站求第一条路径
+     * @param index 偏离点在 root 中的下标
+     * @return 拼接后的路径，不可达时返回null
+     */
+    private Candidate spur(int spurNode, Candidate root, int index) {
+        if (toArrival[spurNode] == INF) {
+            return null;
+        }
+        ws.begin(graph.vertexCount());
+        IndexedPriorityQueue heap = ws.heap;
+        ws.setDistance(spurNode, 0, spurNode);
+        heap.offer(spurNode, toArrival[spurNode]);
+        boolean found = false;
+        while (!heap.isEmpty()) {
+            int u = heap.deQueue();
+            if (u == arrival) {
+                found = true;
+                break;
+            }
+            long base = ws.distance[u];
+            for (int e = graph.begin(u); e < graph.end(u); e++) {
+                int v = graph.target(e);
+                if (blocked[v] || toArrival[v] == INF || (u == spurNode && isBlockedNext(v))) {
+                    continue;
+                }
+                long d = base + graph.weight(e, type);
+                if (d < ws.distance(v)) {
+                    ws.setDistance(v, d, u);
+                    heap.offer(v, d + toArrival[v]);
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+
+        int spurLength = 1;
+        for (int u = arrival; u != spurNode; u = ws.prev[u]) {
+            spurLength++;
+        }
+        int[] stations = new int[index + spurLength];
+        long[] prefixCost = new long[index + spurLength];
+        long rootCost = 0;
+        if (root != null) {
+            System.arraycopy(root.stations, 0, stations, 0, index);
+            System.arraycopy(root.prefixCost, 0, prefixCost, 0, index);
+            rootCost = root.prefixCost[index];
+        }
+        for (int u = arrival, i = stations.length - 1; i >= index; u = ws.prev[u], i--) {
+            stations[i] = u;
+            prefixCost[i] = rootCost + ws.distance[u];
+        }
+        return new Candidate(stations, prefixCost, index);
+    }
+
+    private PathInfo toPathInfo(Candidate candidate) {
+        SeqList<Integer> stations = new SeqList<>();
+        for (int station : candidate.stations) {
+            stations.pushBack(station);
+        }
+        return new PathInfo(stations, candidate.cost(), type);
+    }
+}
@@ -0,0 +1,105 @@
+package boyuai.trainsys.core;
+
+import java.util.Arrays;
+
+/**
+ * ALT 搜索所用的路标距离表
+ * 选出若干路标 L，预先求出每个顶点到 L、L 到每个顶点的距离。由三角不等式，
+ * dist(v, t) >= dist(L, t) - dist(L, v) 且 dist(v, t) >= dist(v, L) - dist(t, L)，
+ * 取所有路标中最大的一个作为 A* 的下界，它是一致的（consistent），每个顶点只需确定一次。
+ * 路标用"最远点"策略选取：每次选离已有路标最远（或不可达）的顶点。
+ * 对象创建后不再改变，可以被多个线程同时读取。
+ */
+public final class LandmarkTable {
+
+    public static final int DEFAULT_LANDMARKS = 8;
+    private static final long INF = ShortestPathTree.INF;
+
+    private final RailwaySnapshot snapshot;
+    private final int type;
+    private final int[] landmarks;
+    private final long[][] fromLandmark;  // fromLandmark[i][v] = dist(L_i, v)
+    private final long[][] toLandmark;    // toLandmark[i][v] = dist(v, L_i)
+
+    private LandmarkTable(RailwaySnapshot snapshot, int type, int[] landmarks,
+                          long[][] fromLandmark, long[][] toLandmark) {
+        this.snapshot = snapshot;
+        this.type = type;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * 选取路标并计算距离表
+     * @param snapshot 运行图快照
+     * @param type 0-按价格，1-按时间
+     * @param count 路标数
+     * @return 距离表
+     */
+    public static LandmarkTable build(RailwaySnapshot snapshot, int type, int count) {
+        int n = snapshot.vertexCount();
+        int[] chosen = new int[count];
+        long[][] from = new long[count][];
+        long[][] to = new long[count][];
+        long[] nearest = new long[n];  // 各顶点到已选路标的最小（往返）距离
+        Arrays.fill(nearest, INF);
+
+        // 第一个路标取出边最多的顶点
+        int next = -1;
+        for (int v = 0; v < n; v++) {
+            if (next < 0 || degree(snapshot, v) > degree(snapshot, next)) next = v;
+        }
+        int k = 0;
+        while (k < count && next >= 0) {
+            chosen[k] = next;
+            from[k] = ShortestPathTree.from(snapshot, next, type);
+            to[k] = ShortestPathTree.to(snapshot, next, type);
+            for (int v = 0; v < n; v++) {
+                long round = from[k][v] == INF || to[k][v] == INF ? INF : from[k][v] + to[k][v];
+                if (round < nearest[v]) nearest[v] = round;
+            }
+            k++;
+            // 下一个路标：与已选路标最远的顶点，不可达的顶点优先（覆盖其他连通块）
+            next = -1;
+            for (int v = 0; v < n; v++) {
+                if (degree(snapshot, v) == 0 || nearest[v] == 0) continue;
+                if (next < 0 || nearest[v] > nearest[next]) next = v;
+            }
+        }
+        return new LandmarkTable(snapshot, type, Arrays.copyOf(chosen, k),
+                Arrays.copyOf(from, k), Arrays.copyOf(to, k));
+    }
+
+    private static int degree(RailwaySnapshot snapshot, int v) {
+        return snapshot.end(v) - snapshot.begin(v) + snapshot.reverseEnd(v) - snapshot.reverseBegin(v);
+    }
+
+    /**
+     * dist(v, t) 的下界
+     */
+    public long lowerBound(int v, int t) {
+        long bound = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            long lt = fromLandmark[i][t];
+            long lv = fromLandmark[i][v];
+            if (lt != INF && lv != INF && lt - lv > bound) bound = lt - lv;
+            long vl = toLandmark[i][v];
+            long tl = toLandmark[i][t];
+            if (vl != INF && tl != INF && vl - tl > bound) bound = vl - tl;
+        }
+        return bound;
+    }
+
+    public RailwaySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+}
@@ -0,0 +1,33 @@
+package boyuai.trainsys.core;
+
+/**
+ * 购票/退票请求的处理结果
+ */
+public enum OrderOutcome {
+    ORDERED(true, "Order succeeded."),
+    REFUNDED(true, "Refund succeeded."),
+    ORDER_FAILED(false, "No enough tickets or scheduler not exists. Order failed."),
+    REFUND_FAILED(false, "Scheduler not exists. Refund failed."),
+    TICKET_NOT_FOUND(false, "Ticket not found. Refund failed."),
+    BUSY(false, "System busy. Please retry later."),
+    PERMISSION_DENIED(false, "Permission denied.");
+
+    private final boolean success;
+    private final String message;
+
+    OrderOutcome(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * 输出给用户的提示
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,515 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.MpscRingBuffer;
+import boyuai.trainsys.datastructure.Pair;
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.PurchaseInfo;
+import boyuai.trainsys.info.TripInfo;
+import boyuai.trainsys.manager.SchedulerManager;
+import boyuai.trainsys.manager.TicketManager;
+import boyuai.trainsys.manager.TripManager;
+import boyuai.trainsys.util.Date;
+import boyuai.trainsys.util.FixedString;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 购票/退票处理流水线
+ * 请求按车次的散列分到若干分片（与 TicketManager 的分片一致），每个分片有一个有界的多生产者单消费者环形缓冲区
+ * 和一个处理线程：不同分片的车次并行处理，同一车次的请求只由一个线程处理，不必争锁。
+ * 调用方放入请求后立即得到一个 CompletableFuture；处理线程成批取出请求，按（列车，日期）分组：
+ * 同一组中连续的购票在内存余票（TicketManager 中每个（列车，日期）一份的 SeatCounters）上依次以 CAS 扣减，
+ * 退票先确认用户持有该行程；产生与删除的行程记录在整批处理完后一起写入，
+ * 整批的余票写回B+树、日志提交后才完成各请求的 future。
+ * 处理中的每次修改都记下补偿操作：某一组出错时撤销该组的修改、只让该组的请求失败，
+ * 写入或提交出错时撤销整批的修改。
+ * 缓冲区满时新请求立即以 BUSY 完成，由调用方决定何时重试（背压）。
+ */
+public class OrderPipeline implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = 10_000_000L;  // 空闲时最长的等待，防止错过唤醒
+
+    private record Request(PurchaseInfo purchase, CompletableFuture<OrderOutcome> result, long enqueuedAt) {}
+
+    private record GroupKey(String trainID, Date date) {}
+
+    /**
+     * 一个分片的运行指标
+     * @param shard 分片编号
+     * @param queueDepth 已放入、尚未被处理线程取出的请求数
+     * @param processed 已处理的请求数
+     * @param rejected 因缓冲区满被拒绝的请求数
+     * @param meanLatencyMillis 从放入到完成的平均时延（毫秒）
+     * @param maxLatencyMillis 从放入到完成的最大时延（毫秒）
+     */
+    public record ShardStats(int shard, long queueDepth, long processed, long rejected,
+                             double meanLatencyMillis, double maxLatencyMillis) {
+        @Override
+        public String toString() {
+            return String.format("Shard %d: queue depth %d, processed %d, rejected %d, mean latency %.3f ms, max latency %.3f ms",
+                    shard, queueDepth, processed, rejected, meanLatencyMillis, maxLatencyMillis);
+        }
+    }
+
+    private final SchedulerManager schedulerManager;
+    private final TicketManager ticketManager;
+    private final TripManager tripManager;
+    private final Shard[] shards;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    /**
+     * 构造函数，启动各分片的处理线程
+     * @param shardCount 分片数
+     * @param capacity 每个分片的缓冲区容量（请求数）
+     * @param batchSize 每批最多处理的请求数
+     */
+    public OrderPipeline(SchedulerManager schedulerManager, TicketManager ticketManager, TripManager tripManager,
+                         int shardCount, int capacity, int batchSize) {
+        this.schedulerManager = schedulerManager;
+        this.ticketManager = ticketManager;
+        this.tripManager = tripManager;
+        this.batchSize = batchSize;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, capacity);
+        }
+    }
+
+    /**
+     * 提交购票或退票请求（任意线程）
+     * @param purchase 请求
+     * @return 处理结果；缓冲区已满或流水线已关闭时立即以 BUSY 完成
+     */
+    public CompletableFuture<OrderOutcome> submit(PurchaseInfo purchase) {
+        Shard shard = shards[TicketManager.shardOf(purchase.getTrainID().toString(), shards.length)];
+        Request request = new Request(purchase, new CompletableFuture<>(), System.nanoTime());
+        if (!running || !shard.queue.offer(request)) {
+            shard.rejected.incrementAndGet();
+            request.result.complete(OrderOutcome.BUSY);
+            return request.result;
+        }
+        shard.submitted.incrementAndGet();
+        if (shard.waiting) {
+            LockSupport.unpark(shard.worker);
+        }
+        return request.result;
+    }
+
+    /**
+     * 各分片的运行指标
+     */
+    public SeqList<ShardStats> getStats() {
+        SeqList<ShardStats> stats = new SeqList<>();
+        for (Shard shard : shards) {
+            long processed = shard.processed;
+            stats.pushBack(new ShardStats(shard.index, Math.max(0, shard.submitted.get() - shard.taken),
+                    processed, shard.rejected.get(),
+                    processed == 0 ? 0 : shard.totalLatencyNanos / 1e6 / processed, shard.maxLatencyNanos / 1e6));
+        }
+        return stats;
+    }
+
+    /**
+     * 一个分片：缓冲区、处理线程及其统计。除计数器外的字段只由该分片的处理线程使用
+     */
+    private class Shard {
+        final int index;
+        final MpscRingBuffer<Request> queue;
+        final Thread worker;
+        volatile boolean waiting;  // 处理线程正在等待新请求
+
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        // 以下计数只由处理线程写入
+        volatile long taken;
+        volatile long processed;
+        volatile long totalLatencyNanos;
+        volatile long maxLatencyNanos;
+
+        // 本批待插入与待删除的行程，整批处理完后一起写入
+        final SeqList<Pair<Long, TripInfo>> pendingTrips = new SeqList<>();
+        final SeqList<Pair<Long, TripInfo>> pendingRemovals = new SeqList<>();
+        // 本批已做修改的补偿操作，按修改的顺序排列
+        final SeqList<Runnable> undo = new SeqList<>();
+
+        Shard(int index, int capacity) {
+            this.index = index;
+            this.queue = new MpscRingBuffer<>(capacity);
+            this.worker = new Thread(this::run, "order-pipeline-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        private void run() {
+            SeqList<Request> batch = new SeqList<>();
+            while (true) {
+                taken += queue.drain(batch::pushBack, batchSize);
+                if (batch.length() == 0) {
+                    if (!running) {
+                        return;  // 关闭后把缓冲区中剩余的请求处理完才退出
+                    }
+                    waiting = true;
+                    if (queue.isEmpty()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                process(batch);
+                long now = System.nanoTime();
+                long total = totalLatencyNanos;
+                long max = maxLatencyNanos;
+                for (int i = 0; i < batch.length(); i++) {
+                    long latency = now - batch.visit(i).enqueuedAt;
+                    total += latency;
+                    max = Math.max(max, latency);
+                }
+                totalLatencyNanos = total;
+                maxLatencyNanos = max;
+                processed += batch.length();
+                batch.clear();
+            }
+        }
+
+        /**
+         * 处理一批请求：按（列车，日期）分组，组内保持到达顺序
+         * 某一组出错时撤销该组已做的修改，只有该组的请求失败；
+         * 写入行程或提交日志出错时撤销整批的修改，整批失败
+         */
+        private void process(SeqList<Request> batch) {
+            Map<GroupKey, SeqList<Request>> groups = new LinkedHashMap<>();
+            for (int i = 0; i < batch.length(); i++) {
+                PurchaseInfo purchase = batch.visit(i).purchase;
+                groups.computeIfAbsent(new GroupKey(purchase.getTrainID().toString(), purchase.getDate()),
+                        k -> new SeqList<>()).pushBack(batch.visit(i));
+            }
+            Map<Request, OrderOutcome> results = new LinkedHashMap<>();
+            Map<Request, RuntimeException> failures = new LinkedHashMap<>();
+            for (Map.Entry<GroupKey, SeqList<Request>> group : groups.entrySet()) {
+                int mark = undo.length();
+                Map<Request, OrderOutcome> groupResults = new LinkedHashMap<>();
+                try {
+                    processGroup(group.getKey(), group.getValue(), groupResults);
+                    results.putAll(groupResults);
+                } catch (RuntimeException e) {
+                    rollback(mark);
+                    for (int i = 0; i < group.getValue().length(); i++) {
+                        failures.put(group.getValue().visit(i), e);
+                    }
+                }
+            }
+            try {
+                writeTrips();
+                ticketManager.sync();
+                tripManager.sync();
+            } catch (RuntimeException e) {
+                rollback(0);
+                for (Request request : results.keySet()) {
+                    failures.put(request, e);
+                }
+                results.clear();
+            }
+            undo.clear();
+            for (Map.Entry<Request, OrderOutcome> result : results.entrySet()) {
+                result.getKey().result.complete(result.getValue());
+            }
+            for (Map.Entry<Request, RuntimeException> failure : failures.entrySet()) {
+                failure.getKey().result.completeExceptionally(failure.getValue());
+            }
+        }
+
+        /**
+         * 按相反的顺序执行第 mark 个及之后的补偿操作；补偿本身出错时报告并继续
+         */
+        private void rollback(int mark) {
+            for (int i = undo.length() - 1; i >= mark; i--) {
+                try {
+                    undo.visit(i).run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error rolling back order: " + e.getMessage());
+                }
+                undo.popBack();
+            }
+        }
+
+        /**
+         * 处理同一（列车，日期）的一组请求：连续的购票合并为一次余票扣减；
+         * 退票须先确认用户持有该行程，在它之前到达的购票先处理完，本批刚买的票也能退
+         */
+        private void processGroup(GroupKey key, SeqList<Request> requests, Map<Request, OrderOutcome> results) {
+            TrainScheduler schedule = schedulerManager.getScheduler(new FixedString(key.trainID()));
+            int n = requests.length();
+            int[] from = new int[n];
+            int[] to = new int[n];
+            int[] counts = new int[n];
+            int valid = 0;
+            SeqList<Request> accepted = new SeqList<>();
+            for (int i = 0; i < n; i++) {
+                Request request = requests.visit(i);
+                PurchaseInfo purchase = request.purchase;
+                int f = schedule == null ? -1 : schedule.findStation(purchase.getDepartureStation());
+                int t = f < 0 ? -1 : purchase.getArrivalStation() == null ? f + 1
+                        : schedule.findArrivalStation(f, purchase.getArrivalStation());
+                if (t < 0) {
+                    results.put(request, purchase.isOrdering() ? OrderOutcome.ORDER_FAILED : OrderOutcome.REFUND_FAILED);
+                    continue;
+                }
+                if (ticketManager.isTrackingSeats()) {
+                    results.put(request, satisfyBySeat(purchase, schedule, f, t));
+                    continue;
+                }
+                if (!purchase.isOrdering()) {
+                    applyOrders(key, schedule, accepted, from, to, counts, valid, results);
+                    accepted.clear();
+                    valid = 0;
+                    results.put(request, refund(key, schedule, purchase, f, t));
+                    continue;
+                }
+                from[valid] = f;
+                to[valid] = t;
+                counts[valid] = purchase.getType();
+                accepted.pushBack(request);
+                valid++;
+            }
+            applyOrders(key, schedule, accepted, from, to, counts, valid, results);
+        }
+
+        /**
+         * 一起扣减前 valid 个购票请求的余票：途经的所有区间段余票都足够的请求才成功
+         */
+        private void applyOrders(GroupKey key, TrainScheduler schedule, SeqList<Request> accepted,
+                                 int[] from, int[] to, int[] counts, int valid, Map<Request, OrderOutcome> results) {
+            if (valid == 0) {
+                return;
+            }
+            int[] f = Arrays.copyOf(from, valid);
+            int[] t = Arrays.copyOf(to, valid);
+            boolean[] ok = ticketManager.applySeatDeltas(schedule, key.date(), f, t, Arrays.copyOf(counts, valid));
+            if (ok != null) {
+                // 撤销时退还扣减成功的余票
+                int[] released = new int[valid];
+                for (int i = 0; i < valid; i++) {
+                    released[i] = ok[i] ? -counts[i] : 0;
+                }
+                undo.pushBack(() -> ticketManager.applySeatDeltas(schedule, key.date(), f, t, released));
+            }
+            for (int i = 0; i < valid; i++) {
+                Request request = accepted.visit(i);
+                PurchaseInfo purchase = request.purchase;
+                if (ok == null || !ok[i]) {
+                    results.put(request, OrderOutcome.ORDER_FAILED);
+                    continue;
+                }
+                addTrip(purchase.getUserID().value(), tripOf(schedule, purchase, from[i], to[i], purchase.getType()));
+                results.put(request, OrderOutcome.ORDERED);
+            }
+        }
+
+        /**
+         * 按区间段计数处理退票：用户持有对应的行程时才退还余票并删除行程
+         */
+        private OrderOutcome refund(GroupKey key, TrainScheduler schedule, PurchaseInfo purchase, int from, int to) {
+            long userID = purchase.getUserID().value();
+            TripInfo trip = tripOf(schedule, purchase, from, to, -purchase.getType());
+            if (!takeTrip(userID, trip)) {
+                return OrderOutcome.TICKET_NOT_FOUND;
+            }
+            int[] f = {from};
+            int[] t = {to};
+            boolean[] ok = ticketManager.applySeatDeltas(schedule, key.date(), f, t, new int[] {purchase.getType()});
+            if (ok == null || !ok[0]) {
+                rollback(undo.length() - 1);  // 放回行程
+                return OrderOutcome.REFUND_FAILED;
+            }
+            undo.pushBack(() -> ticketManager.applySeatDeltas(schedule, key.date(), f, t, new int[] {-purchase.getType()}));
+            return OrderOutcome.REFUNDED;
+        }
+
+        /**
+         * 按座位分配处理购票/退票请求：购票时每张票分配一个座位、记录一条行程，
+         * 全部分配成功才算成功；退票时从用户的行程中找出对应座位退还
+         */
+        private OrderOutcome satisfyBySeat(PurchaseInfo purchaseInfo, TrainScheduler schedule, int from, int to) {
+            long userID = purchaseInfo.getUserID().value();
+            Date date = purchaseInfo.getDate();
+            if (purchaseInfo.isOrdering()) {
+                int count = purchaseInfo.getType();
+                int[] seats = new int[count];
+                for (int i = 0; i < count; i++) {
+                    seats[i] = ticketManager.allocateSeat(schedule, date, from, to);
+                    if (seats[i] < 0) {
+                        for (int j = 0; j < i; j++) {
+                            ticketManager.freeSeat(schedule, date, from, to, seats[j]);
+                        }
+                        return OrderOutcome.ORDER_FAILED;
+                    }
+                }
+                undo.pushBack(() -> {
+                    for (int seat : seats) {
+                        ticketManager.freeSeat(schedule, date, from, to, seat);
+                    }
+                });
+                for (int seat : seats) {
+                    TripInfo trip = tripOf(schedule, purchaseInfo, from, to, 1);
+                    trip.setSeat(seat);
+                    addTrip(userID, trip);
+                }
+                return OrderOutcome.ORDERED;
+            }
+
+            int count = -purchaseInfo.getType();
+            SeqList<TripInfo> trips = heldTrips(userID);
+            SeqList<TripInfo> refunded = new SeqList<>();
+            TripInfo expected = tripOf(schedule, purchaseInfo, from, to, 1);
+            for (int i = 0; i < trips.length() && refunded.length() < count; i++) {
+                TripInfo trip = trips.visit(i);
+                expected.setSeat(trip.getSeat());
+                if (trip.equals(expected)) {
+                    refunded.pushBack(trip);
+                }
+            }
+            if (refunded.length() < count) {
+                return OrderOutcome.TICKET_NOT_FOUND;
+            }
+            for (int i = 0; i < refunded.length(); i++) {
+                TripInfo trip = refunded.visit(i);
+                takeTrip(userID, trip);
+                ticketManager.freeSeat(schedule, date, from, to, trip.getSeat());
+                undo.pushBack(() -> {
+                    // 重新占用该座位，并扣回区间段余票
+                    ticketManager.occupySeat(schedule, date, from, to, trip.getSeat());
+                    ticketManager.applySeatDeltas(schedule, date, new int[] {from}, new int[] {to}, new int[] {1});
+                });
+            }
+            return OrderOutcome.REFUNDED;
+        }
+
+        /**
+         * 记录一条待插入的行程
+         */
+        private void addTrip(long userID, TripInfo trip) {
+            Pair<Long, TripInfo> pair = new Pair<>(userID, trip);
+            pendingTrips.pushBack(pair);
+            undo.pushBack(() -> {
+                if (!removeSame(pendingTrips, pair)) {
+                    tripManager.removeTrip(userID, trip);  // 已写入
+                }
+            });
+        }
+
+        /**
+         * 用户当前持有的行程：已写入的（除去本批待删除的）与本批待插入的
+         */
+        private SeqList<TripInfo> heldTrips(long userID) {
+            SeqList<TripInfo> trips = tripManager.queryTrip(userID);
+            for (int i = 0; i < pendingRemovals.length(); i++) {
+                Pair<Long, TripInfo> removal = pendingRemovals.visit(i);
+                if (removal.getKey() == userID) {
+                    int j = trips.search(removal.getValue());
+                    if (j >= 0) {
+                        trips.remove(j);
+                    }
+                }
+            }
+            for (int i = 0; i < pendingTrips.length(); i++) {
+                if (pendingTrips.visit(i).getKey() == userID) {
+                    trips.pushBack(pendingTrips.visit(i).getValue());
+                }
+            }
+            return trips;
+        }
+
+        /**
+         * 从用户持有的行程中取走一条与 trip 相同的：优先取本批待插入的，否则记为待删除
+         * @return 用户是否持有这样的行程
+         */
+        private boolean takeTrip(long userID, TripInfo trip) {
+            for (int i = pendingTrips.length() - 1; i >= 0; i--) {
+                Pair<Long, TripInfo> pair = pendingTrips.visit(i);
+                if (pair.getKey() == userID && pair.getValue().equals(trip)) {
+                    pendingTrips.remove(i);
+                    undo.pushBack(() -> pendingTrips.pushBack(pair));
+                    return true;
+                }
+            }
+            if (heldTrips(userID).search(trip) < 0) {
+                return false;
+            }
+            Pair<Long, TripInfo> removal = new Pair<>(userID, trip);
+            pendingRemovals.pushBack(removal);
+            undo.pushBack(() -> {
+                if (!removeSame(pendingRemovals, removal)) {
+                    tripManager.addTrip(userID, trip);  // 已删除
+                }
+            });
+            return true;
+        }
+
+        private static boolean removeSame(SeqList<Pair<Long, TripInfo>> list, Pair<Long, TripInfo> pair) {
+            for (int i = list.length() - 1; i >= 0; i--) {
+                if (list.visit(i) == pair) {
+                    list.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 把本批待删除与待插入的行程一次写入，写入一条就从列表中去掉一条，
+         * 出错时列表中剩下的即尚未写入的（整批插入中途出错时无法区分，按未写入处理）
+         */
+        private void writeTrips() {
+            while (pendingRemovals.length() > 0) {
+                Pair<Long, TripInfo> removal = pendingRemovals.back();
+                tripManager.removeTrip(removal.getKey(), removal.getValue());
+                pendingRemovals.popBack();
+            }
+            if (pendingTrips.length() > 0) {
+                tripManager.addTrips(pendingTrips);
+                pendingTrips.clear();
+            }
+        }
+    }
+
+    /**
+     * 生成第 from 站到第 to 站的行程信息，历时与票价为途经各区间段之和
+     */
+    private static TripInfo tripOf(TrainScheduler schedule, PurchaseInfo purchaseInfo, int from, int to, int ticketNumber) {
+        int duration = 0;
+        int price = 0;
+        for (int i = from; i < to; i++) {
+            duration += schedule.getDuration(i);
+            price += schedule.getPrice(i);
+        }
+        return new TripInfo(purchaseInfo.getTrainID(), purchaseInfo.getDepartureStation(), schedule.getStation(to),
+                ticketNumber, duration, price, purchaseInfo.getDate());
+    }
+
+    /**
+     * 停止接受新请求，各分片处理完缓冲区中已有的请求后结束处理线程
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.worker);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // 与关闭同时提交、在处理线程退出后才放入的请求
+            shard.queue.drain(request -> request.result.complete(OrderOutcome.BUSY), Integer.MAX_VALUE);
+        }
+    }
+}
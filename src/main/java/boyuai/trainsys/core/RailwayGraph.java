@@ -1,58 +1,260 @@
 package boyuai.trainsys.core;
 
-import boyuai.trainsys.info.RouteSectionInfo;
-import boyuai.trainsys.datastructure.AdjListGraph;
-import boyuai.trainsys.datastructure.DisjointSet;
+import boyuai.trainsys.info.PathInfo;
+import boyuai.trainsys.datastructure.DynamicConnectivity;
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
 import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.datastructure.TinyLfuCache;
 import boyuai.trainsys.config.Config;
 import boyuai.trainsys.util.Types.*;
 import lombok.Data;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Data
 public class RailwayGraph {
 
-    // 使用邻接表图存储"存在性"，同时自维护可遍历的邻接结构
-    private AdjListGraph<RouteSectionInfo> routeGraph;
-    private List<List<Edge>> adjacency; // 自维护的可遍历邻接表
+    // 边表：按加入顺序追加的平行数组，查询时由它构建 CSR 快照；
+    // 边表与连通性结构的读写在 this 上同步，查询只读取不可变的快照
+    private int edgeCount;
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private int[] edgePrice = new int[16];
+    private int[] edgeDuration = new int[16];
+    private int[] edgeTrain = new int[16];
+    private int vertexCount;    // 出现过的最大站点ID + 1
 
-    // 并查集用于快速判断站点连通性
-    private DisjointSet stationSet;
+    // 车次表：车次号到下标的映射
+    private final Map<String, Integer> trainIndex = new HashMap<>();
+    private TrainID[] trains = new TrainID[16];
 
-    // 路段信息内存池
-    private SeqList<RouteSectionInfo> routeSectionPool;
+    // 当前的只读快照，加入新边后置为null，下次查询时重建
+    private volatile RailwaySnapshot snapshot;
+
+    // 运行图版本号，每加入一条边加一；缓存的查询结果记录计算时的版本，版本不符即视为失效
+    private volatile long version;
+    private final TinyLfuCache<Long, CachedPath> pathCache = new TinyLfuCache<>(Config.PATH_CACHE_SIZE);
+
+    private record CachedPath(long version, PathInfo path) {}
+
+    // 动态连通性结构用于快速判断站点连通性，删除车次后仍然正确
+    private final DynamicConnectivity stationSet = new DynamicConnectivity();
+
+    // 收缩层次（可选），按类型（0-价格，1-时间）各一份；运行图变化后由后台线程重建，
+    // 重建完成前旧的层次继续服务查询
+    private volatile boolean hierarchyEnabled;
+    private final AtomicReferenceArray<ContractionHierarchy> hierarchies = new AtomicReferenceArray<>(2);
+    private final AtomicReference<RailwaySnapshot> pendingBuild = new AtomicReference<>();
+    private ExecutorService precomputeExecutor;  // 收缩层次与距离表的后台构建线程
+
+    // 全源距离表（可选），运行图变化后同样由后台线程重建，重建完成前旧表继续服务查询
+    private volatile boolean distanceTableEnabled;
+    private volatile String distanceTableFile;
+    private final AtomicReference<DistanceTable> distanceTable = new AtomicReference<>();
+    private final AtomicReference<RailwaySnapshot> pendingTable = new AtomicReference<>();
+
+    // 路标距离表（ALT 搜索用），按类型各一份，在首次 ALT 查询时基于当前快照构建
+    private final AtomicReferenceArray<LandmarkTable> landmarkTables = new AtomicReferenceArray<>(2);
+
+    // 各搜索方式累计确定的顶点数与查询次数，下标为 SearchMode 的序号
+    private final AtomicLongArray settledCount = new AtomicLongArray(SearchMode.values().length);
+    private final AtomicLongArray queryCount = new AtomicLongArray(SearchMode.values().length);
+
+    // 向运行图中加入一条边
+    public synchronized void addRoute(int departureStationID, int arrivalStationID,
+                         int duration, int price, TrainID trainID) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgePrice = Arrays.copyOf(edgePrice, capacity);
+            edgeDuration = Arrays.copyOf(edgeDuration, capacity);
+            edgeTrain = Arrays.copyOf(edgeTrain, capacity);
+        }
+        edgeFrom[edgeCount] = departureStationID;
+        edgeTo[edgeCount] = arrivalStationID;
+        edgePrice[edgeCount] = price;
+        edgeDuration[edgeCount] = duration;
+        edgeTrain[edgeCount] = trainIndexOf(trainID);
+        edgeCount++;
+        vertexCount = Math.max(vertexCount, Math.max(departureStationID, arrivalStationID) + 1);
+        snapshot = null;
+        version++;
+        pathCache.clear();
+        // 将两站标记为连通
+        stationSet.addEdge(departureStationID, arrivalStationID);
+    }
 
     /**
-     * 构造函数
+     * 从运行图中删除某车次的全部边
+     * @param trainID 车次ID
+     * @return 删除的边数
      */
-    public RailwayGraph() {
-        this.routeGraph = new AdjListGraph<>(Config.MAX_STATIONID);
-        this.adjacency = new ArrayList<>(Config.MAX_STATIONID);
-        for (int i = 0; i < Config.MAX_STATIONID; i++) adjacency.add(new ArrayList<>());
-        this.stationSet = new DisjointSet(Config.MAX_STATIONID);
-        this.routeSectionPool = new SeqList<>();
+    public synchronized int removeTrain(TrainID trainID) {
+        Integer index = trainIndex.get(trainID.toString());
+        if (index == null) {
+            return 0;
+        }
+        int kept = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeTrain[e] == index) {
+                stationSet.removeEdge(edgeFrom[e], edgeTo[e]);
+                continue;
+            }
+            edgeFrom[kept] = edgeFrom[e];
+            edgeTo[kept] = edgeTo[e];
+            edgePrice[kept] = edgePrice[e];
+            edgeDuration[kept] = edgeDuration[e];
+            edgeTrain[kept] = edgeTrain[e];
+            kept++;
+        }
+        int removed = edgeCount - kept;
+        edgeCount = kept;
+        if (removed > 0) {
+            snapshot = null;
+            version++;
+            pathCache.clear();
+        }
+        return removed;
     }
 
-    private static class Edge {
-        int end;
-        RouteSectionInfo info;
-        Edge(int end, RouteSectionInfo info) { this.end = end; this.info = info; }
+    /**
+     * 车次在车次表中的下标，不存在时追加
+     */
+    private int trainIndexOf(TrainID trainID) {
+        Integer index = trainIndex.get(trainID.toString());
+        if (index == null) {
+            index = trainIndex.size();
+            if (index == trains.length) {
+                trains = Arrays.copyOf(trains, index * 2);
+            }
+            trains[index] = trainID;
+            trainIndex.put(trainID.toString(), index);
+        }
+        return index;
     }
 
-    // 向运行图中加入一条边
-    public void addRoute(int departureStationID, int arrivalStationID,
-                         int duration, int price, TrainID trainID) {
-        // 新建一条 SectionInfo 并将其放入内存池
-        RouteSectionInfo section = new RouteSectionInfo(trainID, new StationID(arrivalStationID), price, duration);
-        routeSectionPool.insert(routeSectionPool.length(), section); // 内存池
-        // 向图中插入一条边
-        routeGraph.insert(departureStationID, arrivalStationID, section);
-        adjacency.get(departureStationID).add(new Edge(arrivalStationID, section));
-        // 用不相交集将节点标记为连通
-        int x = stationSet.find(departureStationID);
-        int y = stationSet.find(arrivalStationID);
-        stationSet.join(x, y);
+    /**
+     * 取得运行图的只读快照，自上次构建以来加入过新边时重新构建
+     * @return 快照
+     */
+    public RailwaySnapshot snapshot() {
+        RailwaySnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new RailwaySnapshot(vertexCount, edgeCount, edgeFrom, edgeTo, edgePrice, edgeDuration,
+                        edgeTrain, Arrays.copyOf(trains, trainIndex.size()));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 启用收缩层次，并在后台开始预处理
+     */
+    public void enableHierarchy() {
+        hierarchyEnabled = true;
+        refreshHierarchies();
+    }
+
+    /**
+     * 若收缩层次不是基于当前快照构建的，则提交后台重建；重建期间再次变化时合并为一次
+     */
+    public void refreshHierarchies() {
+        if (!hierarchyEnabled) {
+            return;
+        }
+        RailwaySnapshot current = snapshot();
+        ContractionHierarchy price = hierarchies.get(0);
+        ContractionHierarchy time = hierarchies.get(1);
+        if (price != null && time != null && price.getSnapshot() == current && time.getSnapshot() == current) {
+            return;
+        }
+        if (pendingBuild.getAndSet(current) == null) {
+            precomputeExecutor().execute(this::buildHierarchies);
+        }
+    }
+
+    /**
+     * 后台构建线程，首次使用时创建
+     */
+    private synchronized ExecutorService precomputeExecutor() {
+        if (precomputeExecutor == null) {
+            precomputeExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "railway-precompute");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return precomputeExecutor;
+    }
+
+    /**
+     * 启用全源距离表，并在后台开始构建
+     * @param filename 映射的数据文件，为null时放在堆外内存中
+     */
+    public void enableDistanceTable(String filename) {
+        distanceTableFile = filename;
+        distanceTableEnabled = true;
+        refreshDistanceTable();
+    }
+
+    /**
+     * 若距离表不是基于当前快照构建的，则提交后台重建；站点数超过上限时不构建
+     */
+    public void refreshDistanceTable() {
+        if (!distanceTableEnabled) {
+            return;
+        }
+        RailwaySnapshot current = snapshot();
+        DistanceTable table = distanceTable.get();
+        if ((table != null && table.getSnapshot() == current) || current.vertexCount() > DistanceTable.MAX_STATIONS) {
+            return;
+        }
+        if (pendingTable.getAndSet(current) == null) {
+            precomputeExecutor().execute(this::buildDistanceTable);
+        }
+    }
+
+    /**
+     * 后台线程：在公共 ForkJoin 线程池上并行构建最新提交的快照的距离表
+     */
+    private void buildDistanceTable() {
+        RailwaySnapshot target = pendingTable.get();
+        while (true) {
+            distanceTable.set(DistanceTable.build(target, ForkJoinPool.commonPool(), distanceTableFile));
+            if (pendingTable.compareAndSet(target, null)) {
+                return;
+            }
+            target = pendingTable.get();
+        }
+    }
+
+    /**
+     * 后台线程：为最新提交的快照构建两种度量的收缩层次，构建完成后替换旧的
+     */
+    private void buildHierarchies() {
+        RailwaySnapshot target = pendingBuild.get();
+        while (true) {
+            for (int type = 0; type < 2; type++) {
+                hierarchies.set(type, ContractionHierarchy.build(target, type));
+            }
+            if (pendingBuild.compareAndSet(target, null)) {
+                return;
+            }
+            target = pendingBuild.get();
+        }
     }
 
     /**
@@ -61,139 +263,373 @@ public class RailwayGraph {
      * @param arrivalStationID 到达站ID
      * @return 是否连通
      */
-    public boolean checkStationAccessibility(int departureStationID, int arrivalStationID) {
-        // 利用并查集判断连通性
-        return stationSet.find(departureStationID) == stationSet.find(arrivalStationID);
+    public synchronized boolean checkStationAccessibility(int departureStationID, int arrivalStationID) {
+        return stationSet.connected(departureStationID, arrivalStationID);
+    }
+
+    /**
+     * 惰性枚举出发站到到达站的简单路径
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     * @param type 代价类型，0-价格，1-时间
+     * @param maxHops 路径最多包含的边数
+     * @param maxResults 最多返回的路径条数
+     * @param maxCost 路径代价上限，Long.MAX_VALUE 表示不限
+     * @param timeoutMillis 允许搜索的毫秒数
+     * @return 路径迭代器，每次取下一条时才继续搜索
+     */
+    public RouteEnumerator routes(int departureStationID, int arrivalStationID, int type,
+                                  int maxHops, int maxResults, long maxCost, long timeoutMillis) {
+        return new RouteEnumerator(snapshot(), departureStationID, arrivalStationID, type,
+                maxHops, maxResults, maxCost, timeoutMillis);
     }
 
     /**
-     * 深度优先搜索查找路径
-     * @param curIdx 当前节点索引
-     * @param arrivalIdx 目标节点索引
-     * @param prevStations 路径上的站点列表
-     * @param visited 访问标记数组
+     * 以流的形式惰性枚举出发站到到达站的简单路径，参数同 routes
      */
-    private void routeDfs(int curIdx, int arrivalIdx,
-                          SeqList<Integer> prevStations, boolean[] visited) {
-        prevStations.insert(prevStations.length(), curIdx);
+    public Stream<PathInfo> routeStream(int departureStationID, int arrivalStationID, int type,
+                                        int maxHops, int maxResults, long maxCost, long timeoutMillis) {
+        RouteEnumerator routes = routes(departureStationID, arrivalStationID, type,
+                maxHops, maxResults, maxCost, timeoutMillis);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(routes, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-        // 已找到一条路径，输出它
-        if (curIdx == arrivalIdx) {
-            System.out.print("route found: ");
-            for (int i = 0; i < prevStations.length(); i++) {
-                System.out.print(prevStations.visit(i) + " ");
+    /**
+     * 显示从出发站到到达站的路线，条数、边数与搜索时间受 Config 中的上限约束
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     */
+    public void displayRoute(int departureStationID, int arrivalStationID) {
+        RouteEnumerator routes = routes(departureStationID, arrivalStationID, 0,
+                Config.MAX_ROUTE_HOPS, Config.MAX_ROUTE_RESULTS, Long.MAX_VALUE, Config.ROUTE_SEARCH_TIMEOUT_MS);
+        while (routes.hasNext()) {
+            SeqList<Integer> stations = routes.next().getStations();
+            StringBuilder sb = new StringBuilder("route found: ");
+            for (int i = 0; i < stations.length(); i++) {
+                sb.append(stations.visit(i)).append(' ');
             }
-            System.out.println();
-            prevStations.remove(prevStations.length() - 1);
-            return;
+            System.out.println(sb);
+        }
+        if (routes.isTruncated()) {
+            System.out.println("Too many routes, only part of them are listed.");
         }
+    }
 
-        visited[curIdx] = true;
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+    // 双向搜索中反向一侧的工作区
+    private static final ThreadLocal<SearchWorkspace> REVERSE_WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
 
-        // 遍历所有邻接节点
-        for (Edge e : adjacency.get(curIdx)) {
-            if (!visited[e.end]) {
-                routeDfs(e.end, arrivalIdx, prevStations, visited);
+    /**
+     * 使用Dijkstra算法查找最短路径
+     * 启用距离表或收缩层次且已就绪时改用查表或层次查询（可能基于稍旧的快照）；
+     * 结果按 (出发站, 到达站, 类型) 缓存，运行图变化后失效
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     * @param type 0-按价格最优，1-按时间最优
+     * @return 查询结果，不可达时 isFound() 为false
+     */
+    public PathInfo shortestPath(int departureStationID, int arrivalStationID, int type) {
+        long currentVersion = version;
+        long key = pathKey(departureStationID, arrivalStationID, type);
+        CachedPath cached = pathCache.get(key);
+        if (cached != null && cached.version() == currentVersion) {
+            return cached.path();
+        }
+        PathInfo path = null;
+        if (distanceTableEnabled) {
+            refreshDistanceTable();
+            DistanceTable table = distanceTable.get();
+            if (table != null && table.contains(departureStationID) && table.contains(arrivalStationID)) {
+                path = table.query(departureStationID, arrivalStationID, type);
+                if (table.getSnapshot() != snapshot) {
+                    return path;  // 距离表尚未按最新的运行图重建，结果不缓存
+                }
+                pathCache.put(key, new CachedPath(currentVersion, path));
+                return path;
             }
         }
+        if (hierarchyEnabled) {
+            refreshHierarchies();
+            ContractionHierarchy hierarchy = hierarchies.get(type);
+            if (hierarchy != null && hierarchy.contains(departureStationID) && hierarchy.contains(arrivalStationID)) {
+                path = hierarchy.query(departureStationID, arrivalStationID);
+                if (hierarchy.getSnapshot() != snapshot) {
+                    return path;  // 层次尚未按最新的运行图重建，结果不缓存
+                }
+            }
+        }
+        if (path == null) {
+            path = shortestPath(departureStationID, arrivalStationID, type, SearchMode.DIJKSTRA);
+        }
+        pathCache.put(key, new CachedPath(currentVersion, path));
+        return path;
+    }
 
-        // 回溯
-        visited[curIdx] = false;
-        prevStations.remove(prevStations.length() - 1);
+    /**
+     * 查询结果缓存的键：出发站、到达站、代价类型
+     */
+    private static long pathKey(int departureStationID, int arrivalStationID, int type) {
+        return (long) departureStationID << 33 | (long) arrivalStationID << 1 | type;
     }
 
     /**
-     * 显示从出发站到到达站的所有路线
+     * 按指定的搜索方式查找最短路径，结果中记录本次确定的顶点数，并累加到该方式的计数器
      * @param departureStationID 出发站ID
      * @param arrivalStationID 到达站ID
+     * @param type 0-按价格最优，1-按时间最优
+     * @param mode 搜索方式
+     * @return 查询结果，不可达时 isFound() 为false
      */
-    public void displayRoute(int departureStationID, int arrivalStationID) {
-        boolean[] visited = new boolean[routeGraph.NumOfVer()];
-        SeqList<Integer> prev = new SeqList<>();
-        routeDfs(departureStationID, arrivalStationID, prev, visited);
+    public PathInfo shortestPath(int departureStationID, int arrivalStationID, int type, SearchMode mode) {
+        RailwaySnapshot graph = snapshot();
+        if (!graph.contains(departureStationID) || !graph.contains(arrivalStationID)) {
+            return departureStationID == arrivalStationID ? samePath(departureStationID, type) : PathInfo.notFound(type);
+        }
+        PathInfo result;
+        switch (mode) {
+            case BIDIRECTIONAL:
+                result = bidirectional(graph, departureStationID, arrivalStationID, type);
+                break;
+            case ALT:
+                result = alt(graph, landmarkTable(graph, type), departureStationID, arrivalStationID, type);
+                break;
+            default:
+                result = dijkstra(graph, departureStationID, arrivalStationID, type);
+                break;
+        }
+        settledCount.addAndGet(mode.ordinal(), result.getSettled());
+        queryCount.incrementAndGet(mode.ordinal());
+        return result;
     }
 
     /**
-     * 使用Dijkstra算法查找最短路径
+     * 查找前 k 条最短的简单路径（Yen 算法），作为备选路线，搜索时间受 Config.ROUTE_SEARCH_TIMEOUT_MS 约束
      * @param departureStationID 出发站ID
      * @param arrivalStationID 到达站ID
+     * @param k 条数
      * @param type 0-按价格最优，1-按时间最优
+     * @return 按代价从小到大排列的路径，不足 k 条或超时时返回已确定的全部
      */
-    public void shortestPath(int departureStationID, int arrivalStationID, int type) {
-        int numOfVer = routeGraph.NumOfVer();
-
-        // 使用朴素 Dijkstra 算法求解最短路
-        int[] prev = new int[numOfVer];
-        boolean[] known = new boolean[numOfVer];
-        long[] distance = new long[numOfVer];
-        long min;
+    public SeqList<PathInfo> kShortestPaths(int departureStationID, int arrivalStationID, int k, int type) {
+        return kShortestPaths(departureStationID, arrivalStationID, k, type, Config.ROUTE_SEARCH_TIMEOUT_MS);
+    }
 
-        // 初始化
-        for (int i = 0; i < numOfVer; i++) {
-            prev[i] = i;
-            known[i] = false;
-            distance[i] = Long.MAX_VALUE / 2;
+    /**
+     * 查找前 k 条最短的简单路径（Yen 算法），超过截止时间后只返回已确定的路径
+     * @param timeoutMillis 允许搜索的毫秒数
+     */
+    public SeqList<PathInfo> kShortestPaths(int departureStationID, int arrivalStationID, int k, int type,
+                                            long timeoutMillis) {
+        RailwaySnapshot graph = snapshot();
+        if (!graph.contains(departureStationID) || !graph.contains(arrivalStationID)) {
+            SeqList<PathInfo> result = new SeqList<>();
+            if (departureStationID == arrivalStationID && k > 0) {
+                result.pushBack(samePath(departureStationID, type));
+            }
+            return result;
         }
+        return KShortestPaths.find(graph, WORKSPACE.get(), departureStationID, arrivalStationID, k, type, timeoutMillis);
+    }
 
-        distance[departureStationID] = 0;
-        prev[departureStationID] = departureStationID;
+    /**
+     * 某种搜索方式累计确定的顶点数
+     */
+    public long getSettledCount(SearchMode mode) {
+        return settledCount.get(mode.ordinal());
+    }
 
-        // Dijkstra 算法主循环
-        for (int i = 1; i < numOfVer; i++) {
-            int u = -1;
-            min = Long.MAX_VALUE / 2;
+    /**
+     * 某种搜索方式累计的查询次数
+     */
+    public long getQueryCount(SearchMode mode) {
+        return queryCount.get(mode.ordinal());
+    }
 
-            // 找到未处理节点中距离最小的
-            for (int j = 0; j < numOfVer; j++) {
-                if (!known[j] && distance[j] < min) {
-                    min = distance[j];
-                    u = j;
-                }
-            }
+    /**
+     * 单向Dijkstra
+     * 待处理的顶点放在带下标的二叉堆中，松弛时原地降低优先级，复杂度 O((V + E) log V)；
+     * 到达站出堆时即可结束
+     */
+    private static PathInfo dijkstra(RailwaySnapshot graph, int departureStationID, int arrivalStationID, int type) {
+        SearchWorkspace ws = WORKSPACE.get();
+        ws.begin(graph.vertexCount());
+        IndexedPriorityQueue heap = ws.heap;
+        int settled = 0;
 
-            if (u == -1) break; // 没有可达节点
+        ws.setDistance(departureStationID, 0, departureStationID);
+        heap.offer(departureStationID, 0);
 
-            known[u] = true;
+        while (!heap.isEmpty()) {
+            int u = heap.deQueue();
+            settled++;
+            if (u == arrivalStationID) break;
+            long base = ws.distance[u];
 
-            // 更新邻接节点的距离
-            for (Edge e : adjacency.get(u)) {
-                int weight = (type == 1) ? e.info.getDuration() : e.info.getPrice();
-                if (!known[e.end] && distance[e.end] > min + weight) {
-                    distance[e.end] = min + weight;
-                    prev[e.end] = u;
+            // 更新邻接节点的距离，出过堆的顶点距离已确定，不会再被更新
+            for (int e = graph.begin(u); e < graph.end(u); e++) {
+                int v = graph.target(e);
+                long d = base + graph.weight(e, type);
+                if (d < ws.distance(v)) {
+                    ws.setDistance(v, d, u);
+                    heap.offer(v, d);
                 }
             }
         }
+        return tracePath(ws, departureStationID, arrivalStationID, type).withSettled(settled);
+    }
 
-        // 检查是否可达
-        if (distance[arrivalStationID] == Long.MAX_VALUE / 2) {
-            System.out.println("No path found.");
-            return;
+    /**
+     * 双向Dijkstra
+     * 正向沿出边从出发站搜索，反向沿入边从到达站搜索，每次扩展堆顶较小的一侧；
+     * 记录经过某条边相遇的最短长度 best，两侧堆顶之和不小于 best 时即可结束
+     */
+    private static PathInfo bidirectional(RailwaySnapshot graph, int departureStationID, int arrivalStationID,
+                                          int type) {
+        if (departureStationID == arrivalStationID) {
+            return samePath(departureStationID, type).withSettled(1);
         }
+        SearchWorkspace fw = WORKSPACE.get();
+        SearchWorkspace bw = REVERSE_WORKSPACE.get();
+        fw.begin(graph.vertexCount());
+        bw.begin(graph.vertexCount());
+        fw.setDistance(departureStationID, 0, departureStationID);
+        fw.heap.offer(departureStationID, 0);
+        bw.setDistance(arrivalStationID, 0, arrivalStationID);
+        bw.heap.offer(arrivalStationID, 0);
 
-        // 反向寻路，找到一条最短路径
-        SeqList<Integer> path = new SeqList<>();
-        int u = arrivalStationID;
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+        int settled = 0;
+        while (!fw.heap.isEmpty() && !bw.heap.isEmpty()) {
+            long topF = fw.heap.priorityOf(fw.heap.peek());
+            long topB = bw.heap.priorityOf(bw.heap.peek());
+            if (best != Long.MAX_VALUE && topF + topB >= best) break;
+            settled++;
+            if (topF <= topB) {
+                int u = fw.heap.deQueue();
+                long base = fw.distance[u];
+                for (int e = graph.begin(u); e < graph.end(u); e++) {
+                    int v = graph.target(e);
+                    long d = base + graph.weight(e, type);
+                    if (d < fw.distance(v)) {
+                        fw.setDistance(v, d, u);
+                        fw.heap.offer(v, d);
+                    }
+                    long other = bw.distance(v);
+                    if (other != Long.MAX_VALUE && d + other < best) {
+                        best = d + other;
+                        meet = v;
+                    }
+                }
+            } else {
+                int u = bw.heap.deQueue();
+                long base = bw.distance[u];
+                for (int i = graph.reverseBegin(u); i < graph.reverseEnd(u); i++) {
+                    int v = graph.reverseSource(i);
+                    long d = base + graph.weight(graph.reverseEdge(i), type);
+                    if (d < bw.distance(v)) {
+                        bw.setDistance(v, d, u);  // 反向一侧的"前驱"是路径上的下一站
+                        bw.heap.offer(v, d);
+                    }
+                    long other = fw.distance(v);
+                    if (other != Long.MAX_VALUE && d + other < best) {
+                        best = d + other;
+                        meet = v;
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            return PathInfo.notFound(type).withSettled(settled);
+        }
 
-        // 回溯路径
-        while (u != departureStationID) {
+        // 相遇点之前沿正向前驱回溯，之后沿反向前驱前进
+        SeqList<Integer> path = new SeqList<>();
+        for (int u = meet; u != departureStationID; u = fw.prev[u]) {
             path.insert(0, u);
-            u = prev[u];
         }
         path.insert(0, departureStationID);
+        for (int u = meet; u != arrivalStationID; ) {
+            u = bw.prev[u];
+            path.insert(path.length(), u);
+        }
+        return new PathInfo(path, best, type).withSettled(settled);
+    }
+
+    /**
+     * ALT：以路标距离表给出的下界为启发函数的A*
+     * 下界是一致的，出堆的顶点距离即已确定，到达站出堆时结束
+     */
+    private static PathInfo alt(RailwaySnapshot graph, LandmarkTable landmarks, int departureStationID,
+                                int arrivalStationID, int type) {
+        SearchWorkspace ws = WORKSPACE.get();
+        ws.begin(graph.vertexCount());
+        IndexedPriorityQueue heap = ws.heap;
+        int settled = 0;
+
+        ws.setDistance(departureStationID, 0, departureStationID);
+        heap.offer(departureStationID, landmarks.lowerBound(departureStationID, arrivalStationID));
+
+        while (!heap.isEmpty()) {
+            int u = heap.deQueue();
+            settled++;
+            if (u == arrivalStationID) break;
+            long base = ws.distance[u];
+            for (int e = graph.begin(u); e < graph.end(u); e++) {
+                int v = graph.target(e);
+                long d = base + graph.weight(e, type);
+                if (d < ws.distance(v)) {
+                    ws.setDistance(v, d, u);
+                    heap.offer(v, d + landmarks.lowerBound(v, arrivalStationID));
+                }
+            }
+        }
+        return tracePath(ws, departureStationID, arrivalStationID, type).withSettled(settled);
+    }
+
+    /**
+     * 当前快照对应的路标距离表，快照变化后在首次 ALT 查询时重建
+     */
+    private LandmarkTable landmarkTable(RailwaySnapshot graph, int type) {
+        LandmarkTable table = landmarkTables.get(type);
+        if (table == null || table.getSnapshot() != graph) {
+            synchronized (landmarkTables) {
+                table = landmarkTables.get(type);
+                if (table == null || table.getSnapshot() != graph) {
+                    table = LandmarkTable.build(graph, type, LandmarkTable.DEFAULT_LANDMARKS);
+                    landmarkTables.set(type, table);
+                }
+            }
+        }
+        return table;
+    }
 
-        // 输出最短路
-        System.out.print("shortest path: ");
-        for (int i = 0; i < path.length(); i++) {
-            System.out.print(path.visit(i) + " ");
+    /**
+     * 由工作区中的前驱回溯出发站到到达站的路径
+     */
+    private static PathInfo tracePath(SearchWorkspace ws, int departureStationID, int arrivalStationID, int type) {
+        // 检查是否可达
+        long total = ws.distance(arrivalStationID);
+        if (total == Long.MAX_VALUE) {
+            return PathInfo.notFound(type);
         }
-        System.out.println();
 
-        // 输出总代价
-        if (type == 1) {
-            System.out.println("Total time: " + distance[arrivalStationID]);
-        } else {
-            System.out.println("Total price: " + distance[arrivalStationID]);
+        // 反向寻路，回溯出一条最短路径
+        SeqList<Integer> path = new SeqList<>();
+        for (int u = arrivalStationID; u != departureStationID; u = ws.prev[u]) {
+            path.insert(0, u);
         }
+        path.insert(0, departureStationID);
+        return new PathInfo(path, total, type);
+    }
+
+    /**
+     * 出发站与到达站相同时的结果
+     */
+    private static PathInfo samePath(int stationID, int type) {
+        SeqList<Integer> path = new SeqList<>();
+        path.insert(0, stationID);
+        return new PathInfo(path, 0, type);
     }
 }
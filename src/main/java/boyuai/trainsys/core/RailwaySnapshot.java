@@ -0,0 +1,168 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.util.Types.TrainID;
+
+/**
+ * 运行图的只读快照，以压缩稀疏行（CSR）格式存放
+ * 顶点 v 的出边是下标区间 [offset[v], offset[v + 1]) 内的边，
+ * 每条边的终点、价格、时长、车次分别存放在平行的 int 数组中；
+ * 同一顶点的出边保持加入运行图的先后顺序。
+ * 另有一份按终点分组的反向索引（入边），供反向搜索使用。
+ * 快照创建后不再改变，可以被多个线程同时读取。
+ */
+public final class RailwaySnapshot {
+
+    private final int vertexCount;
+    private final int[] offset;     // 长度 vertexCount + 1
+    private final int[] target;
+    private final int[] price;
+    private final int[] duration;
+    private final int[] trainIdx;   // 车次在 trains 中的下标
+    private final TrainID[] trains;
+    // 反向索引：顶点 v 的入边为 [revOffset[v], revOffset[v + 1]) 内的边，revEdge 为其在正向数组中的下标
+    private final int[] revOffset;
+    private final int[] revSource;
+    private final int[] revEdge;
+
+    /**
+     * 由边表构建快照（按起点做一次稳定的计数排序）
+     * @param vertexCount 顶点数，所有起点、终点须小于它
+     * @param edgeCount 边数
+     * @param from 各边起点
+     * @param to 各边终点
+     * @param price 各边价格
+     * @param duration 各边时长
+     * @param trainIdx 各边车次下标
+     * @param trains 车次表
+     */
+    RailwaySnapshot(int vertexCount, int edgeCount, int[] from, int[] to, int[] price, int[] duration,
+                    int[] trainIdx, TrainID[] trains) {
+        this.vertexCount = vertexCount;
+        this.offset = new int[vertexCount + 1];
+        this.target = new int[edgeCount];
+        this.price = new int[edgeCount];
+        this.duration = new int[edgeCount];
+        this.trainIdx = new int[edgeCount];
+        this.trains = trains;
+
+        for (int e = 0; e < edgeCount; e++) {
+            offset[from[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offset[v + 1] += offset[v];
+        }
+        int[] next = new int[vertexCount];
+        System.arraycopy(offset, 0, next, 0, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[from[e]]++;
+            this.target[slot] = to[e];
+            this.price[slot] = price[e];
+            this.duration[slot] = duration[e];
+            this.trainIdx[slot] = trainIdx[e];
+        }
+
+        this.revOffset = new int[vertexCount + 1];
+        this.revSource = new int[edgeCount];
+        this.revEdge = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            revOffset[this.target[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            revOffset[v + 1] += revOffset[v];
+        }
+        System.arraycopy(revOffset, 0, next, 0, vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int e = offset[v]; e < offset[v + 1]; e++) {
+                int slot = next[this.target[e]]++;
+                revSource[slot] = v;
+                revEdge[slot] = e;
+            }
+        }
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return target.length;
+    }
+
+    /**
+     * 顶点 v 第一条出边的下标
+     */
+    public int begin(int v) {
+        return offset[v];
+    }
+
+    /**
+     * 顶点 v 最后一条出边之后的下标
+     */
+    public int end(int v) {
+        return offset[v + 1];
+    }
+
+    /**
+     * 顶点 v 第一条入边在反向索引中的下标
+     */
+    public int reverseBegin(int v) {
+        return revOffset[v];
+    }
+
+    /**
+     * 顶点 v 最后一条入边之后在反向索引中的下标
+     */
+    public int reverseEnd(int v) {
+        return revOffset[v + 1];
+    }
+
+    /**
+     * 反向索引中第 i 条入边的起点
+     */
+    public int reverseSource(int i) {
+        return revSource[i];
+    }
+
+    /**
+     * 反向索引中第 i 条入边在正向数组中的下标，可用于取权重、车次
+     */
+    public int reverseEdge(int i) {
+        return revEdge[i];
+    }
+
+    public int target(int e) {
+        return target[e];
+    }
+
+    public int price(int e) {
+        return price[e];
+    }
+
+    public int duration(int e) {
+        return duration[e];
+    }
+
+    /**
+     * 边的权重
+     * @param e 边的下标
+     * @param type 0-价格，1-时长
+     */
+    public int weight(int e, int type) {
+        return type == 1 ? duration[e] : price[e];
+    }
+
+    public int trainIndex(int e) {
+        return trainIdx[e];
+    }
+
+    public TrainID train(int e) {
+        return trains[trainIdx[e]];
+    }
+
+    /**
+     * 顶点是否在快照中
+     */
+    public boolean contains(int v) {
+        return v >= 0 && v < vertexCount;
+    }
+}
@@ -0,0 +1,298 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.JourneyInfo;
+import boyuai.trainsys.util.Time;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+
+import java.util.Arrays;
+
+/**
+ * 按轮次（RAPTOR）的多目标乘车方案查询
+ * 每个运行计划是一条"线路"，每天按相同时刻发一趟车。第 k 轮只考察恰好乘坐 k 趟车的方案：
+ * 对上一轮有改进的站点，取经过它们的线路，沿线路的站点顺序扫描一遍，
+ * 在能赶上的最早一班车上车，并在之后各站下车。
+ * 每个站点保存一组互不支配的标签（到达时刻、票价、换乘次数），
+ * 结果是到达站上的 Pareto 最优方案：任何一个方案都不会在三项上同时不劣于另一个。
+ * 线路与站点数组按运行计划一次构建好，查询时只做顺序扫描，不需要优先级队列。
+ * 对象创建后不再改变，运行计划变化时需重新构建。
+ */
+public final class Raptor {
+
+    public static final int MAX_ROUNDS = 5;     // 最多乘坐的车次数，即最多换乘 4 次
+    private static final int MINUTES_PER_DAY = 1440;
+
+    private final int stationCount;
+    private final TrainID[] trains;
+    // 线路 r 的站点为 routeStops[routeOffset[r], routeOffset[r + 1])，
+    // 以及相对始发日零点的到站、离站时刻和从始发站起的累计票价
+    private final int[] routeOffset;
+    private final int[] routeStops;
+    private final int[] arrivalAt;
+    private final int[] departureAt;
+    private final int[] fareFromStart;
+    // 经过站点 s 的线路：stopRoute / stopPosition 的 [stopOffset[s], stopOffset[s + 1]) 部分
+    private final int[] stopOffset;
+    private final int[] stopRoute;
+    private final int[] stopPosition;
+
+    /**
+     * 一个标签：到达某站的一种方案，沿 parent 可回溯出全部乘车段
+     */
+    private static final class Label {
+        final int arrival;      // 相对查询日零点的分钟数
+        final int price;
+        final int round;        // 乘坐的车次数
+        final Label parent;     // 上车站的标签，第 0 轮为null
+        final int route;
+        final int day;          // 所乘车次的始发日（相对查询日）
+        final int boardIndex;   // 上下车站在 routeStops 中的下标
+        final int alightIndex;
+
+        Label(int arrival, int price, int round, Label parent, int route, int day, int boardIndex, int alightIndex) {
+            this.arrival = arrival;
+            this.price = price;
+            this.round = round;
+            this.parent = parent;
+            this.route = route;
+            this.day = day;
+            this.boardIndex = boardIndex;
+            this.alightIndex = alightIndex;
+        }
+
+        boolean dominates(int otherArrival, int otherPrice) {
+            return arrival <= otherArrival && price <= otherPrice;
+        }
+    }
+
+    /**
+     * 线路扫描过程中"在车上"的标签：在 boardIndex 站上了始发日为 day 的车
+     */
+    private static final class Riding {
+        final Label from;
+        final int day;
+        final int boardIndex;
+        final int baseFare;     // 到站票价 = baseFare + fareFromStart[下车站]
+
+        Riding(Label from, int day, int boardIndex, int baseFare) {
+            this.from = from;
+            this.day = day;
+            this.boardIndex = boardIndex;
+            this.baseFare = baseFare;
+        }
+    }
+
+    /**
+     * 由运行计划构建
+     * @param schedulers 全部运行计划
+     */
+    public Raptor(SeqList<TrainScheduler> schedulers) {
+        int routeCount = schedulers.length();
+        int stopCount = 0;
+        int maxStation = -1;
+        for (int r = 0; r < routeCount; r++) {
+            TrainScheduler scheduler = schedulers.visit(r);
+            stopCount += scheduler.getPassingStationNum();
+            for (int j = 0; j < scheduler.getPassingStationNum(); j++) {
+                maxStation = Math.max(maxStation, scheduler.getStation(j).value());
+            }
+        }
+        this.stationCount = maxStation + 1;
+        this.trains = new TrainID[routeCount];
+        this.routeOffset = new int[routeCount + 1];
+        this.routeStops = new int[stopCount];
+        this.arrivalAt = new int[stopCount];
+        this.departureAt = new int[stopCount];
+        this.fareFromStart = new int[stopCount];
+        this.stopOffset = new int[stationCount + 1];
+
+        int i = 0;
+        for (int r = 0; r < routeCount; r++) {
+            TrainScheduler scheduler = schedulers.visit(r);
+            trains[r] = scheduler.getTrainID();
+            routeOffset[r] = i;
+            int time = scheduler.getStartTime();
+            int fare = 0;
+            for (int j = 0; j < scheduler.getPassingStationNum(); j++, i++) {
+                routeStops[i] = scheduler.getStation(j).value();
+                arrivalAt[i] = time;
+                departureAt[i] = time;  // 不考虑停站时间，到站即离站
+                fareFromStart[i] = fare;
+                stopOffset[routeStops[i] + 1]++;
+                if (j + 1 < scheduler.getPassingStationNum()) {
+                    time += scheduler.getDuration(j);
+                    fare += scheduler.getPrice(j);
+                }
+            }
+        }
+        routeOffset[routeCount] = i;
+
+        for (int s = 0; s < stationCount; s++) {
+            stopOffset[s + 1] += stopOffset[s];
+        }
+        this.stopRoute = new int[stopCount];
+        this.stopPosition = new int[stopCount];
+        int[] next = Arrays.copyOf(stopOffset, stationCount);
+        for (int r = 0; r < routeCount; r++) {
+            for (int k = routeOffset[r]; k < routeOffset[r + 1]; k++) {
+                int slot = next[routeStops[k]]++;
+                stopRoute[slot] = r;
+                stopPosition[slot] = k;
+            }
+        }
+    }
+
+    /**
+     * 查询在给定时刻之后从出发站出发、到达到达站的全部 Pareto 最优方案
+     * @param departureStationID 出发站ID
+     * @param arrivalStationID 到达站ID
+     * @param departAfter 最早出发时刻
+     * @return 按到达时刻排列的方案，找不到时为空
+     */
+    public SeqList<JourneyInfo> paretoJourneys(int departureStationID, int arrivalStationID, Time departAfter) {
+        SeqList<JourneyInfo> result = new SeqList<>();
+        if (departureStationID < 0 || departureStationID >= stationCount
+                || arrivalStationID < 0 || arrivalStationID >= stationCount
+                || departureStationID == arrivalStationID) {
+            return result;
+        }
+
+        int start = departAfter.getHour() * 60 + departAfter.getMin();
+        int lastDeparture = ConnectionScan.SEARCH_DAYS * MINUTES_PER_DAY;  // 只在搜索范围内的车次上车
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SeqList<Label>[] best = new SeqList[stationCount];      // 各站所有轮次中保留下来的标签
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SeqList<Label>[] previous = new SeqList[stationCount];  // 上一轮新加入的标签
+        SeqList<Integer> marked = new SeqList<>();
+        Label origin = new Label(start, 0, 0, null, -1, 0, -1, -1);
+        best[departureStationID] = new SeqList<>();
+        best[departureStationID].pushBack(origin);
+        previous[departureStationID] = new SeqList<>();
+        previous[departureStationID].pushBack(origin);
+        marked.pushBack(departureStationID);
+
+        int routeCount = trains.length;
+        int[] firstIndex = new int[routeCount];   // 本轮各线路最靠前的改进站点下标，-1表示不扫描
+        for (int round = 1; round <= MAX_ROUNDS && marked.length() > 0; round++) {
+            // 收集经过改进站点的线路
+            Arrays.fill(firstIndex, -1);
+            for (int m = 0; m < marked.length(); m++) {
+                int s = marked.visit(m);
+                for (int k = stopOffset[s]; k < stopOffset[s + 1]; k++) {
+                    int r = stopRoute[k];
+                    if (firstIndex[r] < 0 || stopPosition[k] < firstIndex[r]) {
+                        firstIndex[r] = stopPosition[k];
+                    }
+                }
+            }
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            SeqList<Label>[] current = new SeqList[stationCount];
+            SeqList<Integer> nextMarked = new SeqList<>();
+            SeqList<Riding> riding = new SeqList<>();
+            for (int r = 0; r < routeCount; r++) {
+                if (firstIndex[r] < 0) continue;
+                riding.clear();
+                for (int k = firstIndex[r]; k < routeOffset[r + 1]; k++) {
+                    int s = routeStops[k];
+                    // 1. 车上的标签在本站下车
+                    for (int j = 0; j < riding.length(); j++) {
+                        Riding ride = riding.visit(j);
+                        int arrival = arrivalAt[k] + ride.day * MINUTES_PER_DAY;
+                        int price = ride.baseFare + fareFromStart[k];
+                        if (isDominated(best[s], arrival, price)
+                                || isDominated(best[arrivalStationID], arrival, price)) {
+                            continue;  // 不优于本站或到达站已有的方案
+                        }
+                        Label label = new Label(arrival, price, round, ride.from, r, ride.day, ride.boardIndex, k);
+                        if (best[s] == null) best[s] = new SeqList<>();
+                        best[s].pushBack(label);
+                        if (current[s] == null) {
+                            current[s] = new SeqList<>();
+                            nextMarked.pushBack(s);
+                        }
+                        current[s].pushBack(label);
+                    }
+                    // 2. 上一轮到达本站的标签在本站上车（终点站不再上车）
+                    if (previous[s] == null || k + 1 == routeOffset[r + 1]) continue;
+                    for (int j = 0; j < previous[s].length(); j++) {
+                        Label label = previous[s].visit(j);
+                        int day = Math.floorDiv(label.arrival - departureAt[k] + MINUTES_PER_DAY - 1, MINUTES_PER_DAY);
+                        if (departureAt[k] + day * MINUTES_PER_DAY >= lastDeparture) continue;
+                        Riding ride = new Riding(label, day, k, label.price - fareFromStart[k]);
+                        addRiding(riding, ride);
+                    }
+                }
+            }
+            previous = current;
+            marked = nextMarked;
+        }
+        return collect(best[arrivalStationID], departAfter);
+    }
+
+    /**
+     * 站点上已有的标签中是否有不劣于 (arrival, price) 的；已有标签的轮次不多于当前轮次
+     */
+    private static boolean isDominated(SeqList<Label> bag, int arrival, int price) {
+        if (bag == null) return false;
+        for (int i = 0; i < bag.length(); i++) {
+            if (bag.visit(i).dominates(arrival, price)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 加入车上的标签：同一线路上，始发日不晚且基准票价不高的标签在之后每一站都不劣，
+     * 因此只保留互不支配的
+     */
+    private static void addRiding(SeqList<Riding> riding, Riding ride) {
+        for (int i = 0; i < riding.length(); i++) {
+            Riding other = riding.visit(i);
+            if (other.day <= ride.day && other.baseFare <= ride.baseFare) return;
+        }
+        for (int i = riding.length() - 1; i >= 0; i--) {
+            Riding other = riding.visit(i);
+            if (ride.day <= other.day && ride.baseFare <= other.baseFare) riding.remove(i);
+        }
+        riding.pushBack(ride);
+    }
+
+    /**
+     * 从到达站的标签中挑出 Pareto 最优者，转换为乘车方案
+     */
+    private SeqList<JourneyInfo> collect(SeqList<Label> bag, Time departAfter) {
+        SeqList<JourneyInfo> result = new SeqList<>();
+        if (bag == null) return result;
+        SeqList<Label> front = new SeqList<>();
+        for (int i = 0; i < bag.length(); i++) {
+            Label a = bag.visit(i);
+            boolean dominated = false;
+            for (int j = 0; j < bag.length() && !dominated; j++) {
+                Label b = bag.visit(j);
+                dominated = j != i && b.arrival <= a.arrival && b.price <= a.price && b.round <= a.round
+                        && (b.arrival < a.arrival || b.price < a.price || b.round < a.round || j < i);
+            }
+            if (!dominated) {
+                // 按到达时刻插入
+                int pos = front.length();
+                while (pos > 0 && front.visit(pos - 1).arrival > a.arrival) pos--;
+                front.insert(pos, a);
+            }
+        }
+        Time midnight = new Time(0, 0, departAfter.getDate().getMon(), departAfter.getDate().getMday());
+        for (int i = 0; i < front.length(); i++) {
+            SeqList<JourneyInfo.Leg> legs = new SeqList<>();
+            for (Label label = front.visit(i); label.parent != null; label = label.parent) {
+                int offset = label.day * MINUTES_PER_DAY;
+                legs.insert(0, new JourneyInfo.Leg(trains[label.route],
+                        new StationID(routeStops[label.boardIndex]), new StationID(routeStops[label.alightIndex]),
+                        midnight.addMinutes(departureAt[label.boardIndex] + offset),
+                        midnight.addMinutes(arrivalAt[label.alightIndex] + offset),
+                        fareFromStart[label.alightIndex] - fareFromStart[label.boardIndex]));
+            }
+            result.pushBack(new JourneyInfo(legs));
+        }
+        return result;
+    }
+}
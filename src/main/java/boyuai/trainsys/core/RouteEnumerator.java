@@ -0,0 +1,210 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.info.PathInfo;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 出发站到到达站的简单路径（不重复经过站点）枚举器
+ * 用显式栈做迭代式深度优先搜索，每调用一次 next() 才向前搜索到下一条路径，不会栈溢出。
+ * 搜索受四个上限约束：最大换乘段数（边数）、最多返回条数、代价上限和截止时间；
+ * 开始前从到达站沿入边做一次反向搜索，得到"能到达终点"的站点位图，
+ * 给出代价上限时同时求出各站到终点的最短代价，作为剪枝的下界。
+ * 同一对站点之间有多趟车次时，每条边都单独成为一条路径。
+ */
+public final class RouteEnumerator implements Iterator<PathInfo> {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;  // 每扩展这么多条边检查一次时间
+
+    private final RailwaySnapshot graph;
+    private final int arrival;
+    private final int type;
+    private final int maxHops;
+    private final int maxResults;
+    private final long maxCost;
+    private final long deadline;        // System.nanoTime() 意义下的截止时刻
+
+    private final BitSet reachable;     // 能到达终点的站点
+    private final long[] lowerBound;    // 到终点的最短代价，未给出代价上限时为null
+
+    // 显式栈：第 i 层的站点、下一条待检查的出边、到该站的累计代价
+    private final int[] stackVertex;
+    private final int[] stackEdge;
+    private final long[] stackCost;
+    private int depth;
+    private final BitSet onPath = new BitSet();
+
+    private PathInfo pending;           // 已找到但尚未被取走的路径
+    private int produced;
+    private int steps;
+    private boolean exhausted;
+    private boolean truncated;
+
+    /**
+     * 构造函数
+     * @param graph 运行图快照
+     * @param departure 出发站ID
+     * @param arrival 到达站ID
+     * @param type 代价类型，0-价格，1-时间
+     * @param maxHops 路径最多包含的边数
+     * @param maxResults 最多返回的路径条数
+     * @param maxCost 路径代价上限，Long.MAX_VALUE 表示不限
+     * @param timeoutMillis 从现在起允许搜索的毫秒数
+     */
+    RouteEnumerator(RailwaySnapshot graph, int departure, int arrival, int type,
+                    int maxHops, int maxResults, long maxCost, long timeoutMillis) {
+        this.graph = graph;
+        this.arrival = arrival;
+        this.type = type;
+        this.maxHops = Math.max(maxHops, 0);
+        this.maxResults = maxResults;
+        this.maxCost = maxCost;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.stackVertex = new int[this.maxHops + 1];
+        this.stackEdge = new int[this.maxHops + 1];
+        this.stackCost = new long[this.maxHops + 1];
+
+        if (departure == arrival) {
+            // 出发站即到达站：只有一条不含任何边的路径
+            SeqList<Integer> path = new SeqList<>();
+            path.insert(0, departure);
+            this.reachable = null;
+            this.lowerBound = null;
+            this.pending = maxResults > 0 ? new PathInfo(path, 0, type) : null;
+            this.exhausted = true;
+            return;
+        }
+        if (!graph.contains(departure) || !graph.contains(arrival)) {
+            this.reachable = null;
+            this.lowerBound = null;
+            this.exhausted = true;
+            return;
+        }
+        this.lowerBound = maxCost == Long.MAX_VALUE ? null : ShortestPathTree.to(graph, arrival, type);
+        this.reachable = reverseReachable(graph, arrival);
+        if (!reachable.get(departure) || maxResults <= 0 || !withinCost(departure, 0)) {
+            this.exhausted = true;
+            return;
+        }
+        push(departure, 0);
+    }
+
+    /**
+     * 从到达站沿入边广度优先搜索，标记所有能到达终点的站点
+     */
+    private static BitSet reverseReachable(RailwaySnapshot graph, int arrival) {
+        BitSet seen = new BitSet(graph.vertexCount());
+        int[] queue = new int[graph.vertexCount()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = arrival;
+        seen.set(arrival);
+        while (head < tail) {
+            int v = queue[head++];
+            for (int i = graph.reverseBegin(v); i < graph.reverseEnd(v); i++) {
+                int u = graph.reverseSource(i);
+                if (!seen.get(u)) {
+                    seen.set(u);
+                    queue[tail++] = u;
+                }
+            }
+        }
+        return seen;
+    }
+
+    private boolean withinCost(int v, long cost) {
+        return lowerBound == null || (lowerBound[v] != Long.MAX_VALUE && cost + lowerBound[v] <= maxCost);
+    }
+
+    private void push(int v, long cost) {
+        stackVertex[depth] = v;
+        stackEdge[depth] = graph.begin(v);
+        stackCost[depth] = cost;
+        depth++;
+        onPath.set(v);
+    }
+
+    private void pop() {
+        depth--;
+        onPath.clear(stackVertex[depth]);
+    }
+
+    /**
+     * 继续深度优先搜索，直到找到下一条路径或搜索结束
+     */
+    private void advance() {
+        while (depth > 0) {
+            if ((++steps & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0) {
+                truncated = true;
+                break;
+            }
+            int top = depth - 1;
+            int u = stackVertex[top];
+            // 已到达终点、边数用尽或出边检查完毕：回溯
+            if (u == arrival || top == maxHops || stackEdge[top] == graph.end(u)) {
+                pop();
+                continue;
+            }
+            int e = stackEdge[top]++;
+            int v = graph.target(e);
+            if (onPath.get(v) || !reachable.get(v)) {
+                continue;
+            }
+            long cost = stackCost[top] + graph.weight(e, type);
+            if (!withinCost(v, cost)) {
+                continue;
+            }
+            push(v, cost);
+            if (v == arrival) {
+                pending = currentPath(cost);
+                return;
+            }
+        }
+        exhausted = true;
+    }
+
+    private PathInfo currentPath(long cost) {
+        SeqList<Integer> path = new SeqList<>();
+        for (int i = 0; i < depth; i++) {
+            path.insert(i, stackVertex[i]);
+        }
+        return new PathInfo(path, cost, type);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending != null) {
+            return true;
+        }
+        if (exhausted || truncated) {
+            return false;
+        }
+        if (produced >= maxResults) {
+            truncated = true;
+            return false;
+        }
+        advance();
+        return pending != null;
+    }
+
+    @Override
+    public PathInfo next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PathInfo path = pending;
+        pending = null;
+        produced++;
+        return path;
+    }
+
+    /**
+     * 枚举是否因条数上限或截止时间而提前结束（可能还有未列出的路径）
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -0,0 +1,24 @@
+package boyuai.trainsys.core;
+
+/**
+ * 点到点最短路的搜索方式
+ */
+public enum SearchMode {
+    DIJKSTRA,       // 单向 Dijkstra
+    BIDIRECTIONAL,  // 双向 Dijkstra：从两端同时搜索，相遇即停
+    ALT;            // A* + 路标（landmark）+ 三角不等式下界
+
+    /**
+     * 由命令参数解析搜索方式（不区分大小写）
+     * @param name 名称
+     * @return 搜索方式，名称无效时返回null
+     */
+    public static SearchMode parse(String name) {
+        for (SearchMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * 最短路搜索的工作区，由各搜索算法按线程持有，跨查询复用
+ * distance/prev 按代数（generation）打标记：stamp[v] 不等于当前代数的顶点视为尚未访问，
+ * 因此每次查询只需把代数加一，不必清空或重新分配数组
+ */
+final class SearchWorkspace {
+    long[] distance = new long[0];
+    int[] prev = new int[0];    // 前驱顶点或前驱边，由使用者决定
+    int[] stamp = new int[0];
+    int generation;
+    IndexedPriorityQueue heap = new IndexedPriorityQueue(0);
+
+    /**
+     * 开始一次新的查询
+     * @param numOfVer 顶点数
+     */
+    void begin(int numOfVer) {
+        if (stamp.length < numOfVer) {
+            distance = Arrays.copyOf(distance, numOfVer);
+            prev = Arrays.copyOf(prev, numOfVer);
+            stamp = Arrays.copyOf(stamp, numOfVer);
+            heap.ensureCapacity(numOfVer);
+        }
+        heap.clear();
+        if (++generation == 0) {  // 代数回绕时清空一次标记
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    long distance(int v) {
+        return stamp[v] == generation ? distance[v] : Long.MAX_VALUE;
+    }
+
+    void setDistance(int v, long d, int from) {
+        stamp[v] = generation;
+        distance[v] = d;
+        prev[v] = from;
+    }
+}
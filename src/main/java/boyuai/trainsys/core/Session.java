@@ -0,0 +1,68 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.config.Config;
+import boyuai.trainsys.info.UserInfo;
+import boyuai.trainsys.util.Types.UserID;
+
+/**
+ * 会话：一个客户端与系统之间的上下文，记录当前登录的用户
+ * 会话之间互不影响，同一时刻可以有任意多个用户分别在各自的会话中登录。
+ * 一个会话同一时刻只应被一个线程使用；当前用户字段是 volatile 的，换线程继续使用也能看到最新值。
+ * 登录时保存用户信息的副本，之后修改该用户的权限或密码不影响已登录的会话，重新登录后才生效。
+ */
+public final class Session {
+
+    // 未登录时的占位用户，用户ID为-1
+    private static final UserInfo GUEST = new UserInfo(new UserID(-1L), "", "", 0);
+
+    private final String token;
+    private volatile UserInfo user;
+
+    /**
+     * 构造函数，新会话处于未登录状态
+     * @param token 会话令牌
+     */
+    public Session(String token) {
+        this.token = token;
+        this.user = GUEST;
+    }
+
+    /**
+     * 会话令牌，客户端凭它找回自己的会话
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 当前用户，未登录时为占位用户；只供读取
+     */
+    public UserInfo getUser() {
+        return user;
+    }
+
+    /**
+     * 以给定用户登录，保存其副本
+     */
+    void setUser(UserInfo user) {
+        this.user = new UserInfo(user);
+    }
+
+    /**
+     * 退回未登录状态
+     */
+    void clearUser() {
+        this.user = GUEST;
+    }
+
+    public boolean isLoggedIn() {
+        return user.getUserID().value() != -1;
+    }
+
+    /**
+     * 当前用户是否具有管理员权限
+     */
+    public boolean isAdmin() {
+        return user.getPrivilege() >= Config.ADMIN_PRIVILEGE;
+    }
+}
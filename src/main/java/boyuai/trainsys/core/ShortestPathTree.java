@@ -0,0 +1,60 @@
+package boyuai.trainsys.core;
+
+import boyuai.trainsys.datastructure.IndexedPriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * 单源 / 单汇最短路距离表，供路标、路线枚举、k 短路等预处理使用
+ */
+final class ShortestPathTree {
+
+    static final long INF = Long.MAX_VALUE;
+
+    private ShortestPathTree() {} // 防止实例化
+
+    /**
+     * 从 source 出发沿出边到各顶点的最短距离，不可达为 Long.MAX_VALUE
+     */
+    static long[] from(RailwaySnapshot graph, int source, int type) {
+        return distances(graph, source, type, false);
+    }
+
+    /**
+     * 各顶点沿出边到 target 的最短距离（在反向图上从 target 出发求得），不可达为 Long.MAX_VALUE
+     */
+    static long[] to(RailwaySnapshot graph, int target, int type) {
+        return distances(graph, target, type, true);
+    }
+
+    private static long[] distances(RailwaySnapshot graph, int root, int type, boolean reverse) {
+        int n = graph.vertexCount();
+        long[] dist = new long[n];
+        Arrays.fill(dist, INF);
+        IndexedPriorityQueue heap = new IndexedPriorityQueue(n);
+        dist[root] = 0;
+        heap.offer(root, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.deQueue();
+            if (reverse) {
+                for (int i = graph.reverseBegin(u); i < graph.reverseEnd(u); i++) {
+                    relax(graph, heap, dist, u, graph.reverseSource(i), graph.reverseEdge(i), type);
+                }
+            } else {
+                for (int e = graph.begin(u); e < graph.end(u); e++) {
+                    relax(graph, heap, dist, u, graph.target(e), e, type);
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static void relax(RailwaySnapshot graph, IndexedPriorityQueue heap, long[] dist,
+                              int u, int v, int e, int type) {
+        long d = dist[u] + graph.weight(e, type);
+        if (d < dist[v]) {
+            dist[v] = d;
+            heap.offer(v, d);
+        }
+    }
+}
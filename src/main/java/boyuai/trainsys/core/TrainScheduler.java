@@ -20,6 +20,7 @@ public class TrainScheduler implements Comparable<TrainScheduler> {
     private StationID[] stations;               // 途径站点的数组
     private int[] duration;                     // 每一段历时的数组
     private int[] price;                        // 每一段票价的数组
+    private int startTime;                      // 始发时刻（当天零点起的分钟数），列车每天按此时刻发车
 
     /**
      * 构造函数
@@ -63,6 +64,19 @@ public class TrainScheduler implements Comparable<TrainScheduler> {
         return -1;
     }
 
+    /**
+     * 在第 from 站之后查找下车站
+     * @param from 上车站下标
+     * @param stationID 下车站
+     * @return 下车站下标，不在 from 之后时返回-1
+     */
+    public int findArrivalStation(int from, StationID stationID) {
+        for (int i = from + 1; i < passingStationNum; i++) {
+            if (stations[i].equals(stationID)) return i;
+        }
+        return -1;
+    }
+
     public void setPrice(int[] price) {
         for (int i = 0; i + 1 < passingStationNum; i++) {
             this.price[i] = price[i];
@@ -136,6 +150,7 @@ public class TrainScheduler implements Comparable<TrainScheduler> {
         StringBuilder sb = new StringBuilder();
         sb.append("TrainID: ").append(trainID).append("\n");
         sb.append("SeatNum: ").append(seatNum).append("\n");
+        sb.append("StartTime: ").append(String.format("%02d:%02d", startTime / 60, startTime % 60)).append("\n");
         sb.append("PassingStationNum: ").append(passingStationNum).append("\n");
         sb.append("Stations: ");
         for (int i = 0; i < passingStationNum; i++) {
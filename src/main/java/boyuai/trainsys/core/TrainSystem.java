@@ -1,81 +1,147 @@
 package boyuai.trainsys.core;
 
 import boyuai.trainsys.config.Config;
+import boyuai.trainsys.info.JourneyInfo;
+import boyuai.trainsys.info.PathInfo;
 import boyuai.trainsys.info.PurchaseInfo;
-import boyuai.trainsys.info.TripInfo;
 import boyuai.trainsys.info.UserInfo;
+import boyuai.trainsys.datastructure.SeqList;
 import boyuai.trainsys.manager.SchedulerManager;
+import boyuai.trainsys.manager.SessionManager;
 import boyuai.trainsys.manager.StationManager;
 import boyuai.trainsys.manager.TicketManager;
 import boyuai.trainsys.manager.TripManager;
 import boyuai.trainsys.manager.UserManager;
 import boyuai.trainsys.util.Date;
 import boyuai.trainsys.util.FixedString;
-import boyuai.trainsys.util.PrioritizedWaitingList;
+import boyuai.trainsys.util.Time;
 import boyuai.trainsys.util.Types.StationID;
 import boyuai.trainsys.util.Types.TrainID;
 import boyuai.trainsys.util.Types.UserID;
 import lombok.Data;
 import lombok.Getter;
 
+import java.util.concurrent.CompletableFuture;
+
 /*
  * part1 运行计划管理子系统（需要系统管理员权限）
  * part2 票务管理子系统（需要系统管理员权限）
  * part3 车票交易子系统
  * part4 路线查询子系统
  * part5 用户管理子系统
+ *
+ * 需要用户身份的操作都以会话（Session）作为第一个参数，多个会话可以由不同线程同时操作；
+ * 下层的各个管理器都是线程安全的。
  */
 @Data
 public class TrainSystem {
 
-    private UserInfo currentUser;
+    private final SessionManager sessionManager;
     private final UserManager userManager;
     private final RailwayGraph railwayGraph;
     private final SchedulerManager schedulerManager;
     private final TicketManager ticketManager;
-    private final PrioritizedWaitingList waitingList;
+    // 购票/退票请求由流水线的处理线程成批处理
+    private final OrderPipeline orderPipeline;
     private final TripManager tripManager;
     private final StationManager stationManager;
+    // 按时刻表查询的连接扫描引擎，加入新的运行计划后置为null，下次查询时重建
+    private volatile ConnectionScan connectionScan;
+    // 多目标乘车方案查询的线路数组，与 connectionScan 一同失效
+    private volatile Raptor raptor;
 
     public TrainSystem() {
+        this.sessionManager = new SessionManager();
         this.stationManager = new StationManager("data/station.txt");
         this.userManager = new UserManager("data/users");
         this.railwayGraph = new RailwayGraph();
+        if (Config.USE_CONTRACTION_HIERARCHY) {
+            railwayGraph.enableHierarchy();
+        }
+        if (Config.USE_DISTANCE_TABLE) {
+            railwayGraph.enableDistanceTable(Config.DISTANCE_TABLE_FILE);
+        }
         this.schedulerManager = new SchedulerManager("data/schedulers");
-        this.ticketManager = new TicketManager("data/tickets");
-        this.waitingList = new PrioritizedWaitingList();
+        this.ticketManager = new TicketManager("data/tickets", Config.TRACK_SEAT_NUMBERS);
         this.tripManager = new TripManager("data/trips");
+        if (ticketManager.isTrackingSeats()) {
+            rebuildSeatMaps();
+        }
+        this.orderPipeline = new OrderPipeline(schedulerManager, ticketManager, tripManager,
+                Config.INVENTORY_SHARDS, Config.ORDER_QUEUE_CAPACITY, Config.ORDER_BATCH_SIZE);
 
         // 默认管理员账号ID为0
         UserID adminID = new UserID(0L);
-        if (userManager.existUser(adminID)) {
-            currentUser = userManager.findUser(adminID);
-        } else {
-            currentUser = new UserInfo(adminID, "admin", "admin", Config.ADMIN_PRIVILEGE);
+        if (!userManager.existUser(adminID)) {
             userManager.insertUser(adminID, "admin", "admin", Config.ADMIN_PRIVILEGE);
         }
     }
 
+    // ===== 会话 =====
+
+    /**
+     * 新建一个未登录的会话
+     */
+    public Session openSession() {
+        return sessionManager.openSession();
+    }
+
+    /**
+     * 新建一个以默认管理员身份登录的会话，供本地控制台使用
+     */
+    public Session openConsoleSession() {
+        Session session = sessionManager.openSession();
+        session.setUser(userManager.findUser(new UserID(0L)));
+        return session;
+    }
+
+    /**
+     * 按令牌找回会话
+     * @return 会话，不存在时返回null
+     */
+    public Session findSession(String token) {
+        return sessionManager.findSession(token);
+    }
+
+    /**
+     * 关闭会话，之后令牌失效
+     */
+    public void closeSession(Session session) {
+        sessionManager.closeSession(session.getToken());
+    }
+
     // ===== Part 1: 运行计划管理（管理员） =====
-    public void addTrainScheduler(FixedString trainID, int seatNum, int passingStationNumber,
+    public void addTrainScheduler(Session session, FixedString trainID, int seatNum, int passingStationNumber,
                                   int[] stations, int[] duration, int[] price) {
-        if (currentUser == null || currentUser.getPrivilege() < Config.ADMIN_PRIVILEGE) {
+        addTrainScheduler(session, trainID, seatNum, passingStationNumber, stations, duration, price, 0);
+    }
+
+    public void addTrainScheduler(Session session, FixedString trainID, int seatNum, int passingStationNumber,
+                                  int[] stations, int[] duration, int[] price, int startTime) {
+        if (!session.isAdmin()) {
             System.out.println("Permission denied.");
             return;
         }
-        if (schedulerManager.existScheduler(trainID)) {
-            System.out.println("TrainID existed.");
-            return;
-        }
-        schedulerManager.addScheduler(trainID, seatNum, passingStationNumber, stations, duration, price);
-        for (int i = 0; i + 1 < passingStationNumber; i++) {
-            railwayGraph.addRoute(stations[i], stations[i + 1], duration[i], price[i], new TrainID(trainID.toString()));
+        // 查重与写入须是一个整体，运行计划的增删在 schedulerManager 上互斥
+        synchronized (schedulerManager) {
+            if (schedulerManager.existScheduler(trainID)) {
+                System.out.println("TrainID existed.");
+                return;
+            }
+            schedulerManager.addScheduler(trainID, seatNum, passingStationNumber, stations, duration, price, startTime);
+            connectionScan = null;
+            raptor = null;
+            for (int i = 0; i + 1 < passingStationNumber; i++) {
+                railwayGraph.addRoute(stations[i], stations[i + 1], duration[i], price[i], new TrainID(trainID.toString()));
+            }
         }
+        railwayGraph.refreshHierarchies();
+        railwayGraph.refreshDistanceTable();
         System.out.println("Train added.");
     }
 
-    public void queryTrainScheduler(FixedString trainID) {
-        if (currentUser == null || currentUser.getPrivilege() < Config.ADMIN_PRIVILEGE) {
+    public void queryTrainScheduler(Session session, FixedString trainID) {
+        if (!session.isAdmin()) {
             System.out.println("Permission denied.");
             return;
         }
@@ -87,9 +153,34 @@ public class TrainSystem {
         System.out.println(relatedInfo);
     }
 
+    /**
+     * 删除运行计划，把该车次的区间从运行图中移除，并停售该车次已开售的全部车票；
+     * 已售出车票的行程记录不受影响
+     */
+    public void deleteTrainScheduler(Session session, FixedString trainID) {
+        if (!session.isAdmin()) {
+            System.out.println("Permission denied.");
+            return;
+        }
+        synchronized (schedulerManager) {
+            if (!schedulerManager.existScheduler(trainID)) {
+                System.out.println("Train not found.");
+                return;
+            }
+            schedulerManager.removeScheduler(trainID);
+            connectionScan = null;
+            raptor = null;
+            railwayGraph.removeTrain(new TrainID(trainID.toString()));
+            ticketManager.expireTrain(trainID);
+        }
+        railwayGraph.refreshHierarchies();
+        railwayGraph.refreshDistanceTable();
+        System.out.println("Train deleted.");
+    }
+
     // ===== Part 2: 票务管理（管理员） =====
-    public void releaseTicket(TrainScheduler scheduler, Date date) {
-        if (currentUser != null && currentUser.getPrivilege() >= Config.ADMIN_PRIVILEGE) {
+    public void releaseTicket(Session session, TrainScheduler scheduler, Date date) {
+        if (session.isAdmin()) {
             ticketManager.releaseTicket(scheduler, date);
             System.out.println("Ticket released.");
         } else {
@@ -97,8 +188,8 @@ public class TrainSystem {
         }
     }
 
-    public void expireTicket(FixedString trainID, Date date) {
-        if (currentUser != null && currentUser.getPrivilege() >= Config.ADMIN_PRIVILEGE) {
+    public void expireTicket(Session session, FixedString trainID, Date date) {
+        if (session.isAdmin()) {
             ticketManager.expireTicket(trainID, date);
             System.out.println("Ticket expired.");
         } else {
@@ -106,79 +197,117 @@ public class TrainSystem {
         }
     }
 
+    /**
+     * 输出购票流水线各分片的队列深度、处理数与时延
+     */
+    public void printOrderStats(Session session) {
+        if (!session.isAdmin()) {
+            System.out.println("Permission denied.");
+            return;
+        }
+        SeqList<OrderPipeline.ShardStats> stats = orderPipeline.getStats();
+        for (int i = 0; i < stats.length(); i++) {
+            System.out.println(stats.visit(i));
+        }
+    }
+
     // ===== Part 3: 交易 =====
     public int queryRemainingTicket(FixedString trainID, Date date, StationID departureStation) {
         return ticketManager.querySeat(trainID, date, departureStation.value());
     }
 
-    private boolean trySatisfyOrder() {
-        if (waitingList.isEmpty()) return false;
-        var purchaseInfo = waitingList.getFrontPurchaseInfo();
-        waitingList.removeHeadFromWaitingList();
-
-        System.out.println("Processing request from User " + purchaseInfo.getUserID().value());
-
-        if (purchaseInfo.isOrdering()) {
-            int remainingTickets = queryRemainingTicket(new TrainID(purchaseInfo.getTrainID().toString()),
-                    purchaseInfo.getDate(), purchaseInfo.getDepartureStation());
-            if (remainingTickets < purchaseInfo.getType()) {
-                System.out.println("No enough tickets or scheduler not exists. Order failed.");
-                return false;
-            } else {
-                ticketManager.updateSeat(new TrainID(purchaseInfo.getTrainID().toString()), purchaseInfo.getDate(),
-                        purchaseInfo.getDepartureStation().value(), -purchaseInfo.getType());
-
-                TrainScheduler schedule = schedulerManager.getScheduler(new FixedString(purchaseInfo.getTrainID().toString()));
-                int id = schedule.findStation(purchaseInfo.getDepartureStation());
-                int duration = schedule.getDuration(id);
-                int price = schedule.getPrice(id);
-                StationID arrivalStation = schedule.getStation(id + 1);
-
-                tripManager.addTrip(currentUser.getUserID().value(), new TripInfo(
-                        purchaseInfo.getTrainID(), purchaseInfo.getDepartureStation(), arrivalStation,
-                        purchaseInfo.getType(), duration, price, purchaseInfo.getDate()
-                ));
-
-                System.out.println("Order succeeded.");
-                return true;
-            }
-        } else {
-            ticketManager.updateSeat(new TrainID(purchaseInfo.getTrainID().toString()), purchaseInfo.getDate(),
-                    purchaseInfo.getDepartureStation().value(), -purchaseInfo.getType());
-
-            TrainScheduler schedule = schedulerManager.getScheduler(new FixedString(purchaseInfo.getTrainID().toString()));
-            int id = schedule.findStation(purchaseInfo.getDepartureStation());
-            int duration = schedule.getDuration(id);
-            int price = schedule.getPrice(id);
-            StationID arrivalStation = schedule.getStation(id + 1);
-
-            tripManager.removeTrip(currentUser.getUserID().value(), new TripInfo(
-                    purchaseInfo.getTrainID(), purchaseInfo.getDepartureStation(), arrivalStation,
-                    -purchaseInfo.getType(), duration, price, purchaseInfo.getDate()
-            ));
-            System.out.println("Refund succeeded.");
-            return true;
+    /**
+     * 查询从出发站到到达站（可跨多个区间段）的余票
+     * @param arrivalStation 到达站，为null时只查询出发站到下一站
+     * @return 余票数量，-1表示车次、车站不存在或车票未开售
+     */
+    public int queryRemainingTicket(FixedString trainID, Date date, StationID departureStation, StationID arrivalStation) {
+        if (arrivalStation == null) {
+            return queryRemainingTicket(trainID, date, departureStation);
         }
+        TrainScheduler schedule = schedulerManager.getScheduler(trainID);
+        if (schedule == null) return -1;
+        int from = schedule.findStation(departureStation);
+        int to = from < 0 ? -1 : schedule.findArrivalStation(from, arrivalStation);
+        if (to < 0) return -1;
+        return ticketManager.querySeat(schedule, date, from, to);
+    }
+
+    /**
+     * 由行程中记录的座位号重建各（列车，日期）的座位位图
+     */
+    private void rebuildSeatMaps() {
+        tripManager.forEachTrip(Long.MIN_VALUE, Long.MAX_VALUE, (userID, trip) -> {
+            if (trip.getSeat() < 0) return;
+            TrainScheduler schedule = schedulerManager.getScheduler(new FixedString(trip.getTrainID().toString()));
+            if (schedule == null) return;
+            int from = schedule.findStation(trip.getDepartureStation());
+            int to = from < 0 ? -1 : schedule.findArrivalStation(from, trip.getArrivalStation());
+            if (to >= 0) {
+                ticketManager.occupySeat(schedule, trip.getDate(), from, to, trip.getSeat());
+            }
+        });
     }
 
-    public void queryMyTicket() {
-        while (waitingList.isBusy()) trySatisfyOrder();
-        var tripInfo = tripManager.queryTrip(currentUser.getUserID().value());
+    public void queryMyTicket(Session session) {
+        if (!session.isLoggedIn()) {
+            System.out.println("Permission denied.");
+            return;
+        }
+        var tripInfo = tripManager.queryTrip(session.getUser().getUserID().value());
         for (int i = 0; i < tripInfo.length(); i++) {
             System.out.println(tripInfo.visit(i));
         }
     }
 
-    public void orderTicket(FixedString trainID, Date date, StationID departureStation) {
-        while (waitingList.isBusy()) trySatisfyOrder();
-        waitingList.addToWaitingList(new PurchaseInfo(currentUser.getUserID(), new TrainID(trainID.toString()), date, departureStation, +1));
-        System.out.println("Ordering request has added to waiting list.");
+    public void orderTicket(Session session, FixedString trainID, Date date, StationID departureStation) {
+        orderTicket(session, trainID, date, departureStation, null);
+    }
+
+    /**
+     * 购票并等待处理结果
+     */
+    public void orderTicket(Session session, FixedString trainID, Date date, StationID departureStation, StationID arrivalStation) {
+        System.out.println(submitOrder(session, trainID, date, departureStation, arrivalStation).join().getMessage());
+    }
+
+    /**
+     * 提交购票请求，不等待处理；未登录时直接以 PERMISSION_DENIED 完成
+     * @param arrivalStation 到达站，为null时为出发站的下一站
+     * @return 处理结果
+     */
+    public CompletableFuture<OrderOutcome> submitOrder(Session session, FixedString trainID, Date date,
+                                                       StationID departureStation, StationID arrivalStation) {
+        if (!session.isLoggedIn()) {
+            return CompletableFuture.completedFuture(OrderOutcome.PERMISSION_DENIED);
+        }
+        return orderPipeline.submit(new PurchaseInfo(session.getUser().getUserID(), new TrainID(trainID.toString()), date,
+                departureStation, arrivalStation, +1));
+    }
+
+    public void refundTicket(Session session, FixedString trainID, Date date, StationID departureStation) {
+        refundTicket(session, trainID, date, departureStation, null);
+    }
+
+    /**
+     * 退票并等待处理结果
+     */
+    public void refundTicket(Session session, FixedString trainID, Date date, StationID departureStation, StationID arrivalStation) {
+        System.out.println(submitRefund(session, trainID, date, departureStation, arrivalStation).join().getMessage());
     }
 
-    public void refundTicket(FixedString trainID, Date date, StationID departureStation) {
-        while (waitingList.isBusy()) trySatisfyOrder();
-        waitingList.addToWaitingList(new PurchaseInfo(currentUser.getUserID(), new TrainID(trainID.toString()), date, departureStation, -1));
-        System.out.println("Refunding request has added to waiting list.");
+    /**
+     * 提交退票请求，不等待处理；未登录时直接以 PERMISSION_DENIED 完成
+     * @param arrivalStation 到达站，为null时为出发站的下一站
+     * @return 处理结果
+     */
+    public CompletableFuture<OrderOutcome> submitRefund(Session session, FixedString trainID, Date date,
+                                                        StationID departureStation, StationID arrivalStation) {
+        if (!session.isLoggedIn()) {
+            return CompletableFuture.completedFuture(OrderOutcome.PERMISSION_DENIED);
+        }
+        return orderPipeline.submit(new PurchaseInfo(session.getUser().getUserID(), new TrainID(trainID.toString()), date,
+                departureStation, arrivalStation, -1));
     }
 
     // ===== Part 4: 路线查询 =====
@@ -195,13 +324,116 @@ public class TrainSystem {
             System.out.println("Disconnected. No route found.");
             return;
         }
-        railwayGraph.shortestPath(departureID.value(), arrivalID.value(), preference);
+        System.out.println(railwayGraph.shortestPath(departureID.value(), arrivalID.value(), preference));
+    }
+
+    /**
+     * 按指定的搜索方式查询最优路线，并输出本次搜索确定的顶点数
+     * @param departureID 出发站
+     * @param arrivalID 到达站
+     * @param preference 0-按价格最优，1-按时间最优
+     * @param mode 搜索方式
+     */
+    public void findBestRoute(StationID departureID, StationID arrivalID, int preference, SearchMode mode) {
+        if (!railwayGraph.checkStationAccessibility(departureID.value(), arrivalID.value())) {
+            System.out.println("Disconnected. No route found.");
+            return;
+        }
+        PathInfo path = railwayGraph.shortestPath(departureID.value(), arrivalID.value(), preference, mode);
+        System.out.println(path);
+        System.out.println("Settled vertices: " + path.getSettled());
+    }
+
+    /**
+     * 查询前 k 条备选路线，按代价从小到大输出；条数不超过 Config.MAX_ROUTE_RESULTS，搜索时间受 Config 中的上限约束
+     * @param departureID 出发站
+     * @param arrivalID 到达站
+     * @param preference 0-按价格最优，1-按时间最优
+     * @param k 条数，须为正数
+     */
+    public void findAlternativeRoutes(StationID departureID, StationID arrivalID, int preference, int k) {
+        if (k <= 0) {
+            System.out.println("Invalid number of routes: " + k);
+            return;
+        }
+        k = Math.min(k, Config.MAX_ROUTE_RESULTS);
+        if (!railwayGraph.checkStationAccessibility(departureID.value(), arrivalID.value())) {
+            System.out.println("Disconnected. No route found.");
+            return;
+        }
+        SeqList<PathInfo> paths = railwayGraph.kShortestPaths(departureID.value(), arrivalID.value(), k, preference);
+        if (paths.length() == 0) {
+            System.out.println("No path found.");
+            return;
+        }
+        for (int i = 0; i < paths.length(); i++) {
+            PathInfo path = paths.visit(i);
+            StringBuilder sb = new StringBuilder("Alternative ").append(i + 1).append(": ");
+            for (int j = 0; j < path.getStations().length(); j++) {
+                sb.append(path.getStations().visit(j)).append(' ');
+            }
+            sb.append('\n').append(preference == 1 ? "Total time: " : "Total price: ").append(path.getTotalCost());
+            System.out.println(sb);
+        }
+    }
+
+    /**
+     * 按时刻表查询：在给定时刻之后从出发站出发，最早到达到达站的乘车方案（含等车与换乘时间）
+     * @param departureID 出发站
+     * @param arrivalID 到达站
+     * @param departAfter 最早出发时刻
+     */
+    public void findEarliestArrival(StationID departureID, StationID arrivalID, Time departAfter) {
+        ConnectionScan scan = connectionScan;
+        if (scan == null) {
+            // 在 schedulerManager 上构建，避免与增删运行计划交错而缓存了过期的引擎
+            synchronized (schedulerManager) {
+                scan = connectionScan;
+                if (scan == null) {
+                    SeqList<TrainScheduler> schedulers = new SeqList<>();
+                    schedulerManager.forEachScheduler("", schedulers::pushBack);
+                    scan = new ConnectionScan(schedulers);
+                    connectionScan = scan;
+                }
+            }
+        }
+        System.out.println(scan.earliestArrival(departureID.value(), arrivalID.value(), departAfter));
+    }
+
+    /**
+     * 按时刻表查询：在给定时刻之后出发，到达时刻、票价、换乘次数三者 Pareto 最优的全部乘车方案
+     * @param departureID 出发站
+     * @param arrivalID 到达站
+     * @param departAfter 最早出发时刻
+     */
+    public void findParetoJourneys(StationID departureID, StationID arrivalID, Time departAfter) {
+        Raptor engine = raptor;
+        if (engine == null) {
+            synchronized (schedulerManager) {
+                engine = raptor;
+                if (engine == null) {
+                    SeqList<TrainScheduler> schedulers = new SeqList<>();
+                    schedulerManager.forEachScheduler("", schedulers::pushBack);
+                    engine = new Raptor(schedulers);
+                    raptor = engine;
+                }
+            }
+        }
+        SeqList<JourneyInfo> journeys = engine.paretoJourneys(departureID.value(), arrivalID.value(), departAfter);
+        if (journeys.length() == 0) {
+            System.out.println("No journey found.");
+            return;
+        }
+        for (int i = 0; i < journeys.length(); i++) {
+            System.out.println("Option " + (i + 1) + ":");
+            System.out.println(journeys.visit(i));
+        }
     }
 
     // ===== Part 5: 用户管理 =====
-    public void login(long userID, String password) {
-        if (currentUser != null && currentUser.getUserID().value() != -1) {
-            System.out.println("Only one user can login in at the same time.");
+    public void login(Session session, long userID, String password) {
+        if (session.isLoggedIn()) {
+            System.out.println("Already logged in. Logout first.");
             return;
         }
         UserID uid = new UserID(userID);
@@ -214,41 +446,44 @@ public class TrainSystem {
             System.out.println("Wrong password. Login failed.");
             return;
         }
-        currentUser = userInfo;
+        session.setUser(userInfo);
         System.out.println("Login succeeded.");
     }
 
-    public void logout() {
-        if (currentUser == null || currentUser.getUserID().value() == -1) {
+    public void logout(Session session) {
+        if (!session.isLoggedIn()) {
             System.out.println("No user logined.");
             return;
         }
-        currentUser = new UserInfo(new UserID(-1L), "", "", 0);
+        session.clearUser();
         System.out.println("Logout succeeded.");
     }
 
-    public void addUser(long userID, String username, String password) {
+    public void addUser(Session session, long userID, String username, String password) {
         UserID uid = new UserID(userID);
-        if (userManager.existUser(uid)) {
-            System.out.println("User ID existed.");
-            return;
-        }
-        if (currentUser == null || currentUser.getUserID().value() == -1) {
-            System.out.println("Permission denied.");
-            return;
+        // 查重与插入须是一个整体
+        synchronized (userManager) {
+            if (userManager.existUser(uid)) {
+                System.out.println("User ID existed.");
+                return;
+            }
+            if (!session.isLoggedIn()) {
+                System.out.println("Permission denied.");
+                return;
+            }
+            userManager.insertUser(uid, username, password, 0);
         }
-        userManager.insertUser(uid, username, password, 0);
         System.out.println("User added.");
     }
 
-    public void findUserInfoByUserID(long userID) {
+    public void findUserInfoByUserID(Session session, long userID) {
         UserID uid = new UserID(userID);
         if (!userManager.existUser(uid)) {
             System.out.println("User not found.");
             return;
         }
         UserInfo userInfo = userManager.findUser(uid);
-        if (currentUser == null || currentUser.getUserID().value() == -1 || currentUser.getPrivilege() <= userInfo.getPrivilege()) {
+        if (!session.isLoggedIn() || session.getUser().getPrivilege() <= userInfo.getPrivilege()) {
             System.out.println("Permission denied.");
             return;
         }
@@ -258,14 +493,14 @@ public class TrainSystem {
         System.out.println("Privilege: " + userInfo.getPrivilege());
     }
 
-    public void modifyUserPassword(long userID, String newPassword) {
+    public void modifyUserPassword(Session session, long userID, String newPassword) {
         UserID uid = new UserID(userID);
         if (!userManager.existUser(uid)) {
             System.out.println("User not found.");
             return;
         }
         UserInfo userInfo = userManager.findUser(uid);
-        if (currentUser == null || currentUser.getUserID().value() == -1 || currentUser.getPrivilege() <= userInfo.getPrivilege()) {
+        if (!session.isLoggedIn() || session.getUser().getPrivilege() <= userInfo.getPrivilege()) {
             System.out.println("Modification forbidden.");
             return;
         }
@@ -273,14 +508,14 @@ public class TrainSystem {
         System.out.println("Modification succeeded.");
     }
 
-    public void modifyUserPrivilege(long userID, int newPrivilege) {
+    public void modifyUserPrivilege(Session session, long userID, int newPrivilege) {
         UserID uid = new UserID(userID);
         if (!userManager.existUser(uid)) {
             System.out.println("User not found.");
             return;
         }
         UserInfo userInfo = userManager.findUser(uid);
-        if (currentUser == null || currentUser.getUserID().value() == -1 || currentUser.getPrivilege() <= userInfo.getPrivilege()) {
+        if (!session.isLoggedIn() || session.getUser().getPrivilege() <= userInfo.getPrivilege()) {
             System.out.println("Modification forbidden.");
             return;
         }
@@ -288,4 +523,25 @@ public class TrainSystem {
         System.out.println("Modifiaction succeeded.");
     }
 
+    /**
+     * 提交各个B+树的重做日志，每条命令执行完毕后调用
+     */
+    public void sync() {
+        userManager.sync();
+        schedulerManager.sync();
+        ticketManager.sync();
+        tripManager.sync();
+    }
+
+    /**
+     * 关闭系统，保存各个B+树的状态
+     */
+    public void close() {
+        orderPipeline.close();  // 先处理完已提交的请求
+        userManager.close();
+        schedulerManager.close();
+        ticketManager.close();
+        tripManager.close();
+    }
+
 }
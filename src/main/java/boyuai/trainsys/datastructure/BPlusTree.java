@@ -1,10 +1,19 @@
 package boyuai.trainsys.datastructure;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * B+树实现（持久化存储）
+ * 键、值通过定长编解码器写入页面，树节点页与叶子页均为定长
+ * 所有页面经由缓冲池访问，修改只标记脏页，脏页只在检查点时写回（缓冲池不淘汰脏页）。
+ * 每次插入、删除先写重做日志（组提交），检查点经双写日志原子地写入脏页、头部与空闲列表，
+ * 随后清空重做日志。打开时先补全中断的检查点，再回放检查点之后的日志。
  * @param <KeyType> 键类型
  * @param <ValueType> 值类型
  */
@@ -13,14 +22,34 @@ public class BPlusTree<KeyType, ValueType>
     
     private static final int DEFAULT_M = 100;
     private static final int DEFAULT_L = 100;
+    private static final int MAGIC = 0x42505432;  // "BPT2"，用于识别文件格式
+    private static final int DEFAULT_POOL_PAGES = 64;  // 每个缓冲池的默认容量（页）
+    private static final int LRU_K = 2;
+    private static final int GROUP_COMMIT_SIZE = 64;      // 重做日志每组提交的记录数
+    private static final int CHECKPOINT_INTERVAL = 4096;  // 两次检查点之间最多的修改次数
+    private static final byte LOG_INSERT = 1;
+    private static final byte LOG_REMOVE = 2;
+    private static final byte LOG_UPDATE = 3;
+    private static final int TREE_NODE_FILE = 0;  // 双写日志中的文件编号
+    private static final int LEAF_FILE = 1;
+    private static final double DEFAULT_FILL_FACTOR = 0.9;  // 批量导入时页面的默认填充率，给后续插入留出空位
     
-    private final RandomAccessFile treeNodeFile;
-    private final RandomAccessFile leafFile;
+    private final PageFile treeNodeFile;
+    private final PageFile leafFile;
+    private final PageFile[] pageFiles;
+    private final WriteAheadLog wal;            // 重做日志
+    private final CheckpointJournal journal;    // 检查点双写日志
+    private long checkpointLsn;                 // 数据文件已包含的最后一条日志
+    private int updatesSinceCheckpoint;
+    private boolean replaying;                  // 正在回放日志，此时不写日志、不做检查点
+    private int modCount;                       // 结构修改次数，用于让打开着的游标快速失败
     private int rearTreeNode;           // 最后一个树节点的位置
     private int rearLeaf;               // 最后一个叶子节点的位置
     private int sizeData;               // 数据个数
-    private final int headerLengthOfTreeNodeFile = 2 * Integer.BYTES;
-    private final int headerLengthOfLeafFile = 2 * Integer.BYTES;
+    // 树节点文件头部：魔数、页大小、根位置、rearTreeNode、检查点LSN
+    private final int headerLengthOfTreeNodeFile = 4 * Integer.BYTES + Long.BYTES;
+    // 叶子文件头部：魔数、页大小、rearLeaf、sizeData
+    private final int headerLengthOfLeafFile = 4 * Integer.BYTES;
     private SeqList<Integer> emptyTreeNode;  // 被删除的树节点位置
     private SeqList<Integer> emptyLeaf;      // 被删除的叶子节点位置
     
@@ -66,14 +95,50 @@ public class BPlusTree<KeyType, ValueType>
     private final String leafFileName;
     private TreeNode root;
     private final Comparator<KeyType> comparator;
+    private final Codec<KeyType> keyCodec;
+    private final Codec<ValueType> valueCodec;
     private int m, l;  // 实际使用的M和L值
+    private final int treeNodeSize;     // 树节点页大小（字节）
+    private final int leafSize;         // 叶子页大小（字节）
+    private final ByteBuffer treeNodePage;  // 复用的树节点页编码缓冲区
+    private final ByteBuffer leafPage;      // 复用的叶子页编码缓冲区
+    private final ByteBuffer logRecord;     // 复用的日志记录编码缓冲区（键 + 值）
+    private final BufferPool<TreeNode> treeNodePool;  // 树节点缓冲池，根节点常驻（始终被pin住）
+    private final BufferPool<Leaf> leafPool;          // 叶子缓冲池
     
     /**
      * 构造函数
      * @param name 文件名前缀
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
      */
-    public BPlusTree(String name) {
-        this(name, DEFAULT_M, DEFAULT_L, null);
+    public BPlusTree(String name, Codec<KeyType> keyCodec, Codec<ValueType> valueCodec) {
+        this(name, DEFAULT_M, DEFAULT_L, null, keyCodec, valueCodec);
+    }
+
+    /**
+     * 构造函数
+     * @param name 文件名前缀
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
+     * @param fileType 页面文件的实现方式
+     */
+    public BPlusTree(String name, Codec<KeyType> keyCodec, Codec<ValueType> valueCodec, PageFile.Type fileType) {
+        this(name, DEFAULT_M, DEFAULT_L, null, keyCodec, valueCodec, DEFAULT_POOL_PAGES, fileType);
+    }
+    
+    /**
+     * 构造函数
+     * @param name 文件名前缀
+     * @param m 内部节点最大子节点数
+     * @param l 叶子节点最大数据数
+     * @param comparator 键比较器
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
+     */
+    public BPlusTree(String name, int m, int l, Comparator<KeyType> comparator,
+                     Codec<KeyType> keyCodec, Codec<ValueType> valueCodec) {
+        this(name, m, l, comparator, keyCodec, valueCodec, DEFAULT_POOL_PAGES, PageFile.Type.RANDOM_ACCESS);
     }
     
     /**
@@ -82,40 +147,87 @@ public class BPlusTree<KeyType, ValueType>
      * @param m 内部节点最大子节点数
      * @param l 叶子节点最大数据数
      * @param comparator 键比较器
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
+     * @param poolPages 树节点、叶子缓冲池各自的容量（页），不能小于树高加2
+     * @param fileType 页面文件的实现方式
      */
-    public BPlusTree(String name, int m, int l, Comparator<KeyType> comparator) {
+    public BPlusTree(String name, int m, int l, Comparator<KeyType> comparator,
+                     Codec<KeyType> keyCodec, Codec<ValueType> valueCodec,
+                     int poolPages, PageFile.Type fileType) {
         this.m = m;
         this.l = l;
         this.comparator = comparator;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        int slotSize = keyCodec.size() + valueCodec.size();
+        this.treeNodeSize = 1 + 4 + 4 + m * 4 + (m - 1) * slotSize;
+        this.leafSize = 4 + 4 + 4 + l * slotSize;
+        this.treeNodePage = ByteBuffer.allocate(treeNodeSize);
+        this.leafPage = ByteBuffer.allocate(leafSize);
+        this.logRecord = ByteBuffer.allocate(slotSize);
         this.treeNodeFileName = name + "_treeNodeFile";
         this.leafFileName = name + "_leafFile";
         this.emptyTreeNode = new SeqList<>();
         this.emptyLeaf = new SeqList<>();
+        this.treeNodePool = new BufferPool<>(poolPages, LRU_K, false, new BufferPool.PageIO<>() {
+            @Override
+            public TreeNode read(int pos, TreeNode recycled) throws IOException {
+                TreeNode node = recycled != null ? recycled : new TreeNode(BPlusTree.this.m);
+                readTreeNode(node, pos);
+                return node;
+            }
+            
+            @Override
+            public void write(int pos, TreeNode node) throws IOException {
+                writeTreeNode(node);
+            }
+        });
+        this.leafPool = new BufferPool<>(poolPages, LRU_K, false, new BufferPool.PageIO<>() {
+            @Override
+            public Leaf read(int pos, Leaf recycled) throws IOException {
+                Leaf leaf = recycled != null ? recycled : new Leaf(BPlusTree.this.l);
+                readLeaf(leaf, pos);
+                return leaf;
+            }
+            
+            @Override
+            public void write(int pos, Leaf leaf) throws IOException {
+                writeLeaf(leaf);
+            }
+        });
         
         try {
             // 打开文件
-            this.treeNodeFile = new RandomAccessFile(treeNodeFileName, "rw");
-            this.leafFile = new RandomAccessFile(leafFileName, "rw");
+            this.treeNodeFile = PageFile.open(treeNodeFileName, fileType);
+            this.leafFile = PageFile.open(leafFileName, fileType);
+            this.pageFiles = new PageFile[] {treeNodeFile, leafFile};
+            this.wal = new WriteAheadLog(name + "_wal", GROUP_COMMIT_SIZE);
+            this.journal = new CheckpointJournal(name + "_ckpt");
+            
+            // 上一次检查点若在原地写入时中断，先用双写日志补全
+            journal.recover(pageFiles);
 
             long tlen = treeNodeFile.length();
             long llen = leafFile.length();
 
-            boolean invalidHeader = (tlen < headerLengthOfTreeNodeFile) || (llen < headerLengthOfLeafFile);
-
-            if (tlen == 0 || llen == 0 || invalidHeader) {
-                // 文件不存在或头部不完整，重新初始化
-                treeNodeFile.setLength(0);
-                leafFile.setLength(0);
-                initialize();
+            if (tlen == 0) {
+                // 文件不存在，或上一次清空时只截断了树节点文件，重新初始化
+                reset();
+            } else if (tlen < headerLengthOfTreeNodeFile || llen < headerLengthOfLeafFile) {
+                // 清空时先截断树节点文件，只有叶子文件为空或头部不完整说明文件被改动过，不能悄悄清空数据
+                throw new IllegalStateException("Truncated B+ tree files: " + treeNodeFileName + " (" + tlen
+                        + " bytes), " + leafFileName + " (" + llen + " bytes)");
             } else {
-                // 尝试从文件读取信息，若失败则回退到初始化
+                // 旧格式或页布局不一致（例如编解码器发生了变化）时无法解读原有数据，交由运维决定如何处理
+                checkHeader();
+                // 格式正确却读取失败说明文件已损坏，不能悄悄清空数据
                 try {
                     loadFromFile();
                 } catch (Exception ex) {
-                    treeNodeFile.setLength(0);
-                    leafFile.setLength(0);
-                    initialize();
+                    throw new IOException("Corrupted B+ tree files: " + name, ex);
                 }
+                recover();
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to initialize B+ tree", e);
@@ -137,23 +249,40 @@ public class BPlusTree<KeyType, ValueType>
     }
     
     /**
-     * 比较两个Pair的大小
+     * 比较两个Pair的大小，先比较key，再比较value
+     * 键统一使用compare比较：解码得到的键（如FixedString）与调用方传入的键（如TrainID）
+     * 类型可能不同，equals会判为不等
      */
+    @SuppressWarnings("unchecked")
+    private int comparePair(Pair<KeyType, ValueType> lhs, Pair<KeyType, ValueType> rhs) {
+        int cmp = compare(lhs.getKey(), rhs.getKey());
+        if (cmp != 0) {
+            return cmp;
+        }
+        if (lhs.getValue() instanceof Comparable) {
+            return ((Comparable<ValueType>) lhs.getValue()).compareTo(rhs.getValue());
+        }
+        return Integer.compare(lhs.getValue().hashCode(), rhs.getValue().hashCode());
+    }
+    
     private boolean checkPairLess(Pair<KeyType, ValueType> lhs, Pair<KeyType, ValueType> rhs) {
-        return Pair.checkPairLess(lhs, rhs);
+        return comparePair(lhs, rhs) < 0;
     }
     
     /**
      * 比较两个Pair是否相等
      */
     private boolean checkPairEqual(Pair<KeyType, ValueType> lhs, Pair<KeyType, ValueType> rhs) {
-        return Pair.checkEqual(lhs, rhs);
+        return compare(lhs.getKey(), rhs.getKey()) == 0 && lhs.getValue().equals(rhs.getValue());
     }
     
     /**
      * 初始化B+树
      */
     private void initialize() throws IOException {
+        treeNodePool.clear();
+        leafPool.clear();
+        
         // 创建根节点
         root = new TreeNode(m);
         root.isBottomNode = true;
@@ -167,12 +296,167 @@ public class BPlusTree<KeyType, ValueType>
         initLeaf.dataCount = 0;
         initLeaf.pos = 1;
         
-        // 写入文件
-        writeLeaf(initLeaf);
-        writeTreeNode(root);
+        // 放入缓冲池，根节点保持pin住
+        leafPool.put(initLeaf.pos, initLeaf);
+        leafPool.unpin(initLeaf.pos, true);
+        treeNodePool.put(root.pos, root);
         
         rearLeaf = rearTreeNode = 1;
         sizeData = 0;
+        writeCheckpoint();
+    }
+    
+    /**
+     * 清空数据文件与日志，重新初始化
+     * 先截断数据文件：此后崩溃，重新打开时看到空文件同样会清空日志
+     */
+    private void reset() throws IOException {
+        modCount++;
+        journal.clear();
+        treeNodeFile.truncate();
+        leafFile.truncate();
+        wal.reset();
+        emptyTreeNode.clear();
+        emptyLeaf.clear();
+        initialize();
+    }
+    
+    /**
+     * 回放上一次检查点之后的日志，然后做一次检查点
+     */
+    private void recover() throws IOException {
+        replaying = true;
+        int replayed;
+        try {
+            replayed = wal.replay(checkpointLsn, record -> {
+                ByteBuffer payload = record.payload();
+                KeyType key = keyCodec.decode(payload);
+                Pair<KeyType, ValueType> pair = new Pair<>(key, valueCodec.decode(payload));
+                if (record.type() == LOG_INSERT) {
+                    insertPair(pair);
+                } else if (record.type() == LOG_REMOVE) {
+                    removePair(pair);
+                } else if (record.type() == LOG_UPDATE) {
+                    modifyPair(pair);
+                } else {
+                    throw new IOException("Unknown log record type " + record.type());
+                }
+            });
+        } finally {
+            replaying = false;
+        }
+        if (replayed > 0) {
+            writeCheckpoint();
+        }
+    }
+    
+    /**
+     * 检查点：提交日志后，把脏页、头部与空闲列表先写入双写日志，再原地写入数据文件，最后清空日志
+     * 这是完整的检查点而不是模糊检查点：重做日志记录的是键值的插入删除（逻辑日志），
+     * 只能在一致的树上回放，页面不带 LSN，无法判断某条记录是否已体现在某一页中，
+     * 因此必须一次写出全部脏页。树只被单线程访问，检查点期间本来也不会有并发修改
+     */
+    private void writeCheckpoint() throws IOException {
+        wal.commit();
+        long lsn = wal.lastLsn();
+        journal.begin();
+        treeNodePool.forEachDirty((pos, node) -> {
+            encodeTreeNode(node);
+            journal.add(TREE_NODE_FILE, treeNodeOffset(pos), treeNodePage.array(), treeNodeSize);
+        });
+        leafPool.forEachDirty((pos, leaf) -> {
+            encodeLeaf(leaf);
+            journal.add(LEAF_FILE, leafOffset(pos), leafPage.array(), leafSize);
+        });
+        
+        ByteBuffer header = ByteBuffer.allocate(headerLengthOfTreeNodeFile);
+        header.putInt(MAGIC).putInt(treeNodeSize).putInt(root.pos).putInt(rearTreeNode).putLong(lsn);
+        journal.add(TREE_NODE_FILE, 0, header.array(), headerLengthOfTreeNodeFile);
+        header = ByteBuffer.allocate(headerLengthOfLeafFile);
+        header.putInt(MAGIC).putInt(leafSize).putInt(rearLeaf).putInt(sizeData);
+        journal.add(LEAF_FILE, 0, header.array(), headerLengthOfLeafFile);
+        
+        // 空闲列表紧跟在最后一个页面之后
+        byte[] freeList = encodeFreeList(emptyTreeNode);
+        journal.add(TREE_NODE_FILE, treeNodeOffset(rearTreeNode + 1), freeList, freeList.length);
+        freeList = encodeFreeList(emptyLeaf);
+        journal.add(LEAF_FILE, leafOffset(rearLeaf + 1), freeList, freeList.length);
+        
+        journal.commit();
+        journal.apply(pageFiles);
+        wal.reset();
+        journal.clear();
+        
+        treeNodePool.markClean();
+        leafPool.markClean();
+        checkpointLsn = lsn;
+        updatesSinceCheckpoint = 0;
+    }
+    
+    /**
+     * 编码空闲节点列表：个数 + 各个位置
+     */
+    private byte[] encodeFreeList(SeqList<Integer> list) {
+        ByteBuffer buffer = ByteBuffer.allocate((list.length() + 1) * Integer.BYTES);
+        buffer.putInt(list.length());
+        for (int i = 0; i < list.length(); i++) {
+            buffer.putInt(list.visit(i));
+        }
+        return buffer.array();
+    }
+    
+    /**
+     * 一次修改完成后调用：修改次数或积压的脏页过多时做检查点
+     */
+    private void afterUpdate() throws IOException {
+        if (replaying) {
+            return;
+        }
+        updatesSinceCheckpoint++;
+        if (updatesSinceCheckpoint >= CHECKPOINT_INTERVAL
+                || treeNodePool.size() >= 2 * treeNodePool.getCapacity()
+                || leafPool.size() >= 2 * leafPool.getCapacity()) {
+            writeCheckpoint();
+        }
+    }
+    
+    /**
+     * 将一次修改写入重做日志
+     */
+    private void log(byte type, KeyType key, ValueType value) throws IOException {
+        logRecord.clear();
+        keyCodec.encode(key, logRecord);
+        valueCodec.encode(value, logRecord);
+        wal.append(type, logRecord.array(), logRecord.position());
+    }
+    
+    /**
+     * 检查两个文件的头部：魔数与页大小都必须与当前配置一致
+     * @throws IllegalStateException 不一致时抛出，消息中列出文件名与不一致的字段
+     */
+    private void checkHeader() throws IOException {
+        StringBuilder mismatch = new StringBuilder();
+        checkField(mismatch, treeNodeFileName, "magic", hex(treeNodeFile.readInt(0)), hex(MAGIC));
+        checkField(mismatch, treeNodeFileName, "page size", treeNodeFile.readInt(4), treeNodeSize);
+        checkField(mismatch, leafFileName, "magic", hex(leafFile.readInt(0)), hex(MAGIC));
+        checkField(mismatch, leafFileName, "page size", leafFile.readInt(4), leafSize);
+        if (mismatch.length() > 0) {
+            throw new IllegalStateException("B+ tree file format mismatch: " + mismatch);
+        }
+    }
+
+    private static String hex(int value) {
+        return String.format("0x%08x", value);
+    }
+
+    private static void checkField(StringBuilder mismatch, String fileName, String field, Object actual, Object expected) {
+        if (!actual.equals(expected)) {
+            if (mismatch.length() > 0) {
+                mismatch.append("; ");
+            }
+            mismatch.append(fileName).append(' ').append(field).append(' ').append(actual)
+                    .append(" (expected ").append(expected).append(')');
+        }
     }
     
     /**
@@ -180,106 +464,123 @@ public class BPlusTree<KeyType, ValueType>
      */
     private void loadFromFile() throws IOException {
         // 读取树节点文件头部
-        treeNodeFile.seek(0);
-        int rootPos = treeNodeFile.readInt();
-        rearTreeNode = treeNodeFile.readInt();
+        int rootPos = treeNodeFile.readInt(8);
+        rearTreeNode = treeNodeFile.readInt(12);
+        checkpointLsn = treeNodeFile.read(16, Long.BYTES).getLong(0);
         
-        // 读取根节点
-        root = new TreeNode(m);
-        readTreeNode(root, rootPos);
+        // 读取叶子节点文件头部
+        rearLeaf = leafFile.readInt(8);
+        sizeData = leafFile.readInt(12);
+        if (rootPos < 1 || rootPos > rearTreeNode || rearLeaf < 1 || sizeData < 0 || checkpointLsn < 0) {
+            throw new IOException("Invalid B+ tree header");
+        }
+        
+        // 读取根节点，根节点常驻缓冲池
+        root = treeNodePool.pin(rootPos);
         
         // 读取被删除的树节点
-        treeNodeFile.seek(headerLengthOfTreeNodeFile + (long) (rearTreeNode + 1) * getTreeNodeSize());
-        int treeNodeEmptySize = treeNodeFile.readInt();
+        long offset = treeNodeOffset(rearTreeNode + 1);
+        int treeNodeEmptySize = treeNodeFile.readInt(offset);
+        if (treeNodeEmptySize < 0 || treeNodeEmptySize > rearTreeNode) {
+            throw new IOException("Invalid tree node free list");
+        }
         for (int i = 0; i < treeNodeEmptySize; i++) {
-            emptyTreeNode.pushBack(treeNodeFile.readInt());
+            emptyTreeNode.pushBack(treeNodeFile.readInt(offset + (long) (i + 1) * Integer.BYTES));
         }
         
-        // 读取叶子节点文件头部
-        leafFile.seek(0);
-        rearLeaf = leafFile.readInt();
-        sizeData = leafFile.readInt();
-        
         // 读取被删除的叶子节点
-        leafFile.seek(headerLengthOfLeafFile + (long) (rearLeaf + 1) * getLeafSize());
-        int leafEmptySize = leafFile.readInt();
+        offset = leafOffset(rearLeaf + 1);
+        int leafEmptySize = leafFile.readInt(offset);
+        if (leafEmptySize < 0 || leafEmptySize > rearLeaf) {
+            throw new IOException("Invalid leaf free list");
+        }
         for (int i = 0; i < leafEmptySize; i++) {
-            emptyLeaf.pushBack(leafFile.readInt());
+            emptyLeaf.pushBack(leafFile.readInt(offset + (long) (i + 1) * Integer.BYTES));
         }
     }
     
     /**
-     * 获取树节点序列化后的大小
+     * 树节点页在文件中的偏移
      */
-    private int getTreeNodeSize() {
-        return 1 + 4 + 4 + m * 4 + (m - 1) * 16; // 简化计算，实际需要根据具体类型调整
+    private long treeNodeOffset(int pos) {
+        return headerLengthOfTreeNodeFile + (long) pos * treeNodeSize;
     }
     
     /**
-     * 获取叶子节点序列化后的大小
+     * 叶子页在文件中的偏移
      */
-    private int getLeafSize() {
-        return 4 + 4 + 4 + l * 16; // 简化计算，实际需要根据具体类型调整
+    private long leafOffset(int pos) {
+        return headerLengthOfLeafFile + (long) pos * leafSize;
     }
     
     /**
      * 写入树节点到文件
      */
     private void writeTreeNode(TreeNode node) throws IOException {
-        treeNodeFile.seek(headerLengthOfTreeNodeFile + (long) node.pos * getTreeNodeSize());
-        treeNodeFile.writeBoolean(node.isBottomNode);
-        treeNodeFile.writeInt(node.pos);
-        treeNodeFile.writeInt(node.dataCount);
+        encodeTreeNode(node);
+        treeNodeFile.write(treeNodeOffset(node.pos), treeNodePage.array(), treeNodeSize);
+    }
+    
+    /**
+     * 将树节点编码为整页，结果位于 treeNodePage
+     */
+    private void encodeTreeNode(TreeNode node) {
+        ByteBuffer page = treeNodePage;
+        page.clear();
+        page.put((byte) (node.isBottomNode ? 1 : 0));
+        page.putInt(node.pos);
+        page.putInt(node.dataCount);
         for (int i = 0; i < m; i++) {
-            treeNodeFile.writeInt(node.childrenPos[i]);
+            page.putInt(node.childrenPos[i]);
         }
-        for (int i = 0; i < m - 1; i++) {
-            if (node.septal[i] != null) {
-                treeNodeFile.writeUTF(node.septal[i].getKey().toString());
-                treeNodeFile.writeUTF(node.septal[i].getValue().toString());
-            } else {
-                treeNodeFile.writeUTF("");
-                treeNodeFile.writeUTF("");
-            }
+        // 只有前 dataCount-1 个分隔关键字有效，其余槽位保持为0
+        for (int i = 0; i < node.dataCount - 1; i++) {
+            keyCodec.encode(node.septal[i].getKey(), page);
+            valueCodec.encode(node.septal[i].getValue(), page);
         }
+        Arrays.fill(page.array(), page.position(), treeNodeSize, (byte) 0);
     }
     
     /**
      * 写入叶子节点到文件
      */
     private void writeLeaf(Leaf leaf) throws IOException {
-        leafFile.seek(headerLengthOfLeafFile + (long) leaf.pos * getLeafSize());
-        leafFile.writeInt(leaf.nxt);
-        leafFile.writeInt(leaf.pos);
-        leafFile.writeInt(leaf.dataCount);
-        for (int i = 0; i < l; i++) {
-            if (leaf.value[i] != null) {
-                leafFile.writeUTF(leaf.value[i].getKey().toString());
-                leafFile.writeUTF(leaf.value[i].getValue().toString());
-            } else {
-                leafFile.writeUTF("");
-                leafFile.writeUTF("");
-            }
+        encodeLeaf(leaf);
+        leafFile.write(leafOffset(leaf.pos), leafPage.array(), leafSize);
+    }
+    
+    /**
+     * 将叶子节点编码为整页，结果位于 leafPage
+     */
+    private void encodeLeaf(Leaf leaf) {
+        ByteBuffer page = leafPage;
+        page.clear();
+        page.putInt(leaf.nxt);
+        page.putInt(leaf.pos);
+        page.putInt(leaf.dataCount);
+        for (int i = 0; i < leaf.dataCount; i++) {
+            keyCodec.encode(leaf.value[i].getKey(), page);
+            valueCodec.encode(leaf.value[i].getValue(), page);
         }
+        Arrays.fill(page.array(), page.position(), leafSize, (byte) 0);
     }
     
     /**
-     * 从文件读取树节点
+     * 从文件读取树节点，直接在页面文件返回的缓冲区上解码
      */
     private void readTreeNode(TreeNode node, int pos) throws IOException {
-        treeNodeFile.seek(headerLengthOfTreeNodeFile + pos * getTreeNodeSize());
-        node.isBottomNode = treeNodeFile.readBoolean();
-        node.pos = treeNodeFile.readInt();
-        node.dataCount = treeNodeFile.readInt();
+        ByteBuffer page = treeNodeFile.read(treeNodeOffset(pos), treeNodeSize);
+        node.isBottomNode = page.get() != 0;
+        node.pos = page.getInt();
+        node.dataCount = page.getInt();
         for (int i = 0; i < m; i++) {
-            node.childrenPos[i] = treeNodeFile.readInt();
+            node.childrenPos[i] = page.getInt();
         }
-        // 注意：这里简化了Pair的读取，实际应用中需要根据具体类型进行反序列化
         for (int i = 0; i < m - 1; i++) {
-            String keyStr = treeNodeFile.readUTF();
-            String valueStr = treeNodeFile.readUTF();
-            if (!keyStr.isEmpty()) {
-                // 这里需要根据实际类型进行转换，暂时设为null
+            if (i < node.dataCount - 1) {
+                KeyType key = keyCodec.decode(page);
+                node.septal[i] = new Pair<>(key, valueCodec.decode(page));
+            } else {
                 node.septal[i] = null;
             }
         }
@@ -289,16 +590,15 @@ public class BPlusTree<KeyType, ValueType>
      * 从文件读取叶子节点
      */
     private void readLeaf(Leaf leaf, int pos) throws IOException {
-        leafFile.seek(headerLengthOfLeafFile + pos * getLeafSize());
-        leaf.nxt = leafFile.readInt();
-        leaf.pos = leafFile.readInt();
-        leaf.dataCount = leafFile.readInt();
-        // 注意：这里简化了Pair的读取，实际应用中需要根据具体类型进行反序列化
+        ByteBuffer page = leafFile.read(leafOffset(pos), leafSize);
+        leaf.nxt = page.getInt();
+        leaf.pos = page.getInt();
+        leaf.dataCount = page.getInt();
         for (int i = 0; i < l; i++) {
-            String keyStr = leafFile.readUTF();
-            String valueStr = leafFile.readUTF();
-            if (!keyStr.isEmpty()) {
-                // 这里需要根据实际类型进行转换，暂时设为null
+            if (i < leaf.dataCount) {
+                KeyType key = keyCodec.decode(page);
+                leaf.value[i] = new Pair<>(key, valueCodec.decode(page));
+            } else {
                 leaf.value[i] = null;
             }
         }
@@ -311,80 +611,137 @@ public class BPlusTree<KeyType, ValueType>
     @Override
     public SeqList<ValueType> find(KeyType key) {
         SeqList<ValueType> result = new SeqList<>();
-        try {
-            TreeNode current = root;
-            Leaf leaf = new Leaf(l);
-            
-            if (current.dataCount == 0) {
-                return result;
+        Cursor cursor = scan(key, key);
+        while (cursor.hasNext()) {
+            result.pushBack(cursor.next().getValue());
+        }
+        return result;
+    }
+    
+    /**
+     * 打开一个从最小键开始的游标
+     * @return 游标
+     */
+    public Cursor cursor() {
+        return new Cursor(null, null);
+    }
+    
+    /**
+     * 打开一个从第一个不小于 low 的键开始的游标
+     * @param low 下界（包含）
+     * @return 游标
+     */
+    public Cursor seek(KeyType low) {
+        return new Cursor(low, null);
+    }
+    
+    /**
+     * 范围扫描 [low, high]
+     * @param low 下界（包含），为null时从最小键开始
+     * @param high 上界（包含），为null时扫描到最后
+     * @return 游标
+     */
+    public Cursor scan(KeyType low, KeyType high) {
+        return new Cursor(low, high);
+    }
+    
+    /**
+     * B+树游标，按（键，值）升序逐个返回键值对
+     * 只从根下降一次，之后沿叶子的 nxt 链前进；任一时刻只 pin 住当前所在的叶子，
+     * 直接在缓冲池的页面上读取，不拷贝整批结果。遍历结束时自动解除 pin，提前放弃时需调用 close。
+     * 游标打开期间若树被修改，继续使用会抛出 ConcurrentModificationException。
+     */
+    public final class Cursor implements Iterator<Pair<KeyType, ValueType>>, AutoCloseable {
+        private Leaf leaf;          // 当前叶子（已pin住），遍历结束后为null
+        private int index;          // 下一个键值对在叶子中的下标
+        private final KeyType high; // 上界（包含），null表示无上界
+        private int expectedModCount;
+        
+        private Cursor(KeyType low, KeyType high) {
+            this.high = high;
+            seek(low);
+        }
+        
+        /**
+         * 重新定位到第一个不小于 low 的键
+         * @param low 下界（包含），为null时定位到最小键
+         * @return 游标本身
+         */
+        public Cursor seek(KeyType low) {
+            close();
+            expectedModCount = modCount;
+            try {
+                TreeNode current = root;
+                while (!current.isBottomNode) {
+                    int childPos = current.childrenPos[low == null ? 0 : binarySearchTreeNode(low, current)];
+                    unpinTreeNode(current, false);
+                    current = treeNodePool.pin(childPos);
+                }
+                int leafPos = current.childrenPos[low == null ? 0 : binarySearchTreeNode(low, current)];
+                unpinTreeNode(current, false);
+                leaf = leafPool.pin(leafPos);
+                index = low == null ? 0 : binarySearchLeaf(low, leaf);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to seek in B+ tree", e);
             }
-            
-            // 找到叶子节点
-            while (!current.isBottomNode) {
-                int childIndex = binarySearchTreeNode(key, current);
-                readTreeNode(current, current.childrenPos[childIndex]);
+            return this;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (leaf == null) {
+                return false;
             }
-            
-            // 在叶子节点中查找
-            readLeaf(leaf, current.childrenPos[binarySearchTreeNode(key, current)]);
-            int index = binarySearchLeaf(key, leaf);
-            
-            // 收集所有匹配的值
-            while (index < leaf.dataCount && leaf.value[index] != null && 
-                   leaf.value[index].getKey().equals(key)) {
-                result.pushBack(leaf.value[index].getValue());
-                index++;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
-            
-            // 检查下一个叶子节点
-            while (leaf.nxt != 0 && index == leaf.dataCount) {
-                readLeaf(leaf, leaf.nxt);
-                index = 0;
-                while (index < leaf.dataCount && leaf.value[index] != null && 
-                       leaf.value[index].getKey().equals(key)) {
-                    result.pushBack(leaf.value[index].getValue());
-                    index++;
+            try {
+                // 当前叶子已读完（或为空），沿 nxt 前进
+                while (index == leaf.dataCount) {
+                    int nxt = leaf.nxt;
+                    close();
+                    if (nxt == 0) {
+                        return false;
+                    }
+                    leaf = leafPool.pin(nxt);
+                    index = 0;
                 }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to scan B+ tree", e);
+            }
+            if (high != null && compare(leaf.value[index].getKey(), high) > 0) {
+                close();
+                return false;
+            }
+            return true;
+        }
+        
+        @Override
+        public Pair<KeyType, ValueType> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return leaf.value[index++];
+        }
+        
+        /**
+         * 解除对当前叶子的pin，游标随即结束
+         */
+        @Override
+        public void close() {
+            if (leaf != null) {
+                leafPool.unpin(leaf.pos, false);
+                leaf = null;
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to find in B+ tree", e);
         }
-        return result;
     }
     
     @Override
     public void insert(KeyType key, ValueType value) {
         try {
-            Pair<KeyType, ValueType> pair = new Pair<>(key, value);
-            if (insert(pair, root)) {
-                // 根节点分裂，创建新的根节点
-                TreeNode newRoot = new TreeNode(m);
-                TreeNode newNode = new TreeNode(m);
-                newNode.pos = getNewTreeNodePos();
-                newNode.isBottomNode = root.isBottomNode;
-                newNode.dataCount = m / 2;
-                
-                int mid = m / 2;
-                for (int i = 0; i < mid; i++) {
-                    newNode.childrenPos[i] = root.childrenPos[mid + i];
-                }
-                for (int i = 0; i < mid - 1; i++) {
-                    newNode.septal[i] = root.septal[mid + i];
-                }
-                
-                root.dataCount = mid;
-                writeTreeNode(root);
-                writeTreeNode(newNode);
-                
-                newRoot.dataCount = 2;
-                newRoot.pos = getNewTreeNodePos();
-                newRoot.isBottomNode = false;
-                newRoot.childrenPos[0] = root.pos;
-                newRoot.childrenPos[1] = newNode.pos;
-                newRoot.septal[0] = root.septal[mid - 1];
-                root = newRoot;
-                writeTreeNode(root);
-            }
+            log(LOG_INSERT, key, value);
+            insertPair(new Pair<>(key, value));
+            afterUpdate();
         } catch (IOException e) {
             throw new RuntimeException("Failed to insert into B+ tree", e);
         }
@@ -392,31 +749,293 @@ public class BPlusTree<KeyType, ValueType>
     
     @Override
     public void remove(KeyType key, ValueType value) {
+        try {
+            log(LOG_REMOVE, key, value);
+            removePair(new Pair<>(key, value));
+            afterUpdate();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to remove from B+ tree", e);
+        }
+    }
+    
+    /**
+     * 原地修改键对应的值，只适用于键唯一的树
+     * 相比先删后插只需一次下降、一条日志，也不会引起分裂
+     * @param key 键
+     * @param value 新的值
+     * @return 键是否存在（不存在时不做任何修改）
+     */
+    public boolean modify(KeyType key, ValueType value) {
         try {
             Pair<KeyType, ValueType> pair = new Pair<>(key, value);
-            if (remove(pair, root)) {
-                if (!root.isBottomNode && root.dataCount == 1) {
-                    // 根节点只有一个子节点，将子节点作为新的根
-                    TreeNode son = new TreeNode(m);
-                    readTreeNode(son, root.childrenPos[0]);
-                    emptyTreeNode.pushBack(root.pos);
-                    root = son;
+            if (!modifyPair(pair)) {
+                return false;
+            }
+            log(LOG_UPDATE, key, value);
+            afterUpdate();
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to modify B+ tree", e);
+        }
+    }
+    
+    /**
+     * 原地修改（不写日志）
+     * 分隔关键字是子树中最大的键值对的拷贝，键相同的分隔关键字也要换成新值，
+     * 否则之后以（键，值）定位时会走错子树。为此下降路径上的节点在确认键存在之前一直pin住。
+     */
+    private boolean modifyPair(Pair<KeyType, ValueType> pair) throws IOException {
+        KeyType key = pair.getKey();
+        SeqList<TreeNode> path = new SeqList<>();
+        TreeNode current = root;
+        path.pushBack(current);
+        while (!current.isBottomNode) {
+            current = treeNodePool.pin(current.childrenPos[binarySearchTreeNode(key, current)]);
+            path.pushBack(current);
+        }
+        Leaf leaf = leafPool.pin(current.childrenPos[binarySearchTreeNode(key, current)]);
+        int index = binarySearchLeaf(key, leaf);
+        boolean found = index < leaf.dataCount && compare(leaf.value[index].getKey(), key) == 0;
+        if (found) {
+            leaf.value[index] = pair;
+        }
+        leafPool.unpin(leaf.pos, found);
+        for (int i = path.length() - 1; i >= 0; i--) {
+            TreeNode node = path.visit(i);
+            boolean dirty = false;
+            if (found) {
+                int septal = binarySearchTreeNode(key, node);
+                if (septal < node.dataCount - 1 && compare(node.septal[septal].getKey(), key) == 0) {
+                    node.septal[septal] = pair;
+                    dirty = true;
+                }
+            }
+            unpinTreeNode(node, dirty);
+        }
+        return found;
+    }
+    
+    /**
+     * 插入一个键值对（不写日志）
+     */
+    private void insertPair(Pair<KeyType, ValueType> pair) throws IOException {
+        modCount++;
+        if (insert(pair, root)) {
+            // 根节点分裂，创建新的根节点
+            TreeNode newNode = newTreeNode();
+            newNode.isBottomNode = root.isBottomNode;
+            newNode.dataCount = m / 2;
+            
+            int mid = m / 2;
+            for (int i = 0; i < mid; i++) {
+                newNode.childrenPos[i] = root.childrenPos[mid + i];
+            }
+            for (int i = 0; i < mid - 1; i++) {
+                newNode.septal[i] = root.septal[mid + i];
+            }
+            root.dataCount = mid;
+            
+            TreeNode newRoot = newTreeNode();
+            newRoot.dataCount = 2;
+            newRoot.isBottomNode = false;
+            newRoot.childrenPos[0] = root.pos;
+            newRoot.childrenPos[1] = newNode.pos;
+            newRoot.septal[0] = root.septal[mid - 1];
+            
+            treeNodePool.unpin(newNode.pos, true);
+            treeNodePool.unpin(root.pos, true);
+            root = newRoot;  // 新根节点保持pin住
+        }
+    }
+    
+    /**
+     * 批量插入：按树的顺序排序后插入
+     * 树为空时自底向上批量构建，否则按顺序逐个插入（相邻插入落在同一叶子上，缓冲池命中率高）
+     * @param pairs 待插入的键值对，顺序任意
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void insertAll(SeqList<Pair<KeyType, ValueType>> pairs) {
+        Pair<KeyType, ValueType>[] sorted = new Pair[pairs.length()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = pairs.visit(i);
+        }
+        Arrays.sort(sorted, this::comparePair);
+        if (sizeData == 0) {
+            bulkLoad(Arrays.asList(sorted).iterator());
+        } else {
+            for (Pair<KeyType, ValueType> pair : sorted) {
+                insert(pair.getKey(), pair.getValue());
+            }
+        }
+    }
+    
+    /**
+     * 以默认填充率批量构建
+     * @see #bulkLoad(Iterator, double)
+     */
+    public void bulkLoad(Iterator<Pair<KeyType, ValueType>> sorted) {
+        bulkLoad(sorted, DEFAULT_FILL_FACTOR);
+    }
+    
+    /**
+     * 自底向上批量构建B+树，只能在树为空时调用
+     * 依次写满叶子，再逐层构建内部节点，每个页面只写一次（写到新的位置），
+     * 最后通过检查点切换头部，中途崩溃时树仍为空。批量构建不写重做日志。
+     * @param sorted 按（键，值）升序排列的键值对
+     * @param fillFactor 页面填充率，取值 (0, 1]，1 表示叶子、内部节点都写到分裂前的最大容量
+     * @throws IllegalStateException 树不为空
+     * @throws IllegalArgumentException 输入未排序或填充率不合法
+     */
+    public void bulkLoad(Iterator<Pair<KeyType, ValueType>> sorted, double fillFactor) {
+        if (sizeData != 0) {
+            throw new IllegalStateException("bulkLoad requires an empty tree");
+        }
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new IllegalArgumentException("fillFactor must be in (0, 1]: " + fillFactor);
+        }
+        // 叶子存满 l 个、内部节点存满 m 个子节点时就会分裂，因此满载分别是 l-1 与 m-1
+        int perLeaf = Math.max(1, Math.min(l - 1, (int) Math.round((l - 1) * fillFactor)));
+        int perNode = Math.max(2, Math.min(m - 1, (int) Math.round((m - 1) * fillFactor)));
+        try {
+            // 从干净的文件开始：位置1是当前的空根与空叶子，位置2存放着空闲列表，新页面从位置3写起
+            reset();
+            int firstPos = rearTreeNode + 2;
+            int nextLeafPos = rearLeaf + 2;
+            SeqList<Integer> childPos = new SeqList<>();
+            SeqList<Pair<KeyType, ValueType>> childMax = new SeqList<>();  // 每个子树中最大的键值对
+            
+            // 写叶子：暂缓写出上一个叶子，以便填好 nxt，并在末尾与最后一个叶子平衡
+            Leaf prev = null;
+            Leaf cur = new Leaf(l);
+            cur.pos = nextLeafPos++;
+            Pair<KeyType, ValueType> last = null;
+            int count = 0;
+            while (sorted.hasNext()) {
+                Pair<KeyType, ValueType> pair = sorted.next();
+                if (last != null && comparePair(pair, last) < 0) {
+                    throw new IllegalArgumentException("bulkLoad input is not sorted at element " + count);
                 }
+                last = pair;
+                if (cur.dataCount == perLeaf) {
+                    if (prev != null) {
+                        writeBulkLeaf(prev, cur.pos, childPos, childMax);
+                    }
+                    Leaf next = prev != null ? prev : new Leaf(l);
+                    prev = cur;
+                    cur = next;
+                    cur.pos = nextLeafPos++;
+                    cur.dataCount = 0;
+                }
+                cur.value[cur.dataCount++] = pair;
+                count++;
+            }
+            if (count == 0) {
+                return;
             }
+            if (prev != null && cur.dataCount < perLeaf / 2) {
+                // 最后一个叶子太空，从前一个叶子匀一些过来
+                int total = prev.dataCount + cur.dataCount;
+                int move = prev.dataCount - (total + 1) / 2;
+                System.arraycopy(cur.value, 0, cur.value, move, cur.dataCount);
+                System.arraycopy(prev.value, prev.dataCount - move, cur.value, 0, move);
+                Arrays.fill(prev.value, prev.dataCount - move, prev.dataCount, null);
+                prev.dataCount -= move;
+                cur.dataCount += move;
+            }
+            if (prev != null) {
+                writeBulkLeaf(prev, cur.pos, childPos, childMax);
+            }
+            writeBulkLeaf(cur, 0, childPos, childMax);
+            
+            // 逐层构建内部节点，直到只剩一个节点作为根
+            int nextTreeNodePos = firstPos;
+            TreeNode node = new TreeNode(m);
+            boolean bottom = true;
+            do {
+                int n = childPos.length();
+                int nodes = (n + perNode - 1) / perNode;
+                SeqList<Integer> parentPos = new SeqList<>();
+                SeqList<Pair<KeyType, ValueType>> parentMax = new SeqList<>();
+                int index = 0;
+                for (int k = 0; k < nodes; k++) {
+                    // 子节点均匀分给各个节点，避免最后一个节点过空
+                    int children = n / nodes + (k < n % nodes ? 1 : 0);
+                    node.pos = nextTreeNodePos++;
+                    node.isBottomNode = bottom;
+                    node.dataCount = children;
+                    Arrays.fill(node.childrenPos, 0);
+                    for (int j = 0; j < children; j++) {
+                        node.childrenPos[j] = childPos.visit(index + j);
+                        if (j < children - 1) {
+                            node.septal[j] = childMax.visit(index + j);
+                        }
+                    }
+                    writeTreeNode(node);
+                    parentPos.pushBack(node.pos);
+                    parentMax.pushBack(childMax.visit(index + children - 1));
+                    index += children;
+                }
+                childPos = parentPos;
+                childMax = parentMax;
+                bottom = false;
+            } while (childPos.length() > 1);
+            
+            // 新页面落盘后，由检查点一次性切换头部；原来的位置1、2交给空闲列表
+            treeNodeFile.force();
+            leafFile.force();
+            treeNodePool.clear();
+            leafPool.clear();
+            emptyTreeNode.pushBack(1);
+            emptyTreeNode.pushBack(2);
+            emptyLeaf.pushBack(1);
+            emptyLeaf.pushBack(2);
+            rearTreeNode = nextTreeNodePos - 1;
+            rearLeaf = nextLeafPos - 1;
+            sizeData = count;
+            root = treeNodePool.pin(childPos.visit(0));
+            writeCheckpoint();
         } catch (IOException e) {
-            throw new RuntimeException("Failed to remove from B+ tree", e);
+            throw new RuntimeException("Failed to bulk load B+ tree", e);
         }
     }
     
     /**
-     * 递归插入
+     * 批量构建时写出一个叶子，并记录它的位置与最大的键值对
+     */
+    private void writeBulkLeaf(Leaf leaf, int nxt, SeqList<Integer> childPos,
+                               SeqList<Pair<KeyType, ValueType>> childMax) throws IOException {
+        leaf.nxt = nxt;
+        writeLeaf(leaf);
+        childPos.pushBack(leaf.pos);
+        childMax.pushBack(leaf.value[leaf.dataCount - 1]);
+    }
+    
+    /**
+     * 删除一个键值对（不写日志）
+     */
+    private void removePair(Pair<KeyType, ValueType> pair) throws IOException {
+        modCount++;
+        if (remove(pair, root)) {
+            if (!root.isBottomNode && root.dataCount == 1) {
+                // 根节点只有一个子节点，将子节点作为新的根
+                TreeNode son = treeNodePool.pin(root.childrenPos[0]);
+                emptyTreeNode.pushBack(root.pos);
+                treeNodePool.unpin(root.pos, false);
+                treeNodePool.discard(root.pos);
+                root = son;
+            }
+        }
+    }
+    
+    /**
+     * 递归插入，调用者需保证 currentNode 已被pin住
+     * @return currentNode 是否已满、需要由调用者分裂
      */
     private boolean insert(Pair<KeyType, ValueType> pair, TreeNode currentNode) throws IOException {
         if (currentNode.isBottomNode) {
             // 叶子节点层
-            Leaf leaf = new Leaf(l);
             int nodePos = binarySearchTreeNodeValue(pair, currentNode);
-            readLeaf(leaf, currentNode.childrenPos[nodePos]);
+            Leaf leaf = leafPool.pin(currentNode.childrenPos[nodePos]);
             int leafPos = binarySearchLeafValue(pair, leaf);
             
             // 插入数据
@@ -429,8 +1048,7 @@ public class BPlusTree<KeyType, ValueType>
             
             if (leaf.dataCount == l) {
                 // 叶子节点满了，需要分裂
-                Leaf newLeaf = new Leaf(l);
-                newLeaf.pos = getNewLeafPos();
+                Leaf newLeaf = newLeaf();
                 newLeaf.nxt = leaf.nxt;
                 leaf.nxt = newLeaf.pos;
                 
@@ -440,9 +1058,6 @@ public class BPlusTree<KeyType, ValueType>
                 }
                 leaf.dataCount = newLeaf.dataCount = mid;
                 
-                writeLeaf(leaf);
-                writeLeaf(newLeaf);
-                
                 // 更新父节点
                 for (int i = currentNode.dataCount; i > nodePos + 1; i--) {
                     currentNode.childrenPos[i] = currentNode.childrenPos[i - 1];
@@ -454,26 +1069,27 @@ public class BPlusTree<KeyType, ValueType>
                 currentNode.septal[nodePos] = leaf.value[mid - 1];
                 currentNode.dataCount++;
                 
+                leafPool.unpin(newLeaf.pos, true);
+                leafPool.unpin(leaf.pos, true);
+                
                 if (currentNode.dataCount == m) {
                     return true; // 需要继续分裂
                 } else {
-                    writeTreeNode(currentNode);
+                    treeNodePool.markDirty(currentNode.pos);
                     return false;
                 }
             } else {
-                writeLeaf(leaf);
+                leafPool.unpin(leaf.pos, true);
                 return false;
             }
         } else {
             // 内部节点层
-            TreeNode son = new TreeNode(m);
             int now = binarySearchTreeNodeValue(pair, currentNode);
-            readTreeNode(son, currentNode.childrenPos[now]);
+            TreeNode son = treeNodePool.pin(currentNode.childrenPos[now]);
             
             if (insert(pair, son)) {
                 // 子节点分裂
-                TreeNode newNode = new TreeNode(m);
-                newNode.pos = getNewTreeNodePos();
+                TreeNode newNode = newTreeNode();
                 newNode.isBottomNode = son.isBottomNode;
                 
                 int mid = m / 2;
@@ -485,9 +1101,6 @@ public class BPlusTree<KeyType, ValueType>
                 }
                 newNode.dataCount = son.dataCount = mid;
                 
-                writeTreeNode(son);
-                writeTreeNode(newNode);
-                
                 // 更新当前节点
                 for (int i = currentNode.dataCount; i > now + 1; i--) {
                     currentNode.childrenPos[i] = currentNode.childrenPos[i - 1];
@@ -499,30 +1112,34 @@ public class BPlusTree<KeyType, ValueType>
                 currentNode.septal[now] = son.septal[mid - 1];
                 currentNode.dataCount++;
                 
+                treeNodePool.unpin(newNode.pos, true);
+                treeNodePool.unpin(son.pos, true);
+                
                 if (currentNode.dataCount == m) {
                     return true; // 需要继续分裂
                 } else {
-                    writeTreeNode(currentNode);
+                    treeNodePool.markDirty(currentNode.pos);
                     return false;
                 }
             } else {
+                treeNodePool.unpin(son.pos, false);
                 return false;
             }
         }
     }
     
     /**
-     * 递归删除
+     * 递归删除，调用者需保证 currentNode 已被pin住
      */
     private boolean remove(Pair<KeyType, ValueType> pair, TreeNode currentNode) throws IOException {
         if (currentNode.isBottomNode) {
             // 叶子节点层
-            Leaf leaf = new Leaf(l);
             int nodePos = binarySearchTreeNodeValue(pair, currentNode);
-            readLeaf(leaf, currentNode.childrenPos[nodePos]);
+            Leaf leaf = leafPool.pin(currentNode.childrenPos[nodePos]);
             int leafPos = binarySearchLeafValue(pair, leaf);
             
             if (leafPos == leaf.dataCount || !checkPairEqual(leaf.value[leafPos], pair)) {
+                leafPool.unpin(leaf.pos, false);
                 return false; // 未找到
             }
             
@@ -531,33 +1148,65 @@ public class BPlusTree<KeyType, ValueType>
             for (int i = leafPos; i < leaf.dataCount; i++) {
                 leaf.value[i] = leaf.value[i + 1];
             }
+            leaf.value[leaf.dataCount] = null;
+            boolean underflow = leaf.dataCount < l / 2;
+            leafPool.unpin(leaf.pos, true);
             
-            if (leaf.dataCount < l / 2) {
+            if (underflow) {
                 // 需要合并或借节点
                 // 这里简化处理，实际需要实现复杂的合并逻辑
-                writeLeaf(leaf);
                 return currentNode.dataCount < m / 2;
             } else {
-                writeLeaf(leaf);
                 return false;
             }
         } else {
             // 内部节点层
-            TreeNode son = new TreeNode(m);
             int now = binarySearchTreeNodeValue(pair, currentNode);
-            readTreeNode(son, currentNode.childrenPos[now]);
+            TreeNode son = treeNodePool.pin(currentNode.childrenPos[now]);
             
             if (remove(pair, son)) {
                 // 子节点删除后需要调整
                 // 这里简化处理，实际需要实现复杂的合并逻辑
-                writeTreeNode(son);
+                treeNodePool.unpin(son.pos, true);
                 return currentNode.dataCount < m / 2;
             } else {
+                treeNodePool.unpin(son.pos, false);
                 return false;
             }
         }
     }
     
+    /**
+     * 解除树节点的pin，根节点常驻缓冲池，不解除
+     */
+    private void unpinTreeNode(TreeNode node, boolean dirty) {
+        if (node != root) {
+            treeNodePool.unpin(node.pos, dirty);
+        } else if (dirty) {
+            treeNodePool.markDirty(node.pos);
+        }
+    }
+    
+    /**
+     * 分配一个新的树节点并放入缓冲池（已pin住）
+     */
+    private TreeNode newTreeNode() throws IOException {
+        TreeNode node = new TreeNode(m);
+        node.pos = getNewTreeNodePos();
+        treeNodePool.put(node.pos, node);
+        return node;
+    }
+    
+    /**
+     * 分配一个新的叶子节点并放入缓冲池（已pin住）
+     */
+    private Leaf newLeaf() throws IOException {
+        Leaf leaf = new Leaf(l);
+        leaf.pos = getNewLeafPos();
+        leafPool.put(leaf.pos, leaf);
+        return leaf;
+    }
+    
     /**
      * 在树节点中二分查找
      */
@@ -663,16 +1312,55 @@ public class BPlusTree<KeyType, ValueType>
      */
     public void clear() {
         try {
-            treeNodeFile.close();
-            leafFile.close();
-            emptyTreeNode.clear();
-            emptyLeaf.clear();
-            initialize();
+            reset();
         } catch (IOException e) {
             throw new RuntimeException("Failed to clear B+ tree", e);
         }
     }
     
+    /**
+     * 提交重做日志：此前完成的修改在崩溃后都能恢复
+     */
+    public void sync() {
+        try {
+            wal.commit();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to sync B+ tree", e);
+        }
+    }
+    
+    /**
+     * 检查点：将缓冲池中的脏页连同头部、空闲列表一并写回，并清空重做日志
+     */
+    public void checkpoint() {
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to checkpoint B+ tree", e);
+        }
+    }
+    
+    /**
+     * 重做日志的组提交（fsync）次数
+     */
+    public long getLogCommits() {
+        return wal.getCommits();
+    }
+    
+    /**
+     * 缓冲池命中次数（树节点与叶子合计）
+     */
+    public long getPoolHits() {
+        return treeNodePool.getHits() + leafPool.getHits();
+    }
+    
+    /**
+     * 缓冲池未命中次数（树节点与叶子合计），即实际读盘的页数
+     */
+    public long getPoolMisses() {
+        return treeNodePool.getMisses() + leafPool.getMisses();
+    }
+    
     /**
      * 关闭文件
      */
@@ -680,30 +1368,12 @@ public class BPlusTree<KeyType, ValueType>
         try {
             if (treeNodeFile != null) {
                 // 保存状态到文件
-                treeNodeFile.seek(0);
-                treeNodeFile.writeInt(root.pos);
-                treeNodeFile.writeInt(rearTreeNode);
-                writeTreeNode(root);
-                
-                leafFile.seek(0);
-                leafFile.writeInt(rearLeaf);
-                leafFile.writeInt(sizeData);
-                
-                // 保存空闲节点列表
-                treeNodeFile.seek(headerLengthOfTreeNodeFile + (rearTreeNode + 1) * getTreeNodeSize());
-                treeNodeFile.writeInt(emptyTreeNode.length());
-                for (int i = 0; i < emptyTreeNode.length(); i++) {
-                    treeNodeFile.writeInt(emptyTreeNode.visit(i));
-                }
-                
-                leafFile.seek(headerLengthOfLeafFile + (rearLeaf + 1) * getLeafSize());
-                leafFile.writeInt(emptyLeaf.length());
-                for (int i = 0; i < emptyLeaf.length(); i++) {
-                    leafFile.writeInt(emptyLeaf.visit(i));
-                }
+                writeCheckpoint();
                 
                 treeNodeFile.close();
                 leafFile.close();
+                wal.close();
+                journal.close();
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to close B+ tree", e);
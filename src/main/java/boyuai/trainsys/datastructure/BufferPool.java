@@ -0,0 +1,317 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 定容页面缓冲池
+ * 以页面位置为键缓存已解码的页面对象，采用 LRU-K 淘汰策略：
+ * 访问次数不足 K 次的页面优先淘汰（其间按最近一次访问的先后），
+ * 其余页面中淘汰倒数第 K 次访问最早的页面。
+ * 被 pin 住的页面不会被淘汰；脏页在淘汰或 flush 时写回。
+ * 关闭 steal 后脏页不会被淘汰（配合重做日志使用，数据文件只在检查点时改变），
+ * 此时若没有可淘汰的干净页面，缓冲池会暂时超出容量，由使用者通过检查点回收。
+ * @param <P> 页面类型
+ */
+public class BufferPool<P> {
+
+    /**
+     * 页面读写接口，由使用缓冲池的存储结构提供
+     * @param <P> 页面类型
+     */
+    public interface PageIO<P> {
+        /**
+         * 从磁盘读取页面
+         * @param pos 页面位置
+         * @param recycled 可复用的页面对象（来自被淘汰的页面），可能为null
+         * @return 读到的页面
+         */
+        P read(int pos, P recycled) throws IOException;
+
+        /**
+         * 将页面写回磁盘
+         * @param pos 页面位置
+         * @param page 页面
+         */
+        void write(int pos, P page) throws IOException;
+    }
+
+    /**
+     * 脏页访问接口
+     * @param <P> 页面类型
+     */
+    public interface DirtyVisitor<P> {
+        void visit(int pos, P page) throws IOException;
+    }
+
+    /**
+     * 缓冲帧
+     */
+    private static class Frame<P> {
+        P page;
+        int pinCount;
+        boolean dirty;
+        long[] history;     // 最近 K 次访问时间，环形存放
+        int accessCount;    // 累计访问次数
+
+        Frame(P page, int k) {
+            this.page = page;
+            this.history = new long[k];
+        }
+
+        void access(long time) {
+            history[accessCount % history.length] = time;
+            accessCount++;
+        }
+
+        // 最近一次访问时间
+        long lastAccess() {
+            return history[(accessCount - 1) % history.length];
+        }
+
+        // 倒数第 K 次访问时间
+        long kthAccess() {
+            return history[accessCount % history.length];
+        }
+    }
+
+    private final Map<Integer, Frame<P>> frames;
+    private final PageIO<P> io;
+    private final int capacity;     // 容量（页）
+    private final int k;            // LRU-K 中的 K
+    private final boolean steal;    // 是否允许淘汰脏页
+    private long clock;             // 逻辑时钟
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 构造函数
+     * @param capacity 容量（页）
+     * @param k LRU-K 中的 K
+     * @param io 页面读写接口
+     */
+    public BufferPool(int capacity, int k, PageIO<P> io) {
+        this(capacity, k, true, io);
+    }
+
+    /**
+     * 构造函数
+     * @param capacity 容量（页）
+     * @param k LRU-K 中的 K
+     * @param steal 是否允许淘汰脏页（淘汰时写回）
+     * @param io 页面读写接口
+     */
+    public BufferPool(int capacity, int k, boolean steal, PageIO<P> io) {
+        if (capacity < 1 || k < 1) {
+            throw new IllegalArgumentException("capacity and k must be positive");
+        }
+        this.capacity = capacity;
+        this.k = k;
+        this.steal = steal;
+        this.io = io;
+        this.frames = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 获取页面并将其 pin 住，未命中时从磁盘读取
+     * @param pos 页面位置
+     * @return 页面
+     */
+    public P pin(int pos) throws IOException {
+        Frame<P> frame = frames.get(pos);
+        if (frame != null) {
+            hits++;
+        } else {
+            misses++;
+            P recycled = makeRoom();
+            frame = new Frame<>(io.read(pos, recycled), k);
+            frames.put(pos, frame);
+        }
+        frame.pinCount++;
+        frame.access(++clock);
+        return frame.page;
+    }
+
+    /**
+     * 解除 pin
+     * @param pos 页面位置
+     * @param dirty 页面在 pin 期间是否被修改
+     */
+    public void unpin(int pos, boolean dirty) {
+        Frame<P> frame = frames.get(pos);
+        if (frame == null || frame.pinCount == 0) {
+            throw new IllegalStateException("Page " + pos + " is not pinned");
+        }
+        frame.pinCount--;
+        frame.dirty |= dirty;
+    }
+
+    /**
+     * 标记页面为脏页，页面必须在缓冲池中
+     * @param pos 页面位置
+     */
+    public void markDirty(int pos) {
+        Frame<P> frame = frames.get(pos);
+        if (frame == null) {
+            throw new IllegalStateException("Page " + pos + " is not cached");
+        }
+        frame.dirty = true;
+    }
+
+    /**
+     * 放入一个新建的页面（视为脏页），并将其 pin 住
+     * @param pos 页面位置
+     * @param page 页面
+     */
+    public void put(int pos, P page) throws IOException {
+        Frame<P> frame = frames.get(pos);
+        if (frame == null) {
+            makeRoom();
+            frame = new Frame<>(page, k);
+            frames.put(pos, frame);
+        } else {
+            frame.page = page;
+        }
+        frame.dirty = true;
+        frame.pinCount++;
+        frame.access(++clock);
+    }
+
+    /**
+     * 丢弃页面，不写回（用于页面被释放的情形）
+     * @param pos 页面位置
+     */
+    public void discard(int pos) {
+        frames.remove(pos);
+    }
+
+    /**
+     * 将所有脏页写回磁盘
+     */
+    public void flush() throws IOException {
+        for (Map.Entry<Integer, Frame<P>> entry : frames.entrySet()) {
+            Frame<P> frame = entry.getValue();
+            if (frame.dirty) {
+                io.write(entry.getKey(), frame.page);
+                frame.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * 依次访问所有脏页（不改变脏标记）
+     * @param visitor 访问回调
+     */
+    public void forEachDirty(DirtyVisitor<P> visitor) throws IOException {
+        for (Map.Entry<Integer, Frame<P>> entry : frames.entrySet()) {
+            if (entry.getValue().dirty) {
+                visitor.visit(entry.getKey(), entry.getValue().page);
+            }
+        }
+    }
+
+    /**
+     * 将所有页面标记为干净（脏页已由使用者自行持久化），并把缓冲池收缩回容量以内
+     */
+    public void markClean() throws IOException {
+        for (Frame<P> frame : frames.values()) {
+            frame.dirty = false;
+        }
+        while (frames.size() > capacity && makeRoom() != null) {
+            // 逐个淘汰，直到回到容量以内或剩下的都被pin住
+        }
+    }
+
+    /**
+     * 清空缓冲池，不写回
+     */
+    public void clear() {
+        frames.clear();
+    }
+
+    /**
+     * 缓冲池满时淘汰一个页面
+     * @return 被淘汰的页面对象，供调用者复用；缓冲池未满或（不允许 steal 时）没有可淘汰页面时返回null
+     */
+    private P makeRoom() throws IOException {
+        if (frames.size() < capacity) {
+            return null;
+        }
+        int victimPos = 0;
+        Frame<P> victim = null;
+        for (Map.Entry<Integer, Frame<P>> entry : frames.entrySet()) {
+            Frame<P> frame = entry.getValue();
+            if (frame.pinCount == 0 && (steal || !frame.dirty)
+                    && (victim == null || evictBefore(frame, victim))) {
+                victim = frame;
+                victimPos = entry.getKey();
+            }
+        }
+        if (victim == null) {
+            if (!steal) {
+                return null;  // 只剩脏页或被pin住的页面，暂时超出容量
+            }
+            throw new IllegalStateException("All " + capacity + " pages are pinned");
+        }
+        if (victim.dirty) {
+            io.write(victimPos, victim.page);
+        }
+        frames.remove(victimPos);
+        evictions++;
+        return victim.page;
+    }
+
+    /**
+     * 判断 a 是否应当先于 b 被淘汰
+     */
+    private boolean evictBefore(Frame<P> a, Frame<P> b) {
+        boolean aCold = a.accessCount < k;
+        boolean bCold = b.accessCount < k;
+        if (aCold != bCold) {
+            return aCold;  // 访问不足 K 次的页面，其后向 K 距离视为无穷大
+        }
+        if (aCold) {
+            return a.lastAccess() < b.lastAccess();
+        }
+        return a.kthAccess() < b.kthAccess();
+    }
+
+    /**
+     * 当前缓存的页面数
+     */
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * 缓存中的脏页数
+     */
+    public int dirtyCount() {
+        int count = 0;
+        Iterator<Frame<P>> it = frames.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().dirty) count++;
+        }
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
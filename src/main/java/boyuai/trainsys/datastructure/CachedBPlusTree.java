@@ -17,19 +17,24 @@ public class CachedBPlusTree<KeyType, ValueType> {
     /**
      * 构造函数
      * @param filename 文件名前缀
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
      */
-    public CachedBPlusTree(String filename) {
-        this(filename, null);
+    public CachedBPlusTree(String filename, Codec<KeyType> keyCodec, Codec<ValueType> valueCodec) {
+        this(filename, null, keyCodec, valueCodec);
     }
     
     /**
      * 构造函数
      * @param filename 文件名前缀
      * @param comparator 键比较器
+     * @param keyCodec 键编解码器
+     * @param valueCodec 值编解码器
      */
-    public CachedBPlusTree(String filename, Comparator<KeyType> comparator) {
+    public CachedBPlusTree(String filename, Comparator<KeyType> comparator,
+                           Codec<KeyType> keyCodec, Codec<ValueType> valueCodec) {
         this.comparator = comparator;
-        this.storage = new BPlusTree<>(filename, 100, 100, comparator);
+        this.storage = new BPlusTree<>(filename, 100, 100, comparator, keyCodec, valueCodec);
         this.cache = new RedBlackTree<>(comparator);
     }
     
@@ -126,6 +131,13 @@ public class CachedBPlusTree<KeyType, ValueType> {
         // cache.clear();
     }
     
+    /**
+     * 提交存储的重做日志
+     */
+    public void sync() {
+        storage.sync();
+    }
+    
     /**
      * 关闭文件
      */
@@ -0,0 +1,136 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 检查点的双写日志
+ * 检查点要改写的页面、头部与空闲列表先整体写入本文件并 fsync，再原地写入数据文件。
+ * 原地写到一半崩溃时，重新打开会把日志中的内容再写一遍；日志本身不完整（校验失败）
+ * 说明原地写入尚未开始，直接丢弃即可。因此数据文件总是处于某个完整检查点的状态。
+ * 文件格式：条目数(4) + 若干条目 [文件编号(1) + 偏移(8) + 长度(4) + 数据] + CRC32(4)
+ */
+public class CheckpointJournal {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private int entries;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 构造函数
+     * @param fileName 日志文件名
+     */
+    public CheckpointJournal(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "rw");
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * 开始记录一次检查点
+     */
+    public void begin() {
+        buffer.clear();
+        buffer.putInt(0);  // 条目数，commit 时回填
+        entries = 0;
+    }
+
+    /**
+     * 记录一次写入
+     * @param fileIndex 目标文件在 files 数组中的下标
+     * @param offset 写入偏移
+     * @param data 数据，写入 [0, length) 字节
+     * @param length 长度
+     */
+    public void add(int fileIndex, long offset, byte[] data, int length) {
+        int need = 1 + Long.BYTES + Integer.BYTES + length + Integer.BYTES;
+        if (buffer.remaining() < need) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + need));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+        buffer.put((byte) fileIndex);
+        buffer.putLong(offset);
+        buffer.putInt(length);
+        buffer.put(data, 0, length);
+        entries++;
+    }
+
+    /**
+     * 将记录的内容写入日志并 fsync，此后才能原地写入数据文件
+     */
+    public void commit() throws IOException {
+        buffer.putInt(0, entries);
+        crc.reset();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        channel.truncate(0);
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * 将已记录的写入作用到数据文件并刷盘
+     * @param files 目标文件
+     */
+    public void apply(PageFile[] files) throws IOException {
+        ByteBuffer journal = buffer.duplicate();
+        journal.rewind();
+        int count = journal.getInt();
+        for (int i = 0; i < count; i++) {
+            int fileIndex = journal.get();
+            long offset = journal.getLong();
+            int length = journal.getInt();
+            byte[] data = new byte[length];
+            journal.get(data);
+            files[fileIndex].write(offset, data, length);
+        }
+        for (PageFile pageFile : files) {
+            pageFile.force();
+        }
+    }
+
+    /**
+     * 打开时调用：若日志完整，则重做其中的写入
+     * @param files 目标文件
+     * @return 是否重做了日志
+     */
+    public boolean recover(PageFile[] files) throws IOException {
+        long size = channel.size();
+        boolean complete = false;
+        if (size >= 2 * Integer.BYTES) {
+            buffer = ByteBuffer.allocate((int) size);
+            channel.read(buffer, 0);
+            crc.reset();
+            crc.update(buffer.array(), 0, (int) size - Integer.BYTES);
+            complete = buffer.getInt((int) size - Integer.BYTES) == (int) crc.getValue();
+            if (complete) {
+                apply(files);
+            }
+        }
+        clear();
+        return complete;
+    }
+
+    /**
+     * 检查点完成后清空日志
+     */
+    public void clear() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,31 @@
+package boyuai.trainsys.datastructure;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 定长二进制编解码器
+ * B+树依靠它把键、值写入固定大小的槽位，从而保证每个页面定长
+ * @param <T> 被编码的类型
+ */
+public interface Codec<T> {
+
+    /**
+     * 编码后占用的字节数，对同一个编解码器必须恒定
+     * @return 字节数
+     */
+    int size();
+
+    /**
+     * 将对象写入缓冲区的当前位置，恰好写入 size() 个字节
+     * @param value 待编码对象（非null）
+     * @param buffer 目标缓冲区
+     */
+    void encode(T value, ByteBuffer buffer);
+
+    /**
+     * 从缓冲区的当前位置读出对象，恰好消耗 size() 个字节
+     * @param buffer 源缓冲区
+     * @return 解码得到的对象
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -44,6 +44,28 @@ public class DisjointSet {
         }
     }
     
+    /**
+     * 扩充元素个数，新增的元素各自成为一个集合
+     * @param n 新的元素个数
+     */
+    public void ensureCapacity(int n) {
+        if (n <= size) return;
+        int[] tmp = new int[Math.max(n, size * 2)];
+        System.arraycopy(parent, 0, tmp, 0, size);
+        for (int i = size; i < tmp.length; i++) {
+            tmp[i] = -1;
+        }
+        parent = tmp;
+        size = tmp.length;
+    }
+
+    /**
+     * 元素个数
+     */
+    public int size() {
+        return size;
+    }
+
     /**
      * 查找元素x的根节点，并进行路径压缩
      * @param x 要查找的元素
@@ -0,0 +1,416 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 支持加边、删边的无向图连通性（Holm–de Lichtenberg–Thorup 算法）
+ * 每条边有一个层次，新边为第 0 层。第 i 层的森林 F_i 由层次不低于 i 的树边组成，
+ * F_0 即整张图的生成森林；每棵树用欧拉回路序列表示，存放在带父指针的隐式 treap 中，
+ * 这样连边（link）、断边（cut）、判断是否同一棵树都是 O(log n)。
+ * 删除第 i 层的树边后，从第 i 层向下寻找替代边：在较小的一侧，先把第 i 层树边升到第 i + 1 层，
+ * 再逐条检查第 i 层的非树边，两端跨越两侧的即为替代边，否则把它升一层。
+ * 每条边至多升 log n 次，因此加边、删边的均摊复杂度为 O(log² n)，查询为 O(log n)。
+ * 同一对顶点之间的重边只记重数，重数降为 0 时才真正删边；自环不影响连通性，直接忽略。
+ */
+public class DynamicConnectivity {
+
+    /**
+     * 一条边（一对顶点），tree 表示当前是否为生成森林中的树边
+     */
+    private static class Edge {
+        final int u;
+        final int v;
+        int level;
+        boolean tree;
+        int count = 1;              // 重数
+        Node[] arcs = new Node[2];  // 作为树边时，各层森林中 u->v、v->u 两条弧：arcs[2 * level], arcs[2 * level + 1]
+
+        Edge(int u, int v) {
+            this.u = u;
+            this.v = v;
+        }
+    }
+
+    /**
+     * 欧拉回路序列中的结点：顶点结点或弧结点
+     */
+    private static class Node {
+        Node left;
+        Node right;
+        Node parent;
+        final int priority;
+        final int vertex;       // 顶点结点的顶点编号，弧结点为-1
+        final Edge edge;        // 弧结点所属的边，顶点结点为null
+        int size = 1;           // 子树结点数
+        int vertices;           // 子树中的顶点结点数
+        boolean treeEdgeHere;   // 弧结点：所属边恰好在本层（每条边只在 u->v 弧上标记）
+        boolean nonTreeHere;    // 顶点结点：该顶点在本层有非树边
+        boolean treeEdgeBelow;  // 子树中是否有 treeEdgeHere
+        boolean nonTreeBelow;   // 子树中是否有 nonTreeHere
+
+        Node(int priority, int vertex, Edge edge) {
+            this.priority = priority;
+            this.vertex = vertex;
+            this.edge = edge;
+            this.vertices = vertex >= 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * 一层森林
+     */
+    private static class Level {
+        Node[] vertexNodes = new Node[16];
+        final Map<Integer, Set<Edge>> nonTree = new HashMap<>();  // 各顶点在本层的非树边
+    }
+
+    private final ArrayList<Level> levels = new ArrayList<>();
+    private final Map<Long, Edge> edges = new HashMap<>();
+    private int seed = 0x2545F491;
+
+    public DynamicConnectivity() {
+        levels.add(new Level());
+    }
+
+    // ===== 对外接口 =====
+
+    /**
+     * 加入一条边（重数加一）
+     */
+    public void addEdge(int u, int v) {
+        if (u == v) {
+            return;
+        }
+        long key = key(u, v);
+        Edge e = edges.get(key);
+        if (e != null) {
+            e.count++;
+            return;
+        }
+        e = new Edge(Math.min(u, v), Math.max(u, v));
+        edges.put(key, e);
+        if (!connected(u, v)) {
+            e.tree = true;
+            link(0, e);
+        } else {
+            addNonTree(0, e);
+        }
+    }
+
+    /**
+     * 删除一条边（重数减一，减到 0 时从图中删去）
+     * @return 边是否存在
+     */
+    public boolean removeEdge(int u, int v) {
+        if (u == v) {
+            return true;
+        }
+        long key = key(u, v);
+        Edge e = edges.get(key);
+        if (e == null) {
+            return false;
+        }
+        if (--e.count > 0) {
+            return true;
+        }
+        edges.remove(key);
+        if (!e.tree) {
+            removeNonTree(e.level, e);
+            return true;
+        }
+        for (int i = 0; i <= e.level; i++) {
+            cut(i, e);
+        }
+        replace(e.u, e.v, e.level);
+        return true;
+    }
+
+    /**
+     * 两个顶点是否连通
+     */
+    public boolean connected(int u, int v) {
+        if (u == v) {
+            return true;
+        }
+        return root(vertexNode(0, u)) == root(vertexNode(0, v));
+    }
+
+    /**
+     * 顶点所在连通块的顶点数（只计入出现过的顶点）
+     */
+    public int componentSize(int u) {
+        return root(vertexNode(0, u)).vertices;
+    }
+
+    /**
+     * 两个顶点之间的边的重数
+     */
+    public int multiplicity(int u, int v) {
+        Edge e = edges.get(key(u, v));
+        return e == null ? 0 : e.count;
+    }
+
+    private static long key(int u, int v) {
+        return (long) Math.min(u, v) << 32 | Math.max(u, v);
+    }
+
+    // ===== 替代边 =====
+
+    /**
+     * 删去第 level 层的树边 (u, v) 后寻找替代边
+     */
+    private void replace(int u, int v, int level) {
+        for (int i = level; i >= 0; i--) {
+            Node ru = root(vertexNode(i, u));
+            Node rv = root(vertexNode(i, v));
+            Node small = ru.vertices <= rv.vertices ? ru : rv;
+            int smallVertex = small == ru ? u : v;
+
+            // 较小一侧的第 i 层树边全部升到第 i + 1 层
+            Node arc;
+            while ((arc = findTreeEdge(root(vertexNode(i, smallVertex)))) != null) {
+                Edge f = arc.edge;
+                f.level = i + 1;
+                setTreeEdgeHere(arc, false);
+                link(i + 1, f);
+            }
+
+            // 检查较小一侧的第 i 层非树边
+            Node w;
+            while ((w = findNonTree(root(vertexNode(i, smallVertex)))) != null) {
+                Set<Edge> incident = levels.get(i).nonTree.get(w.vertex);
+                Iterator<Edge> it = incident.iterator();
+                Edge f = it.next();
+                removeNonTree(i, f);
+                int other = f.u == w.vertex ? f.v : f.u;
+                if (root(vertexNode(i, other)) != root(vertexNode(i, smallVertex))) {
+                    // 找到替代边，在第 0..i 层连上
+                    f.tree = true;
+                    for (int j = 0; j <= i; j++) {
+                        link(j, f);
+                    }
+                    return;
+                }
+                f.level = i + 1;
+                addNonTree(i + 1, f);
+            }
+        }
+    }
+
+    private Level level(int i) {
+        while (levels.size() <= i) {
+            levels.add(new Level());
+        }
+        return levels.get(i);
+    }
+
+    /**
+     * 顶点在第 i 层森林中的结点，不存在时新建（自成一棵树）
+     */
+    private Node vertexNode(int i, int vertex) {
+        Level level = level(i);
+        if (vertex >= level.vertexNodes.length) {
+            level.vertexNodes = Arrays.copyOf(level.vertexNodes, Math.max(vertex + 1, level.vertexNodes.length * 2));
+        }
+        Node node = level.vertexNodes[vertex];
+        if (node == null) {
+            node = new Node(nextPriority(), vertex, null);
+            level.vertexNodes[vertex] = node;
+        }
+        return node;
+    }
+
+    private void addNonTree(int i, Edge e) {
+        e.level = i;
+        Level level = level(i);
+        for (int x : new int[]{e.u, e.v}) {
+            Set<Edge> set = level.nonTree.computeIfAbsent(x, k -> new HashSet<>());
+            set.add(e);
+            if (set.size() == 1) {
+                setNonTreeHere(vertexNode(i, x), true);
+            }
+        }
+    }
+
+    private void removeNonTree(int i, Edge e) {
+        Level level = level(i);
+        for (int x : new int[]{e.u, e.v}) {
+            Set<Edge> set = level.nonTree.get(x);
+            set.remove(e);
+            if (set.isEmpty()) {
+                level.nonTree.remove(x);
+                setNonTreeHere(vertexNode(i, x), false);
+            }
+        }
+    }
+
+    // ===== 欧拉回路序列 =====
+
+    /**
+     * 在第 i 层森林中连上树边 e
+     */
+    private void link(int i, Edge e) {
+        if (e.arcs.length < 2 * i + 2) {
+            e.arcs = Arrays.copyOf(e.arcs, 2 * i + 2);
+        }
+        Node uv = new Node(nextPriority(), -1, e);
+        Node vu = new Node(nextPriority(), -1, e);
+        uv.treeEdgeHere = e.level == i;
+        update(uv);
+        e.arcs[2 * i] = uv;
+        e.arcs[2 * i + 1] = vu;
+        Node tourU = reroot(vertexNode(i, e.u));
+        Node tourV = reroot(vertexNode(i, e.v));
+        merge(merge(merge(tourU, uv), tourV), vu);
+    }
+
+    /**
+     * 在第 i 层森林中断开树边 e
+     */
+    private void cut(int i, Edge e) {
+        Node a = e.arcs[2 * i];
+        Node b = e.arcs[2 * i + 1];
+        e.arcs[2 * i] = null;
+        e.arcs[2 * i + 1] = null;
+        int ia = index(a);
+        int ib = index(b);
+        if (ia > ib) {
+            int t = ia;
+            ia = ib;
+            ib = t;
+        }
+        // 序列为 L [a] M [b] R：M 自成一棵树，L 与 R 相接为另一棵
+        Node[] first = split(root(a), ia);
+        Node[] second = split(first[1], ib - ia + 1);
+        Node[] middle = split(second[0], 1);
+        Node[] inner = split(middle[1], ib - ia - 1);
+        merge(first[0], second[1]);
+        // inner[0] 为 M，inner[1] 为 b，两条弧结点就此丢弃
+    }
+
+    /**
+     * 把回路旋转为从顶点结点 v 开始，返回新的根
+     */
+    private Node reroot(Node v) {
+        Node[] parts = split(root(v), index(v));
+        return merge(parts[1], parts[0]);
+    }
+
+    /**
+     * 在以 root 为根的树中找一条恰在本层的树边的弧结点
+     */
+    private static Node findTreeEdge(Node root) {
+        Node n = root;
+        if (n == null || !n.treeEdgeBelow) return null;
+        while (!n.treeEdgeHere) {
+            n = n.left != null && n.left.treeEdgeBelow ? n.left : n.right;
+        }
+        return n;
+    }
+
+    /**
+     * 在以 root 为根的树中找一个在本层有非树边的顶点结点
+     */
+    private static Node findNonTree(Node root) {
+        Node n = root;
+        if (n == null || !n.nonTreeBelow) return null;
+        while (!n.nonTreeHere) {
+            n = n.left != null && n.left.nonTreeBelow ? n.left : n.right;
+        }
+        return n;
+    }
+
+    private static void setTreeEdgeHere(Node n, boolean value) {
+        n.treeEdgeHere = value;
+        for (; n != null; n = n.parent) update(n);
+    }
+
+    private static void setNonTreeHere(Node n, boolean value) {
+        n.nonTreeHere = value;
+        for (; n != null; n = n.parent) update(n);
+    }
+
+    // ===== 隐式 treap =====
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static void update(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        n.vertices = (n.vertex >= 0 ? 1 : 0)
+                + (n.left == null ? 0 : n.left.vertices) + (n.right == null ? 0 : n.right.vertices);
+        n.treeEdgeBelow = n.treeEdgeHere
+                || (n.left != null && n.left.treeEdgeBelow) || (n.right != null && n.right.treeEdgeBelow);
+        n.nonTreeBelow = n.nonTreeHere
+                || (n.left != null && n.left.nonTreeBelow) || (n.right != null && n.right.nonTreeBelow);
+    }
+
+    private static Node root(Node n) {
+        while (n.parent != null) n = n.parent;
+        return n;
+    }
+
+    /**
+     * 结点在序列中的下标
+     */
+    private static int index(Node n) {
+        int idx = size(n.left);
+        for (; n.parent != null; n = n.parent) {
+            if (n == n.parent.right) {
+                idx += size(n.parent.left) + 1;
+            }
+        }
+        return idx;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.right.parent = a;
+            update(a);
+            a.parent = null;
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.left.parent = b;
+        update(b);
+        b.parent = null;
+        return b;
+    }
+
+    /**
+     * 把序列分成前 k 个结点与其余结点，两部分的根的父指针均为null
+     */
+    private static Node[] split(Node t, int k) {
+        if (t == null) return new Node[]{null, null};
+        t.parent = null;
+        if (size(t.left) >= k) {
+            Node[] parts = split(t.left, k);
+            t.left = parts[1];
+            if (t.left != null) t.left.parent = t;
+            update(t);
+            return new Node[]{parts[0], t};
+        }
+        Node[] parts = split(t.right, k - size(t.left) - 1);
+        t.right = parts[0];
+        if (t.right != null) t.right.parent = t;
+        update(t);
+        return new Node[]{t, parts[1]};
+    }
+}
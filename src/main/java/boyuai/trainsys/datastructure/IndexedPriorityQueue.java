@@ -0,0 +1,169 @@
+package boyuai.trainsys.datastructure;
+
+/**
+ * 带下标的优先级队列（最小堆），支持降低优先级（decrease-key）
+ * 堆的存储方式与 PriorityQueue 相同（下标从1开始的数组），元素是 [0, n) 中的整数下标，
+ * 优先级为 long；另用 position 数组记录每个下标在堆中的位置（0表示不在堆中），
+ * 因此 Dijkstra 等算法可以原地降低某个顶点的距离，而不必重复入队
+ */
+public class IndexedPriorityQueue {
+    private int currentSize;    // 队列长度
+    private int[] heap;         // 堆中存放的下标
+    private long[] priority;    // 各下标的优先级
+    private int[] position;     // 各下标在堆中的位置，0表示不在堆中
+
+    /**
+     * 构造函数
+     * @param capacity 下标的取值范围 [0, capacity)
+     */
+    public IndexedPriorityQueue(int capacity) {
+        heap = new int[capacity + 1];
+        priority = new long[capacity];
+        position = new int[capacity];
+        currentSize = 0;
+    }
+
+    /**
+     * 判断队列是否为空
+     * @return true表示空，false为非空
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * 下标的取值范围
+     */
+    public int capacity() {
+        return position.length;
+    }
+
+    /**
+     * 扩大下标的取值范围，已有内容保持不变
+     * @param capacity 新的取值范围
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= position.length) {
+            return;
+        }
+        int[] newHeap = new int[capacity + 1];
+        System.arraycopy(heap, 0, newHeap, 0, currentSize + 1);
+        long[] newPriority = new long[capacity];
+        System.arraycopy(priority, 0, newPriority, 0, priority.length);
+        int[] newPosition = new int[capacity];
+        System.arraycopy(position, 0, newPosition, 0, position.length);
+        heap = newHeap;
+        priority = newPriority;
+        position = newPosition;
+    }
+
+    /**
+     * 下标是否在队列中
+     */
+    public boolean contains(int index) {
+        return position[index] != 0;
+    }
+
+    /**
+     * 下标的优先级，下标须在队列中
+     */
+    public long priorityOf(int index) {
+        return priority[index];
+    }
+
+    /**
+     * 加入下标；若已在队列中且新优先级更小，则降低其优先级
+     * @param index 下标
+     * @param p 优先级
+     * @return 是否加入或更新
+     */
+    public boolean offer(int index, long p) {
+        int hole = position[index];
+        if (hole == 0) {
+            hole = ++currentSize;
+        } else if (p >= priority[index]) {
+            return false;
+        }
+        priority[index] = p;
+        percolateUp(hole, index);
+        return true;
+    }
+
+    /**
+     * 队首下标
+     * @throws RuntimeException 队列为空时抛出
+     */
+    public int peek() {
+        if (currentSize == 0) {
+            throw new RuntimeException("队列为空");
+        }
+        return heap[1];
+    }
+
+    /**
+     * 取出优先级最小的下标，并删除
+     * @return 队首下标
+     * @throws RuntimeException 队列为空时抛出
+     */
+    public int deQueue() {
+        if (currentSize == 0) {
+            throw new RuntimeException("队列为空");
+        }
+        int minIndex = heap[1];
+        position[minIndex] = 0;
+        int last = heap[currentSize--];
+        if (currentSize > 0) {
+            percolateDown(1, last);
+        }
+        return minIndex;
+    }
+
+    /**
+     * 清空队列，只需把仍在堆中的下标的位置清零
+     */
+    public void clear() {
+        for (int i = 1; i <= currentSize; i++) {
+            position[heap[i]] = 0;
+        }
+        currentSize = 0;
+    }
+
+    /**
+     * 向上过滤：从空结点 hole 开始为 index 找到位置
+     */
+    private void percolateUp(int hole, int index) {
+        long p = priority[index];
+        for (; hole > 1 && p < priority[heap[hole / 2]]; hole /= 2) {
+            heap[hole] = heap[hole / 2];
+            position[heap[hole]] = hole;
+        }
+        heap[hole] = index;
+        position[index] = hole;
+    }
+
+    /**
+     * 向下过滤：从空结点 hole 开始为 index 找到位置
+     */
+    private void percolateDown(int hole, int index) {
+        long p = priority[index];
+        int child;
+        for (; hole * 2 <= currentSize; hole = child) {
+            child = hole * 2;  // 找到结点的左儿子
+            if (child != currentSize && priority[heap[child + 1]] < priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] < p) {
+                heap[hole] = heap[child];
+                position[heap[hole]] = hole;
+            } else {
+                break;
+            }
+        }
+        heap[hole] = index;
+        position[index] = hole;
+    }
+}
@@ -0,0 +1,119 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * 基于内存映射的页面文件
+ * 文件按定长分段映射，访问超出已映射范围时追加新的分段（文件随之增长）。
+ * 落在单个分段内的页面直接返回映射上的切片，解码即内存读取；
+ * 跨分段的页面拷贝到临时缓冲区中返回。
+ */
+public class MappedPageFile implements PageFile {
+
+    private static final int SEGMENT_SIZE = 1 << 20;  // 每个分段 1MB
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(0);  // 跨分段读取时使用
+
+    /**
+     * 构造函数
+     * @param fileName 文件名
+     */
+    public MappedPageFile(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "rw");
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * 获取第 index 个分段，必要时映射新的分段
+     */
+    private MappedByteBuffer segment(int index) throws IOException {
+        while (segments.size() <= index) {
+            long start = (long) segments.size() * SEGMENT_SIZE;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_SIZE));
+        }
+        return segments.get(index);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void truncate() throws IOException {
+        // 丢弃旧映射后不再访问它们，截断后访问会触发 SIGBUS
+        segments.clear();
+        channel.truncate(0);
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int size) throws IOException {
+        int index = (int) (offset / SEGMENT_SIZE);
+        int inner = (int) (offset % SEGMENT_SIZE);
+        if (inner + size <= SEGMENT_SIZE) {
+            return segment(index).slice(inner, size);
+        }
+        if (scratch.capacity() < size) {
+            scratch = ByteBuffer.allocate(size);
+        }
+        int copied = 0;
+        while (copied < size) {
+            int len = Math.min(size - copied, SEGMENT_SIZE - inner);
+            segment(index).get(inner, scratch.array(), copied, len);
+            copied += len;
+            index++;
+            inner = 0;
+        }
+        scratch.clear();
+        scratch.limit(size);
+        return scratch;
+    }
+
+    @Override
+    public void write(long offset, byte[] data, int size) throws IOException {
+        int index = (int) (offset / SEGMENT_SIZE);
+        int inner = (int) (offset % SEGMENT_SIZE);
+        int written = 0;
+        while (written < size) {
+            int len = Math.min(size - written, SEGMENT_SIZE - inner);
+            segment(index).put(inner, data, written, len);
+            written += len;
+            index++;
+            inner = 0;
+        }
+    }
+
+    @Override
+    public int readInt(long offset) throws IOException {
+        return read(offset, Integer.BYTES).getInt(0);
+    }
+
+    @Override
+    public void writeInt(long offset, int value) throws IOException {
+        byte[] bytes = ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        write(offset, bytes, Integer.BYTES);
+    }
+
+    @Override
+    public void force() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,107 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界环形缓冲区：多个生产者、单个消费者
+ * 每个槽位有一个序号：序号等于 t 时槽位空闲，可由领到第 t 号位置的生产者写入；
+ * 写入后序号置为 t + 1，消费者据此判断数据已就绪，取走后置为 t + capacity 留给下一圈。
+ * 生产者之间只在领取位置时对尾指针做一次 CAS，不加锁；缓冲区满时 offer 立即返回false。
+ * poll、drain、isEmpty 只能由同一个消费者线程调用。
+ * @param <E> 元素类型
+ */
+public class MpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();  // 下一个待领取的位置
+    private long head;                                 // 下一个待取出的位置，只由消费者读写
+
+    /**
+     * 构造函数
+     * @param capacity 容量，向上取整为2的幂（至少为2，否则"已写入"与"空闲"的序号无法区分）
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.buffer = new Object[size];
+        this.sequence = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    /**
+     * 放入元素（任意线程）
+     * @param e 元素，不能为null
+     * @return 是否放入成功，缓冲区满时返回false
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long t = tail.get();
+            int index = (int) t & mask;
+            long diff = sequence.get(index) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    buffer[index] = e;
+                    sequence.set(index, t + 1);  // 发布：消费者读到新序号后才读取元素
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;  // 该槽位上一圈的元素还未被取走，缓冲区已满
+            }
+            // diff > 0：其他生产者已领走该位置，重读尾指针
+        }
+    }
+
+    /**
+     * 取出队首元素（仅消费者线程）
+     * @return 元素，缓冲区为空时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        int index = (int) head & mask;
+        if (sequence.get(index) != head + 1) {
+            return null;
+        }
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        sequence.set(index, head + buffer.length);
+        head++;
+        return e;
+    }
+
+    /**
+     * 依次取出至多 limit 个元素交给 consumer（仅消费者线程）
+     * @return 取出的个数
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        E e;
+        while (count < limit && (e = poll()) != null) {
+            consumer.accept(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 是否没有已就绪的元素（仅消费者线程）
+     */
+    public boolean isEmpty() {
+        return sequence.get((int) head & mask) != head + 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,74 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 页面文件接口
+ * B+树通过它按偏移量读写定长页面与头部整数，底层可以是 RandomAccessFile 或内存映射
+ */
+public interface PageFile extends Closeable {
+
+    /**
+     * 页面文件的实现方式
+     */
+    enum Type {
+        RANDOM_ACCESS,  // RandomAccessFile，每次读写一次系统调用
+        MAPPED          // FileChannel 分段内存映射，读页面即内存访问
+    }
+
+    /**
+     * 打开页面文件
+     * @param fileName 文件名
+     * @param type 实现方式
+     * @return 页面文件
+     */
+    static PageFile open(String fileName, Type type) throws IOException {
+        return switch (type) {
+            case RANDOM_ACCESS -> new RandomAccessPageFile(fileName);
+            case MAPPED -> new MappedPageFile(fileName);
+        };
+    }
+
+    /**
+     * 文件长度（字节）
+     */
+    long length() throws IOException;
+
+    /**
+     * 将文件截断为空
+     */
+    void truncate() throws IOException;
+
+    /**
+     * 读取一个页面
+     * @param offset 页面起始偏移
+     * @param size 页面大小
+     * @return position 为0、limit 为 size 的缓冲区，仅在下一次调用本对象的方法前有效
+     */
+    ByteBuffer read(long offset, int size) throws IOException;
+
+    /**
+     * 写入一个页面
+     * @param offset 页面起始偏移
+     * @param data 页面数据
+     * @param size 写入的字节数
+     */
+    void write(long offset, byte[] data, int size) throws IOException;
+
+    /**
+     * 读取指定偏移处的整数
+     */
+    int readInt(long offset) throws IOException;
+
+    /**
+     * 在指定偏移处写入整数
+     */
+    void writeInt(long offset, int value) throws IOException;
+
+    /**
+     * 将已写入的数据刷到磁盘
+     */
+    void force() throws IOException;
+}
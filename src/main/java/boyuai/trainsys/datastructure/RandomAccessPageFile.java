@@ -0,0 +1,73 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 RandomAccessFile 的页面文件
+ * 每次读写页面都是一次 seek 加一次系统调用
+ */
+public class RandomAccessPageFile implements PageFile {
+
+    private final RandomAccessFile file;
+    private ByteBuffer scratch = ByteBuffer.allocate(0);  // 复用的读缓冲区
+
+    /**
+     * 构造函数
+     * @param fileName 文件名
+     */
+    public RandomAccessPageFile(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "rw");
+    }
+
+    @Override
+    public long length() throws IOException {
+        return file.length();
+    }
+
+    @Override
+    public void truncate() throws IOException {
+        file.setLength(0);
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int size) throws IOException {
+        if (scratch.capacity() < size) {
+            scratch = ByteBuffer.allocate(size);
+        }
+        file.seek(offset);
+        file.readFully(scratch.array(), 0, size);
+        scratch.clear();
+        scratch.limit(size);
+        return scratch;
+    }
+
+    @Override
+    public void write(long offset, byte[] data, int size) throws IOException {
+        file.seek(offset);
+        file.write(data, 0, size);
+    }
+
+    @Override
+    public int readInt(long offset) throws IOException {
+        file.seek(offset);
+        return file.readInt();
+    }
+
+    @Override
+    public void writeInt(long offset, int value) throws IOException {
+        file.seek(offset);
+        file.writeInt(value);
+    }
+
+    @Override
+    public void force() throws IOException {
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
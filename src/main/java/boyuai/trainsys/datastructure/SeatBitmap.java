@@ -0,0 +1,150 @@
+package boyuai.trainsys.datastructure;
+
+/**
+ * 按座位分配的位图
+ * 每个区间段一行，每行是一个覆盖全部座位的位集（1表示该座位在该区间段已售出），
+ * 所有行连续存放在一个 long 数组中。查找一段区间上都空闲的座位时，
+ * 逐个64位字把途经各行按位或起来，再用 numberOfTrailingZeros 取出第一个0位，
+ * 1000 个座位、29 个区间段只占约 3.7KB。
+ */
+public class SeatBitmap {
+
+    private final int seats;
+    private final int segments;
+    private final int wordsPerSegment;
+    private final long[] words;
+
+    /**
+     * 构造函数，初始时全部座位空闲
+     * @param seats 座位数
+     * @param segments 区间段数
+     */
+    public SeatBitmap(int seats, int segments) {
+        if (seats < 1 || segments < 1) {
+            throw new IllegalArgumentException("seats and segments must be positive");
+        }
+        this.seats = seats;
+        this.segments = segments;
+        this.wordsPerSegment = (seats + 63) >>> 6;
+        this.words = new long[segments * wordsPerSegment];
+    }
+
+    /**
+     * 第 w 个字中有效座位的掩码（最后一个字可能不满64位）
+     */
+    private long validMask(int w) {
+        int rest = seats - (w << 6);
+        return rest >= 64 ? -1L : (1L << rest) - 1;
+    }
+
+    /**
+     * 第 w 个字中在区间段 [from, to] 上都空闲的座位
+     */
+    private long freeWord(int w, int from, int to) {
+        long used = 0;
+        for (int segment = from; segment <= to; segment++) {
+            used |= words[segment * wordsPerSegment + w];
+        }
+        return ~used & validMask(w);
+    }
+
+    /**
+     * 统计在区间段 [from, to] 上都空闲的座位数
+     * @param from 起始区间段（包含）
+     * @param to 终止区间段（包含）
+     */
+    public int countFree(int from, int to) {
+        checkRange(from, to);
+        int count = 0;
+        for (int w = 0; w < wordsPerSegment; w++) {
+            count += Long.bitCount(freeWord(w, from, to));
+        }
+        return count;
+    }
+
+    /**
+     * 找到编号最小的、在区间段 [from, to] 上都空闲的座位并占用
+     * @param from 起始区间段（包含）
+     * @param to 终止区间段（包含）
+     * @return 座位编号，没有空闲座位时返回-1
+     */
+    public int allocate(int from, int to) {
+        checkRange(from, to);
+        for (int w = 0; w < wordsPerSegment; w++) {
+            long free = freeWord(w, from, to);
+            if (free != 0) {
+                int seat = (w << 6) + Long.numberOfTrailingZeros(free);
+                occupy(seat, from, to);
+                return seat;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 座位是否在区间段 [from, to] 上都空闲
+     */
+    public boolean isFree(int seat, int from, int to) {
+        checkSeat(seat);
+        checkRange(from, to);
+        long bit = 1L << seat;
+        int w = seat >>> 6;
+        for (int segment = from; segment <= to; segment++) {
+            if ((words[segment * wordsPerSegment + w] & bit) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 在区间段 [from, to] 上占用座位
+     */
+    public void occupy(int seat, int from, int to) {
+        checkSeat(seat);
+        checkRange(from, to);
+        long bit = 1L << seat;
+        int w = seat >>> 6;
+        for (int segment = from; segment <= to; segment++) {
+            words[segment * wordsPerSegment + w] |= bit;
+        }
+    }
+
+    /**
+     * 在区间段 [from, to] 上释放座位
+     */
+    public void release(int seat, int from, int to) {
+        checkSeat(seat);
+        checkRange(from, to);
+        long bit = ~(1L << seat);
+        int w = seat >>> 6;
+        for (int segment = from; segment <= to; segment++) {
+            words[segment * wordsPerSegment + w] &= bit;
+        }
+    }
+
+    public int getSeats() {
+        return seats;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * 位图占用的字节数
+     */
+    public int sizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    private void checkSeat(int seat) {
+        if (seat < 0 || seat >= seats) {
+            throw new IndexOutOfBoundsException("Seat " + seat + " out of [0, " + seats + ")");
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to >= segments || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "] out of [0, " + segments + ")");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 无锁的区间段余票计数
+ * 每个区间段的余票是 AtomicIntegerArray 中的一个元素，多个线程可以同时购退票而不加锁：
+ * 跨多个区间段的预订依次对每一段做 CAS 扣减，某一段余票不足时把已扣减的各段加回并返回失败。
+ * 任何一段都不会被扣成负数，因此不会超售；代价是并发时另一个线程可能看到尚未回滚的扣减而失败，
+ * 即余票足够时也可能偶尔失败，调用方重试即可。
+ * 与 SegmentTree 相比区间操作是线性的，但一列车的区间段只有几十个，差别不大。
+ * 停售时调用 close：此后的扣减与退还都失败；与 close 并发、在 close 之后才完成 CAS 的操作会回滚并失败，
+ * 因此成功返回的操作都发生在 close 之前。
+ */
+public class SeatCounters {
+
+    private final AtomicIntegerArray remaining;
+    private volatile boolean closed;
+
+    /**
+     * 构造函数
+     * @param values 各区间段的初始余票
+     */
+    public SeatCounters(int[] values) {
+        if (values.length < 1) {
+            throw new IllegalArgumentException("SeatCounters size must be positive");
+        }
+        this.remaining = new AtomicIntegerArray(values);
+    }
+
+    /**
+     * 查询区间最小值；并发修改时各段分别读取，不保证是同一时刻的快照
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @return [from, to] 上的最小值
+     */
+    public int queryMin(int from, int to) {
+        checkRange(from, to);
+        int result = Integer.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            result = Math.min(result, remaining.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 区间加（退票），每一段原子地加上增量
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @param delta 增量
+     * @return 是否成功，已停售时返回false且不做修改
+     */
+    public boolean add(int from, int to, int delta) {
+        checkRange(from, to);
+        if (closed) {
+            return false;
+        }
+        addRange(from, to, delta);
+        if (closed) {
+            addRange(from, to, -delta);  // 与 close 并发，撤销
+            return false;
+        }
+        return true;
+    }
+
+    private void addRange(int from, int to, int delta) {
+        for (int i = from; i <= to; i++) {
+            remaining.getAndAdd(i, delta);
+        }
+    }
+
+    /**
+     * 若区间上每一段都不少于 count，则整体减去 count；否则不做任何修改
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @param count 扣减量
+     * @return 是否扣减成功，已停售时返回false
+     */
+    public boolean tryReserve(int from, int to, int count) {
+        checkRange(from, to);
+        if (closed) {
+            return false;
+        }
+        for (int i = from; i <= to; i++) {
+            int current;
+            do {
+                current = remaining.get(i);
+                if (current < count) {
+                    // 回滚已扣减的各段
+                    if (i > from) {
+                        addRange(from, i - 1, count);
+                    }
+                    return false;
+                }
+            } while (!remaining.weakCompareAndSetVolatile(i, current, current - count));
+        }
+        if (closed) {
+            addRange(from, to, count);  // 与 close 并发，撤销
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 停售：此后的 tryReserve 与 add 都返回false
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 单点查询
+     * @param i 下标
+     * @return 第 i 段的余票
+     */
+    public int get(int i) {
+        return remaining.get(i);
+    }
+
+    /**
+     * 区间段个数
+     */
+    public int size() {
+        return remaining.length();
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to >= remaining.length() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "] out of [0, " + remaining.length() + ")");
+        }
+    }
+}
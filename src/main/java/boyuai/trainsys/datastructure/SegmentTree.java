@@ -0,0 +1,132 @@
+package boyuai.trainsys.datastructure;
+
+/**
+ * 线段树（区间加、区间最小值，带懒标记）
+ * 用于按区间段维护余票：从第 i 站到第 j 站的余票是区间段 [i, j-1] 上的最小值，
+ * 购票、退票即对这一段区间整体加减。
+ * 区间操作是 O(log n) 的，但不是线程安全的；TicketManager 的内存余票需要多个线程同时无锁扣减，
+ * 改用 SeatCounters，本类适合单线程、区间段很多的情形
+ */
+public class SegmentTree {
+
+    private final int size;
+    private final int[] min;    // 节点对应区间的最小值（已包含本节点的懒标记）
+    private final int[] lazy;   // 尚未下传给子节点的增量
+
+    /**
+     * 构造函数
+     * @param values 初始值
+     * @param size 元素个数，取 values 的前 size 个
+     */
+    public SegmentTree(int[] values, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("SegmentTree size must be positive");
+        }
+        this.size = size;
+        this.min = new int[4 * size];
+        this.lazy = new int[4 * size];
+        build(1, 0, size - 1, values);
+    }
+
+    private void build(int node, int left, int right, int[] values) {
+        if (left == right) {
+            min[node] = values[left];
+            return;
+        }
+        int mid = (left + right) >>> 1;
+        build(2 * node, left, mid, values);
+        build(2 * node + 1, mid + 1, right, values);
+        min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+    }
+
+    /**
+     * 查询区间最小值
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @return [from, to] 上的最小值
+     */
+    public int queryMin(int from, int to) {
+        checkRange(from, to);
+        return queryMin(1, 0, size - 1, from, to);
+    }
+
+    private int queryMin(int node, int left, int right, int from, int to) {
+        if (from <= left && right <= to) {
+            return min[node];
+        }
+        int mid = (left + right) >>> 1;
+        int result = Integer.MAX_VALUE;
+        if (from <= mid) {
+            result = queryMin(2 * node, left, mid, from, to);
+        }
+        if (to > mid) {
+            result = Math.min(result, queryMin(2 * node + 1, mid + 1, right, from, to));
+        }
+        // 本节点的懒标记尚未下传，子节点的结果要补上
+        return result + lazy[node];
+    }
+
+    /**
+     * 区间加
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @param delta 增量
+     */
+    public void add(int from, int to, int delta) {
+        checkRange(from, to);
+        add(1, 0, size - 1, from, to, delta);
+    }
+
+    private void add(int node, int left, int right, int from, int to, int delta) {
+        if (from <= left && right <= to) {
+            min[node] += delta;
+            lazy[node] += delta;
+            return;
+        }
+        int mid = (left + right) >>> 1;
+        if (from <= mid) {
+            add(2 * node, left, mid, from, to, delta);
+        }
+        if (to > mid) {
+            add(2 * node + 1, mid + 1, right, from, to, delta);
+        }
+        min[node] = Math.min(min[2 * node], min[2 * node + 1]) + lazy[node];
+    }
+
+    /**
+     * 若区间最小值不小于 count，则整体减去 count，检查与扣减一次完成
+     * @param from 起点（包含）
+     * @param to 终点（包含）
+     * @param count 扣减量
+     * @return 是否扣减成功
+     */
+    public boolean tryReserve(int from, int to, int count) {
+        if (queryMin(from, to) < count) {
+            return false;
+        }
+        add(from, to, -count);
+        return true;
+    }
+
+    /**
+     * 单点查询
+     * @param i 下标
+     * @return 第 i 个元素的值
+     */
+    public int get(int i) {
+        return queryMin(i, i);
+    }
+
+    /**
+     * 元素个数
+     */
+    public int size() {
+        return size;
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to >= size || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "] out of [0, " + size + ")");
+        }
+    }
+}
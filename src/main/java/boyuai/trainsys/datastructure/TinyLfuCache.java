@@ -0,0 +1,266 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 定容结果缓存，采用 W-TinyLFU 准入与淘汰策略
+ * 缓存分为三段：窗口段（约 1% 容量，LRU）、主区的试用段与保护段（分段 LRU，保护段约占主区 80%）。
+ * 新条目先进入窗口段；被挤出窗口的条目要进入主区时，与试用段最久未访问的条目比较访问频率，
+ * 频率更高者留下。访问频率由 Count-Min Sketch 近似统计（每个计数器上限 15），
+ * 记录次数达到容量的 10 倍时所有计数减半，使频率随时间衰减。
+ * 这样偶发的一次性查询不会把热门条目挤出缓存，而突发的新热点仍能先在窗口段中命中。
+ * 所有方法都是同步的，可以被多个线程同时使用。
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    /**
+     * 链表结点，所在段由 segment 标明
+     */
+    private static class Node<K, V> {
+        K key;
+        V value;
+        int segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Count-Min Sketch：4 行计数器，取各行中最小者作为频率估计
+     */
+    private static class FrequencySketch {
+        private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x9e3779b9};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] counters;
+        private final int shift;
+        private final int sampleLimit;
+        private int samples;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+            this.counters = new byte[SEEDS.length][width];
+            this.shift = 32 - Integer.numberOfTrailingZeros(width);
+            this.sampleLimit = 10 * Math.max(capacity, 8);
+        }
+
+        private int index(int hash, int row) {
+            return (hash * SEEDS[row]) >>> shift;
+        }
+
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < counters.length; row++) {
+                min = Math.min(min, counters[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < counters.length; row++) {
+                int i = index(hash, row);
+                if (counters[row][i] < MAX_COUNT) {
+                    counters[row][i]++;
+                    added = true;
+                }
+            }
+            if (added && ++samples >= sampleLimit) {
+                // 衰减：所有计数减半
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                samples /= 2;
+            }
+        }
+    }
+
+    private final Map<K, Node<K, V>> data;
+    private final FrequencySketch sketch;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Node<K, V>[] heads = new Node[3];  // 各段的哨兵结点，head.next 为最久未访问者
+    private final int[] sizes = new int[3];
+    private final int capacity;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 构造函数
+     * @param capacity 容量（条目数）
+     */
+    public TinyLfuCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.maxWindow = Math.max(1, capacity / 100);
+        this.maxProtected = (capacity - maxWindow) * 4 / 5;
+        this.data = new HashMap<>(capacity * 2);
+        this.sketch = new FrequencySketch(capacity);
+        for (int s = 0; s < 3; s++) {
+            Node<K, V> head = new Node<>(null, null);
+            head.prev = head;
+            head.next = head;
+            heads[s] = head;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 查找并记录一次访问
+     * @param key 键
+     * @return 值，未命中时返回null
+     */
+    public synchronized V get(K key) {
+        sketch.increment(hash(key));
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * 放入条目，可能因此淘汰其他条目（或新条目本身未被准入）
+     * @param key 键
+     * @param value 值
+     */
+    public synchronized void put(K key, V value) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            node.value = value;
+            onAccess(node);
+            return;
+        }
+        node = new Node<>(key, value);
+        data.put(key, node);
+        append(WINDOW, node);
+        if (sizes[WINDOW] > maxWindow) {
+            admit(heads[WINDOW].next);
+        }
+    }
+
+    /**
+     * 删除条目
+     * @param key 键
+     */
+    public synchronized void remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * 清空全部条目，访问频率的统计保留
+     */
+    public synchronized void clear() {
+        data.clear();
+        for (int s = 0; s < 3; s++) {
+            heads[s].prev = heads[s];
+            heads[s].next = heads[s];
+            sizes[s] = 0;
+        }
+    }
+
+    /**
+     * 被挤出窗口段的候选条目尝试进入主区
+     */
+    private void admit(Node<K, V> candidate) {
+        unlink(candidate);
+        if (sizes[PROBATION] + sizes[PROTECTED] < capacity - maxWindow) {
+            append(PROBATION, candidate);
+            return;
+        }
+        Node<K, V> victim = sizes[PROBATION] > 0 ? heads[PROBATION].next : heads[PROTECTED].next;
+        if (victim == heads[PROTECTED] || sketch.frequency(hash(candidate.key)) <= sketch.frequency(hash(victim.key))) {
+            // 主区为空（容量只够窗口段）或候选不比牺牲者更常用：淘汰候选
+            data.remove(candidate.key);
+        } else {
+            unlink(victim);
+            data.remove(victim.key);
+            append(PROBATION, candidate);
+        }
+        evictions++;
+    }
+
+    /**
+     * 命中后的调整：窗口段与保护段移到队尾，试用段的条目升入保护段
+     */
+    private void onAccess(Node<K, V> node) {
+        int segment = node.segment;
+        unlink(node);
+        if (segment == PROBATION) {
+            append(PROTECTED, node);
+            if (sizes[PROTECTED] > maxProtected) {
+                Node<K, V> demoted = heads[PROTECTED].next;
+                unlink(demoted);
+                append(PROBATION, demoted);
+            }
+        } else {
+            append(segment, node);
+        }
+    }
+
+    private void append(int segment, Node<K, V> node) {
+        Node<K, V> head = heads[segment];
+        node.segment = segment;
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        sizes[segment]++;
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        sizes[node.segment]--;
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
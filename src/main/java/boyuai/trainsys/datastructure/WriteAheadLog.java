@@ -0,0 +1,177 @@
+package boyuai.trainsys.datastructure;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写的重做日志（redo WAL）
+ * 记录格式：LSN(8) + 类型(1) + 负载长度(4) + 负载 + CRC32(4)
+ * 记录先缓存在内存中，攒满一组（或显式 commit）后一次写入并 fsync，即组提交。
+ * 回放时遇到不完整或校验失败的记录即停止（视为崩溃时未写完的尾部）。
+ */
+public class WriteAheadLog {
+
+    /**
+     * 日志记录
+     * @param lsn 日志序列号
+     * @param type 记录类型，由使用者定义
+     * @param payload 负载
+     */
+    public record Record(long lsn, byte type, ByteBuffer payload) {}
+
+    /**
+     * 回放回调
+     */
+    public interface Replayer {
+        void apply(Record record) throws IOException;
+    }
+
+    private static final int RECORD_OVERHEAD = Long.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int groupCommitSize;  // 每组最多缓存的记录数
+    private ByteBuffer pending;         // 尚未落盘的记录
+    private int pendingRecords;
+    private long nextLsn;
+    private final CRC32 crc = new CRC32();
+
+    private long commits;  // fsync 次数
+
+    /**
+     * 构造函数
+     * @param fileName 日志文件名
+     * @param groupCommitSize 组提交的记录数
+     */
+    public WriteAheadLog(String fileName, int groupCommitSize) throws IOException {
+        this.file = new RandomAccessFile(fileName, "rw");
+        this.channel = file.getChannel();
+        this.groupCommitSize = groupCommitSize;
+        this.pending = ByteBuffer.allocate(4096);
+        this.nextLsn = 1;
+    }
+
+    /**
+     * 回放日志中 LSN 大于 afterLsn 的全部完整记录，并丢弃损坏的尾部
+     * @param afterLsn 检查点对应的 LSN，此前的记录已包含在数据文件中
+     * @param replayer 回放回调
+     * @return 回放的记录数
+     */
+    public int replay(long afterLsn, Replayer replayer) throws IOException {
+        nextLsn = Math.max(nextLsn, afterLsn + 1);
+        long size = channel.size();
+        ByteBuffer log = ByteBuffer.allocate((int) size);
+        channel.read(log, 0);
+        log.flip();
+
+        int applied = 0;
+        int validEnd = 0;
+        while (log.remaining() >= RECORD_OVERHEAD) {
+            int start = log.position();
+            long lsn = log.getLong();
+            byte type = log.get();
+            int length = log.getInt();
+            if (length < 0 || log.remaining() < length + Integer.BYTES) {
+                break;
+            }
+            crc.reset();
+            crc.update(log.array(), start, Long.BYTES + 1 + Integer.BYTES + length);
+            ByteBuffer payload = log.slice(log.position(), length);
+            log.position(log.position() + length);
+            if (log.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            validEnd = log.position();
+            if (lsn > afterLsn) {
+                replayer.apply(new Record(lsn, type, payload));
+                applied++;
+            }
+            nextLsn = Math.max(nextLsn, lsn + 1);
+        }
+        // 截掉损坏的尾部，后续记录从有效位置继续追加
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        return applied;
+    }
+
+    /**
+     * 追加一条记录（先进入组提交缓冲区）
+     * @param type 记录类型
+     * @param payload 负载，写入 [0, length) 字节
+     * @param length 负载长度
+     * @return 该记录的 LSN
+     */
+    public long append(byte type, byte[] payload, int length) throws IOException {
+        int need = RECORD_OVERHEAD + length;
+        if (pending.remaining() < need) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + need));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        long lsn = nextLsn++;
+        int start = pending.position();
+        pending.putLong(lsn);
+        pending.put(type);
+        pending.putInt(length);
+        pending.put(payload, 0, length);
+        crc.reset();
+        crc.update(pending.array(), start, pending.position() - start);
+        pending.putInt((int) crc.getValue());
+        if (++pendingRecords >= groupCommitSize) {
+            commit();
+        }
+        return lsn;
+    }
+
+    /**
+     * 组提交：将缓存的记录一次写入并 fsync
+     */
+    public void commit() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        channel.force(false);
+        pending.clear();
+        pendingRecords = 0;
+        commits++;
+    }
+
+    /**
+     * 检查点完成后清空日志（尚未提交的记录一并丢弃，检查点调用前须先 commit）
+     */
+    public void reset() throws IOException {
+        pending.clear();
+        pendingRecords = 0;
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    /**
+     * 最近分配的 LSN
+     */
+    public long lastLsn() {
+        return nextLsn - 1;
+    }
+
+    /**
+     * 已执行的组提交（fsync）次数
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    public void close() throws IOException {
+        commit();
+        channel.close();
+        file.close();
+    }
+}
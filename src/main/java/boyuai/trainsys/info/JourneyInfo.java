@@ -0,0 +1,110 @@
+package boyuai.trainsys.info;
+
+import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.util.Time;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+import lombok.Getter;
+
+/**
+ * 按时刻表查询的行程方案类，由若干乘车段组成
+ */
+@Getter
+public class JourneyInfo {
+
+    /**
+     * 乘车段：在同一车次上从上车站坐到下车站
+     */
+    @Getter
+    public static class Leg {
+        private final TrainID trainID;
+        private final StationID departureStation;
+        private final StationID arrivalStation;
+        private final Time departureTime;
+        private final Time arrivalTime;
+        private final int price;    // 本段票价，-1表示未计算
+
+        public Leg(TrainID trainID, StationID departureStation, StationID arrivalStation,
+                   Time departureTime, Time arrivalTime) {
+            this(trainID, departureStation, arrivalStation, departureTime, arrivalTime, -1);
+        }
+
+        public Leg(TrainID trainID, StationID departureStation, StationID arrivalStation,
+                   Time departureTime, Time arrivalTime, int price) {
+            this.trainID = trainID;
+            this.departureStation = departureStation;
+            this.arrivalStation = arrivalStation;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.price = price;
+        }
+
+        @Override
+        public String toString() {
+            return trainID + ": " + departureStation.value() + " " + departureTime
+                    + " -> " + arrivalStation.value() + " " + arrivalTime;
+        }
+    }
+
+    private final SeqList<Leg> legs;  // 依次乘坐的各段，找不到方案时为空
+
+    public JourneyInfo(SeqList<Leg> legs) {
+        this.legs = legs;
+    }
+
+    /**
+     * 是否找到方案
+     */
+    public boolean isFound() {
+        return legs.length() > 0;
+    }
+
+    /**
+     * 到达时刻，找不到方案时返回null
+     */
+    public Time getArrivalTime() {
+        return isFound() ? legs.visit(legs.length() - 1).getArrivalTime() : null;
+    }
+
+    /**
+     * 总票价，找不到方案或有乘车段未计算票价时返回-1
+     */
+    public int getPrice() {
+        if (!isFound()) {
+            return -1;
+        }
+        int total = 0;
+        for (int i = 0; i < legs.length(); i++) {
+            if (legs.visit(i).getPrice() < 0) {
+                return -1;
+            }
+            total += legs.visit(i).getPrice();
+        }
+        return total;
+    }
+
+    /**
+     * 换乘次数，找不到方案时返回-1
+     */
+    public int getTransfers() {
+        return legs.length() - 1;
+    }
+
+    @Override
+    public String toString() {
+        if (!isFound()) {
+            return "No journey found.";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < legs.length(); i++) {
+            sb.append(legs.visit(i)).append('\n');
+        }
+        if (getPrice() < 0) {
+            sb.append("Earliest arrival: ").append(getArrivalTime());
+        } else {
+            sb.append("Arrival: ").append(getArrivalTime()).append(", price: ").append(getPrice())
+                    .append(", transfers: ").append(getTransfers());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package boyuai.trainsys.info;
+
+import boyuai.trainsys.datastructure.SeqList;
+import lombok.Getter;
+
+/**
+ * 最短路查询结果类
+ */
+@Getter
+public class PathInfo {
+    private final SeqList<Integer> stations;  // 途经站点ID，依次从出发站到到达站；不可达时为空
+    private final long totalCost;             // 总代价（价格或时间），不可达时为-1
+    private final int type;                   // 0-按价格最优，1-按时间最优
+    private int settled;                      // 搜索过程中确定的顶点数，用于比较各搜索方式
+
+    /**
+     * 构造函数
+     * @param stations 途经站点ID
+     * @param totalCost 总代价
+     * @param type 0-按价格最优，1-按时间最优
+     */
+    public PathInfo(SeqList<Integer> stations, long totalCost, int type) {
+        this.stations = stations;
+        this.totalCost = totalCost;
+        this.type = type;
+    }
+
+    /**
+     * 记录搜索过程中确定的顶点数
+     * @return 当前对象
+     */
+    public PathInfo withSettled(int settled) {
+        this.settled = settled;
+        return this;
+    }
+
+    /**
+     * 不可达时的结果
+     * @param type 0-按价格最优，1-按时间最优
+     */
+    public static PathInfo notFound(int type) {
+        return new PathInfo(new SeqList<>(), -1, type);
+    }
+
+    /**
+     * 是否找到路径
+     */
+    public boolean isFound() {
+        return totalCost >= 0;
+    }
+
+    @Override
+    public String toString() {
+        if (!isFound()) {
+            return "No path found.";
+        }
+        StringBuilder sb = new StringBuilder("shortest path: ");
+        for (int i = 0; i < stations.length(); i++) {
+            sb.append(stations.visit(i)).append(' ');
+        }
+        sb.append('\n').append(type == 1 ? "Total time: " : "Total price: ").append(totalCost);
+        return sb.toString();
+    }
+}
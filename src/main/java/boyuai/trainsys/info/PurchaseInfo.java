@@ -17,6 +17,7 @@ public class PurchaseInfo implements Comparable<PurchaseInfo> {
     private TrainID trainID;
     private Date date;
     private StationID departureStation;
+    private StationID arrivalStation;  // 到达站，为null表示出发站的下一站
     private int type;  // 1表示购票，-1表示退票
 
     /**
@@ -41,6 +42,21 @@ public class PurchaseInfo implements Comparable<PurchaseInfo> {
         this.type = type;
     }
 
+    /**
+     * 构造函数
+     * @param userID 用户ID
+     * @param trainID 火车ID
+     * @param date 日期
+     * @param departureStation 出发站
+     * @param arrivalStation 到达站，为null表示出发站的下一站
+     * @param type 类型（1表示购票，-1表示退票）
+     */
+    public PurchaseInfo(UserID userID, TrainID trainID, Date date, StationID departureStation,
+                        StationID arrivalStation, int type) {
+        this(userID, trainID, date, departureStation, type);
+        this.arrivalStation = arrivalStation;
+    }
+
     /**
      * 是否为购票
      * @return 如果是购票返回true
@@ -75,6 +91,11 @@ public class PurchaseInfo implements Comparable<PurchaseInfo> {
         cmp = Integer.compare(this.departureStation.value(), other.departureStation.value());
         if (cmp != 0) return cmp;
 
+        // 按到达站比较
+        cmp = Integer.compare(this.arrivalStation == null ? -1 : this.arrivalStation.value(),
+                other.arrivalStation == null ? -1 : other.arrivalStation.value());
+        if (cmp != 0) return cmp;
+
         // 按类型比较
         return Integer.compare(this.type, other.type);
     }
@@ -21,6 +21,7 @@ public class TripInfo implements Comparable<TripInfo> {
     private int duration;
     private int price;
     private Date date;
+    private int seat = -1;  // 座位号，-1表示未分配座位
 
     /**
      * 默认构造函数
@@ -42,6 +43,15 @@ public class TripInfo implements Comparable<TripInfo> {
         this.date = date;
     }
 
+    /**
+     * 构造函数（按座位分配时使用）
+     */
+    public TripInfo(TrainID trainID, StationID departureStation, StationID arrivalStation,
+                    int ticketNumber, int duration, int price, Date date, int seat) {
+        this(trainID, departureStation, arrivalStation, ticketNumber, duration, price, date);
+        this.seat = seat;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -50,6 +60,7 @@ public class TripInfo implements Comparable<TripInfo> {
         return ticketNumber == tripInfo.ticketNumber &&
                 duration == tripInfo.duration &&
                 price == tripInfo.price &&
+                seat == tripInfo.seat &&
                 Objects.equals(trainID, tripInfo.trainID) &&
                 Objects.equals(departureStation, tripInfo.departureStation) &&
                 Objects.equals(arrivalStation, tripInfo.arrivalStation) &&
@@ -58,7 +69,7 @@ public class TripInfo implements Comparable<TripInfo> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(trainID, departureStation, arrivalStation, ticketNumber, duration, price, date);
+        return Objects.hash(trainID, departureStation, arrivalStation, ticketNumber, duration, price, date, seat);
     }
 
     @Override
@@ -81,7 +92,10 @@ public class TripInfo implements Comparable<TripInfo> {
         cmp = Integer.compare(this.price, other.price);
         if (cmp != 0) return cmp;
 
-        return Integer.compare(this.duration, other.duration);
+        cmp = Integer.compare(this.duration, other.duration);
+        if (cmp != 0) return cmp;
+
+        return Integer.compare(this.seat, other.seat);
     }
 
     @Override
@@ -92,6 +106,7 @@ public class TripInfo implements Comparable<TripInfo> {
                 "arrivalStation: " + arrivalStation + "\n" +
                 "duration: " + duration + "\n" +
                 "price: " + price + "\n" +
-                "date: " + date;
+                "date: " + date +
+                (seat >= 0 ? "\nseat: " + seat : "");
     }
 }
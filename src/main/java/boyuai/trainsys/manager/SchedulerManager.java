@@ -1,14 +1,20 @@
 package boyuai.trainsys.manager;
 
+import boyuai.trainsys.config.Config;
 import boyuai.trainsys.core.TrainScheduler;
 import boyuai.trainsys.datastructure.BPlusTree;
+import boyuai.trainsys.datastructure.Pair;
 import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.util.Codecs;
 import boyuai.trainsys.util.FixedString;
 import boyuai.trainsys.util.Types.*;
 
+import java.util.function.Consumer;
+
 /**
  * 列车调度管理器
  * 负责管理所有列车的运行计划
+ * 公开方法都是同步的，可以被多个线程同时使用
  */
 public class SchedulerManager {
 
@@ -20,7 +26,7 @@ public class SchedulerManager {
      * @param filename 数据文件名
      */
     public SchedulerManager(String filename) {
-        this.schedulerInfo = new BPlusTree<>(filename);
+        this.schedulerInfo = new BPlusTree<>(filename, Codecs.FIXED_STRING, Codecs.TRAIN_SCHEDULER, Config.PAGE_FILE_TYPE);
     }
 
     /**
@@ -32,9 +38,25 @@ public class SchedulerManager {
      * @param duration 各段运行时间数组
      * @param price 各段票价数组
      */
-    public void addScheduler(FixedString trainID, int seatNum,
+    public synchronized void addScheduler(FixedString trainID, int seatNum,
                              int passingStationNumber, int[] stations,
                              int[] duration, int[] price) {
+        addScheduler(trainID, seatNum, passingStationNumber, stations, duration, price, 0);
+    }
+
+    /**
+     * 添加一个运行计划
+     * @param trainID 列车ID
+     * @param seatNum 座位数量
+     * @param passingStationNumber 途径站点数
+     * @param stations 站点数组
+     * @param duration 各段运行时间数组
+     * @param price 各段票价数组
+     * @param startTime 始发时刻（当天零点起的分钟数）
+     */
+    public synchronized void addScheduler(FixedString trainID, int seatNum,
+                             int passingStationNumber, int[] stations,
+                             int[] duration, int[] price, int startTime) {
         TrainScheduler scheduler = new TrainScheduler();
         scheduler.setTrainID(new TrainID(trainID.toString()));
 
@@ -47,17 +69,31 @@ public class SchedulerManager {
         scheduler.setDuration(duration);
         scheduler.setPrice(price);
         scheduler.setSeatNum(seatNum);
+        scheduler.setStartTime(startTime);
 
         // 插入到B+树中
         schedulerInfo.insert(trainID, scheduler);
     }
 
+    /**
+     * 批量导入运行计划（例如导入整张时刻表），整批排序后写入B+树
+     * @param schedulers 运行计划
+     */
+    public synchronized void importSchedulers(SeqList<TrainScheduler> schedulers) {
+        SeqList<Pair<FixedString, TrainScheduler>> pairs = new SeqList<>();
+        for (int i = 0; i < schedulers.length(); i++) {
+            TrainScheduler scheduler = schedulers.visit(i);
+            pairs.pushBack(new Pair<>(scheduler.getTrainID(), scheduler));
+        }
+        schedulerInfo.insertAll(pairs);
+    }
+
     /**
      * 查询某个ID的运行计划是否存在
      * @param trainID 列车ID
      * @return 是否存在
      */
-    public boolean existScheduler(FixedString trainID) {
+    public synchronized boolean existScheduler(FixedString trainID) {
         SeqList<TrainScheduler> list = schedulerInfo.find(trainID);
         return list != null && list.length() > 0;
     }
@@ -67,7 +103,7 @@ public class SchedulerManager {
      * @param trainID 列车ID
      * @return 运行计划对象，如果不存在返回null
      */
-    public TrainScheduler getScheduler(FixedString trainID) {
+    public synchronized TrainScheduler getScheduler(FixedString trainID) {
         SeqList<TrainScheduler> relatedInfo = schedulerInfo.find(trainID);
         // 一个trainID理应只对应一个运行计划，但由于这里的B+树是一对多的B+树，所以需要使用seqList
         if (relatedInfo != null && relatedInfo.length() > 0) {
@@ -76,11 +112,29 @@ public class SchedulerManager {
         return null;
     }
 
+    /**
+     * 按车次号顺序遍历车次号以 prefix 开头的全部运行计划（例如所有 G 字头列车）
+     * 以 prefix 开头的键在B+树中是连续的，从 prefix 处定位后顺序读到第一个不匹配的键即可
+     * @param prefix 车次号前缀
+     * @param visitor 接收运行计划
+     */
+    public synchronized void forEachScheduler(String prefix, Consumer<TrainScheduler> visitor) {
+        try (BPlusTree<FixedString, TrainScheduler>.Cursor cursor = schedulerInfo.seek(new FixedString(prefix))) {
+            while (cursor.hasNext()) {
+                Pair<FixedString, TrainScheduler> pair = cursor.next();
+                if (!pair.getKey().getValue().startsWith(prefix)) {
+                    break;
+                }
+                visitor.accept(pair.getValue());
+            }
+        }
+    }
+
     /**
      * 删除某个ID的运行计划
      * @param trainID 列车ID
      */
-    public void removeScheduler(FixedString trainID) {
+    public synchronized void removeScheduler(FixedString trainID) {
         SeqList<TrainScheduler> relatedInfo = schedulerInfo.find(trainID);
         if (relatedInfo != null) {
             for (int i = 0; i < relatedInfo.length(); i++) {
@@ -89,4 +143,18 @@ public class SchedulerManager {
         }
     }
 
+    /**
+     * 提交B+树的重做日志，此前的修改在崩溃后可以恢复
+     */
+    public synchronized void sync() {
+        schedulerInfo.sync();
+    }
+
+    /**
+     * 关闭数据文件，保存B+树状态
+     */
+    public synchronized void close() {
+        schedulerInfo.close();
+    }
+
 }
@@ -0,0 +1,60 @@
+package boyuai.trainsys.manager;
+
+import boyuai.trainsys.core.Session;
+
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话管理器
+ * 会话只保存在内存中，令牌为 128 位随机数的十六进制串，难以猜测。
+ * 可以被多个线程同时使用。
+ */
+public class SessionManager {
+
+    private static final int TOKEN_BYTES = 16;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * 新建一个未登录的会话
+     * @return 会话
+     */
+    public Session openSession() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        while (true) {
+            random.nextBytes(bytes);
+            Session session = new Session(HexFormat.of().formatHex(bytes));
+            if (sessions.putIfAbsent(session.getToken(), session) == null) {
+                return session;
+            }
+        }
+    }
+
+    /**
+     * 按令牌查找会话
+     * @param token 会话令牌
+     * @return 会话，不存在或已关闭时返回null
+     */
+    public Session findSession(String token) {
+        return token == null ? null : sessions.get(token);
+    }
+
+    /**
+     * 关闭会话，之后令牌失效
+     * @param token 会话令牌
+     */
+    public void closeSession(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * 当前打开的会话数
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
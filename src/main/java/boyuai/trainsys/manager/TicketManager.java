@@ -1,35 +1,209 @@
 package boyuai.trainsys.manager;
 
+import boyuai.trainsys.config.Config;
 import boyuai.trainsys.core.TrainScheduler;
 import boyuai.trainsys.info.TicketInfo;
 import boyuai.trainsys.datastructure.BPlusTree;
+import boyuai.trainsys.datastructure.Pair;
+import boyuai.trainsys.datastructure.SeatBitmap;
+import boyuai.trainsys.datastructure.SeatCounters;
 import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.util.Codecs;
 import boyuai.trainsys.util.Date;
 import boyuai.trainsys.util.FixedString;
 import boyuai.trainsys.util.Types.*;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * 票务管理器
  * 负责管理车票的查询、购买、退票等操作
+ * 余票按（列车编号，日期，始发站）打包成一个 long 作为键，每个区间段、每天一条记录：
+ * 查询与购票只需一次 O(log n) 的定位，与开售了多少天、多少区间段无关
+ * 跨多个区间段的行程由每个（列车，日期）一份的内存余票（SeatCounters）分配：途经各段的最小值即余票，
+ * 购退票对每一段做 CAS，不加锁；内存余票在第一次用到时由B+树中的记录构建，
+ * 修改后排入写回队列，在 sync 时把变化的区间段原地写回B+树（写回先于日志提交，提交后即可恢复）
+ * 开启按座位分配后，每个（列车，日期）另有一张座位位图，购票时分配具体座位号；
+ * 位图只在内存中，由行程记录中的座位号在启动时重建（见 occupySeat）
+ * 并发：按座位分配时的座位位图、内存余票的构建与停售按车次的散列分成若干分片，每个分片一把锁，
+ * 不同分片的车次可以同时操作；只按区间段计数的购退票与查询不持有分片锁；
+ * 两棵B+树仍是一份数据文件，读写时另持有一把存储锁，只在访问B+树的片刻持有。
+ * 加锁顺序总是先分片锁、后存储锁。
  */
 public class TicketManager {
 
-    // 数据成员：一个从 trainID 到 [一组 TicketInfo] 的 B+ 树索引
-    private BPlusTree<FixedString, TicketInfo> ticketInfo;
+    // 复合键的布局：高32位为列车编号，其后12位为一年中的第几天，低20位为始发站ID
+    private static final int STATION_BITS = 20;
+    private static final int DAY_BITS = 12;
+
+    // 数据成员：一个从 (列车编号, 日期, 始发站) 到 TicketInfo 的 B+ 树索引，键唯一
+    private BPlusTree<Long, TicketInfo> ticketInfo;
+    // 车次号到列车编号的映射，编号从1开始依次分配，持久化保存
+    private BPlusTree<FixedString, Integer> trainIndex;
+    private int nextTrainIndex;
+    // 车次号到列车编号的缓存，避免每次操作都查B+树
+    private final Map<String, Integer> trainNumbers = new ConcurrentHashMap<>();
+    // (列车编号, 日期) 到内存余票的映射，键为始发站部分为0的复合键；以及有修改、等待写回B+树的内存余票
+    private final Map<Long, DayInventory> inventories = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<DayInventory> dirtyInventories = new ConcurrentLinkedQueue<>();
+    // 是否按座位分配，以及 (列车编号, 日期) 到座位位图的映射
+    private final boolean trackSeats;
+    private final Map<Long, SeatBitmap> seatMaps = new ConcurrentHashMap<>();
+
+    // 分片锁，以及保护两棵B+树与 nextTrainIndex 的存储锁
+    private final ReentrantLock[] shardLocks = new ReentrantLock[Config.INVENTORY_SHARDS];
+    private final ReentrantLock storeLock = new ReentrantLock();
+
+    /**
+     * 一个（列车，日期）在内存中的余票
+     */
+    private static final class DayInventory {
+        final long key;                 // 始发站部分为0的复合键
+        final TrainScheduler scheduler;
+        final Date date;
+        final SeatCounters seats;
+        final int[] persisted;          // 已写入B+树的余票，只在持有存储锁时访问
+        final AtomicBoolean dirty = new AtomicBoolean();  // 是否已在写回队列中
+
+        DayInventory(long key, TrainScheduler scheduler, Date date, int[] seats) {
+            this.key = key;
+            this.scheduler = scheduler;
+            this.date = date;
+            this.seats = new SeatCounters(seats);
+            this.persisted = seats.clone();
+        }
+
+        /**
+         * 以 stationID 为始发站的区间段下标，不在线路上时返回-1
+         */
+        int segmentOf(int stationID) {
+            for (int i = 0; i < seats.size(); i++) {
+                if (scheduler.getStation(i).value() == stationID) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 
     /**
      * 构造函数
      * @param filename 数据文件名
      */
     public TicketManager(String filename) {
-        this.ticketInfo = new BPlusTree<>(filename);
+        this(filename, false);
+    }
+
+    /**
+     * 构造函数
+     * @param filename 数据文件名
+     * @param trackSeats 是否按座位分配
+     */
+    public TicketManager(String filename, boolean trackSeats) {
+        this.trackSeats = trackSeats;
+        this.ticketInfo = new BPlusTree<>(filename, Codecs.LONG, Codecs.TICKET_INFO, Config.PAGE_FILE_TYPE);
+        this.trainIndex = new BPlusTree<>(filename + "_trainIndex", Codecs.FIXED_STRING, Codecs.INTEGER, Config.PAGE_FILE_TYPE);
+        this.nextTrainIndex = trainIndex.size() + 1;
+        for (int i = 0; i < shardLocks.length; i++) {
+            shardLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 车次所在的分片
+     * @param trainID 车次号
+     * @param shards 分片数
+     * @return 分片编号，[0, shards)
+     */
+    public static int shardOf(String trainID, int shards) {
+        int h = trainID.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards);
+    }
+
+    private ReentrantLock shardLock(FixedString trainID) {
+        return shardLocks[shardOf(trainID.toString(), shardLocks.length)];
+    }
+
+    /**
+     * 打包复合键
+     * @param train 列车编号
+     * @param date 日期
+     * @param stationID 始发站ID
+     * @return 复合键
+     */
+    private static long inventoryKey(int train, Date date, int stationID) {
+        if (stationID < 0 || stationID >= 1 << STATION_BITS) {
+            throw new IllegalArgumentException("Station ID out of range: " + stationID);
+        }
+        return ((long) train << (DAY_BITS + STATION_BITS))
+                | ((long) date.dayOfYear() << STATION_BITS)
+                | stationID;
+    }
+
+    /**
+     * 查找车次号对应的列车编号
+     * @param trainID 列车ID
+     * @param create 不存在时是否分配新的编号
+     * @return 列车编号，不存在且不分配时返回-1
+     */
+    private int trainIndexOf(FixedString trainID, boolean create) {
+        Integer cached = trainNumbers.get(trainID.toString());
+        if (cached != null) {
+            return cached;
+        }
+        storeLock.lock();
+        try {
+            SeqList<Integer> found = trainIndex.find(trainID);
+            if (!found.Empty()) {
+                trainNumbers.put(trainID.toString(), found.visit(0));
+                return found.visit(0);
+            }
+            if (!create) {
+                return -1;
+            }
+            int index = nextTrainIndex++;
+            trainIndex.insert(new FixedString(trainID.getValue()), index);
+            trainNumbers.put(trainID.toString(), index);
+            return index;
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * 查找某一区间段某天的车票
+     * @param key 复合键，-1 表示列车不存在
+     * @return 车票信息，未开售时返回null
+     */
+    private TicketInfo findTicket(long key) {
+        if (key < 0) {
+            return null;
+        }
+        storeLock.lock();
+        try {
+            SeqList<TicketInfo> found = ticketInfo.find(key);
+            return found.Empty() ? null : found.visit(0);
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * 计算已有列车的复合键
+     * @return 复合键，列车不存在时返回-1
+     */
+    private long inventoryKey(FixedString trainID, Date date, int stationID) {
+        int train = trainIndexOf(trainID, false);
+        return train < 0 ? -1 : inventoryKey(train, date, stationID);
     }
 
     /**
      * 查询余票数量
      * 给定车次号、乘车日期、始发站（由于分段购票原则，始发站确定即终点站确定），查询余票数量
-     * 由于 B+ 树索引只能从 TrainID 到 该车次号 所有日期、所有区间段的余票信息
-     * 在拿到 TicketInfo 数组后，需要暴力枚举日期与始发站，才能查到票数
      *
      * @param trainID 列车ID
      * @param date 日期
@@ -37,111 +211,426 @@ public class TicketManager {
      * @return 余票数量，-1表示未找到
      */
     public int querySeat(FixedString trainID, Date date, int stationID) {
-        SeqList<TicketInfo> relatedInfo = ticketInfo.find(trainID);
-
-        if (relatedInfo == null) {
-            return -1;
+        long key = inventoryKey(trainID, date, stationID);
+        if (key >= 0) {
+            // 内存余票可能还没写回B+树
+            DayInventory inventory = inventories.get(key >>> STATION_BITS << STATION_BITS);
+            int segment = inventory == null ? -1 : inventory.segmentOf(stationID);
+            if (segment >= 0) {
+                return inventory.seats.get(segment);
+            }
         }
+        TicketInfo info = findTicket(key);
+        return info == null ? -1 : info.getSeatNum();
+    }
 
-        for (int i = 0; i < relatedInfo.length(); i++) {
-            TicketInfo info = relatedInfo.visit(i);
-            if (info.getDate().equals(date) && info.getDepartureStation().value() == stationID) {
-                return info.getSeatNum();
+    /**
+     * 取得（列车，日期）的内存余票，必要时在分片锁下由B+树中的记录构建
+     * @return 内存余票，车票未开售时返回null
+     */
+    private DayInventory inventory(TrainScheduler scheduler, Date date) {
+        int train = trainIndexOf(scheduler.getTrainID(), false);
+        if (train < 0) {
+            return null;
+        }
+        long trainDay = inventoryKey(train, date, 0);
+        DayInventory inventory = inventories.get(trainDay);
+        if (inventory != null) {
+            return inventory;
+        }
+        ReentrantLock shard = shardLock(scheduler.getTrainID());
+        shard.lock();
+        try {
+            inventory = inventories.get(trainDay);
+            if (inventory == null) {
+                int segments = scheduler.getPassingStationNum() - 1;
+                int[] seats = new int[segments];
+                for (int i = 0; i < segments; i++) {
+                    TicketInfo info = findTicket(inventoryKey(train, date, scheduler.getStation(i).value()));
+                    if (info == null) {
+                        return null;
+                    }
+                    seats[i] = info.getSeatNum();
+                }
+                inventory = new DayInventory(trainDay, scheduler, date, seats);
+                inventories.put(trainDay, inventory);
             }
+            return inventory;
+        } finally {
+            shard.unlock();
         }
+    }
 
-        return -1; // 出错，没有找到符合条件的车票
+    /**
+     * 内存余票有修改：不在写回队列中时排入队列
+     */
+    private void markDirty(DayInventory inventory) {
+        if (!inventory.dirty.get() && inventory.dirty.compareAndSet(false, true)) {
+            dirtyInventories.add(inventory);
+        }
     }
 
     /**
-     * 更新余票数量
-     * 给定车次号、乘车日期、始发站、购票或退票，修改余票数量，索引方式同上
+     * 把写回队列中内存余票变化了的区间段原地写入B+树，调用时须持有存储锁
+     * 先清除标记再读取余票：读取之后的修改会重新排队，不会丢失
+     */
+    private void flushInventories() {
+        DayInventory inventory;
+        while ((inventory = dirtyInventories.poll()) != null) {
+            inventory.dirty.set(false);
+            if (inventories.get(inventory.key) != inventory) {
+                continue;  // 已停售，B+树中的记录随后删除
+            }
+            for (int i = 0; i < inventory.seats.size(); i++) {
+                int seats = inventory.seats.get(i);
+                if (seats != inventory.persisted[i]) {
+                    TicketInfo info = newTicket(inventory.scheduler, i, inventory.date);
+                    info.setSeatNum(seats);
+                    ticketInfo.modify(inventory.key | inventory.scheduler.getStation(i).value(), info);
+                    inventory.persisted[i] = seats;
+                }
+            }
+        }
+    }
+
+    /**
+     * 查询第 from 站到第 to 站的余票数量，即途经各区间段余票的最小值
      *
-     * @param trainID 列车ID
+     * @param scheduler 列车调度计划
      * @param date 日期
-     * @param stationID 始发站ID
-     * @param delta 变化量（1表示购票，-1表示退票）
-     * @return 票价，-1表示错误
+     * @param from 上车站在线路中的下标
+     * @param to 下车站在线路中的下标，须大于 from
+     * @return 余票数量，-1表示未开售
      */
-    public int updateSeat(FixedString trainID, Date date, int stationID, int delta) {
-        SeqList<TicketInfo> relatedInfo = ticketInfo.find(trainID);
-
-        if (relatedInfo == null) {
+    public int querySeat(TrainScheduler scheduler, Date date, int from, int to) {
+        DayInventory inventory = inventory(scheduler, date);
+        if (inventory == null || inventory.seats.isClosed()) {
             return -1;
         }
+        int remaining = inventory.seats.queryMin(from, to - 1);
+        if (trackSeats) {
+            // 各区间段都有余票时未必有一个座位全程空闲
+            ReentrantLock shard = shardLock(scheduler.getTrainID());
+            shard.lock();
+            try {
+                remaining = Math.min(remaining, seatMap(scheduler, date).countFree(from, to - 1));
+            } finally {
+                shard.unlock();
+            }
+        }
+        return remaining;
+    }
 
-        for (int i = 0; i < relatedInfo.length(); i++) {
-            TicketInfo info = relatedInfo.visit(i);
-            if (info.getDate().equals(date) && info.getDepartureStation().value() == stationID) {
-                // 生成更新后的票务信息（B+树不支持 modify，采用删后插）
-                TicketInfo updatedInfo = new TicketInfo(
-                        info.getTrainID(),
-                        info.getDepartureStation(),
-                        info.getArrivalStation(),
-                        info.getSeatNum() + delta,
-                        info.getPrice(),
-                        info.getDuration(),
-                        info.getDate()
-                );
+    public boolean isTrackingSeats() {
+        return trackSeats;
+    }
 
-                // 更新B+树中的信息
-                ticketInfo.remove(trainID, info);
-                ticketInfo.insert(trainID, updatedInfo);
+    /**
+     * 取得（列车，日期）的座位位图，不存在时新建（全部空闲）
+     */
+    private SeatBitmap seatMap(TrainScheduler scheduler, Date date) {
+        long trainDay = inventoryKey(trainIndexOf(scheduler.getTrainID(), false), date, 0);
+        SeatBitmap map = seatMaps.get(trainDay);
+        if (map == null) {
+            map = new SeatBitmap(scheduler.getSeatNum(), scheduler.getPassingStationNum() - 1);
+            seatMaps.put(trainDay, map);
+        }
+        return map;
+    }
 
-                return updatedInfo.getPrice();
+    /**
+     * 按座位分配：找一个从第 from 站到第 to 站全程空闲的座位并预订
+     *
+     * @param scheduler 列车调度计划
+     * @param date 日期
+     * @param from 上车站在线路中的下标
+     * @param to 下车站在线路中的下标，须大于 from
+     * @return 座位号，没有空闲座位或未开售时返回-1
+     */
+    public int allocateSeat(TrainScheduler scheduler, Date date, int from, int to) {
+        ReentrantLock shard = shardLock(scheduler.getTrainID());
+        shard.lock();
+        try {
+            DayInventory inventory = inventory(scheduler, date);
+            if (inventory == null || !inventory.seats.tryReserve(from, to - 1, 1)) {
+                return -1;
+            }
+            int seat = seatMap(scheduler, date).allocate(from, to - 1);
+            if (seat < 0) {
+                inventory.seats.add(from, to - 1, 1);
+                return -1;
             }
+            markDirty(inventory);
+            return seat;
+        } finally {
+            shard.unlock();
         }
+    }
 
-        return -1; // 出错，没有找到符合条件的车票
+    /**
+     * 按座位分配：退还第 from 站到第 to 站的一个座位
+     *
+     * @param seat 座位号
+     * @return 是否退还成功（未开售或座位并未被占用时失败）
+     */
+    public boolean freeSeat(TrainScheduler scheduler, Date date, int from, int to, int seat) {
+        ReentrantLock shard = shardLock(scheduler.getTrainID());
+        shard.lock();
+        try {
+            DayInventory inventory = inventory(scheduler, date);
+            if (inventory == null) {
+                return false;
+            }
+            SeatBitmap map = seatMap(scheduler, date);
+            if (seat < 0 || seat >= map.getSeats() || map.isFree(seat, from, to - 1)) {
+                return false;
+            }
+            map.release(seat, from, to - 1);
+            inventory.seats.add(from, to - 1, 1);
+            markDirty(inventory);
+            return true;
+        } finally {
+            shard.unlock();
+        }
+    }
+
+    /**
+     * 重建位图时调用：标记座位已被占用，不改变余票记录
+     *
+     * @param seat 座位号
+     */
+    public void occupySeat(TrainScheduler scheduler, Date date, int from, int to, int seat) {
+        ReentrantLock shard = shardLock(scheduler.getTrainID());
+        shard.lock();
+        try {
+            if (inventory(scheduler, date) == null) {
+                return;  // 已停售
+            }
+            seatMap(scheduler, date).occupy(seat, from, to - 1);
+        } finally {
+            shard.unlock();
+        }
+    }
+
+    /**
+     * 批量处理同一（列车，日期）的购票与退票：按给出的顺序逐个判定并修改内存余票，
+     * 整批只排入一次写回队列
+     *
+     * @param scheduler 列车调度计划
+     * @param date 日期
+     * @param from 各请求上车站在线路中的下标
+     * @param to 各请求下车站在线路中的下标，须大于对应的 from
+     * @param counts 各请求的票数，购票为正，退票为负
+     * @return 各请求是否成功，车票未开售或已停售时返回null
+     */
+    public boolean[] applySeatDeltas(TrainScheduler scheduler, Date date, int[] from, int[] to, int[] counts) {
+        DayInventory inventory = inventory(scheduler, date);
+        if (inventory == null || inventory.seats.isClosed()) {
+            return null;
+        }
+        boolean[] accepted = new boolean[counts.length];
+        boolean modified = false;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                accepted[i] = inventory.seats.tryReserve(from[i], to[i] - 1, counts[i]);
+            } else {
+                accepted[i] = inventory.seats.add(from[i], to[i] - 1, -counts[i]);
+            }
+            modified |= accepted[i];
+        }
+        if (modified) {
+            markDirty(inventory);
+        }
+        return accepted;
+    }
+
+    /**
+     * 生成某一区间段某天的车票
+     */
+    private static TicketInfo newTicket(TrainScheduler scheduler, int i, Date date) {
+        return new TicketInfo(
+                scheduler.getTrainID(),
+                scheduler.getStation(i),
+                scheduler.getStation(i + 1),
+                scheduler.getSeatNum(),
+                scheduler.getPrice(i),
+                scheduler.getDuration(i),
+                date
+        );
     }
 
     /**
      * 开售车票
      * 给定列车运行计划，开售列车运行计划分段、逐日的车票，导入车票管理系统
-     * 在此处new TicketInfo的空间，构建 B+ 树等，TicketInfo 从 TrainScheduler 拷信息
+     * 已经开售的区间段不会重复开售
      *
      * @param scheduler 列车调度计划
      * @param date 开售日期
      */
     public void releaseTicket(TrainScheduler scheduler, Date date) {
-        int passingStationNum = scheduler.getPassingStationNum();
+        ReentrantLock shard = shardLock(scheduler.getTrainID());
+        shard.lock();
+        try {
+            int train = trainIndexOf(scheduler.getTrainID(), true);
 
-        // 为每个区间段创建车票信息
-        for (int i = 0; i + 1 < passingStationNum; i++) {
-            TicketInfo newTicket = new TicketInfo();
-            newTicket.setTrainID(scheduler.getTrainID());
-            newTicket.setDepartureStation(scheduler.getStation(i));
-            newTicket.setArrivalStation(scheduler.getStation(i + 1));
-            newTicket.setSeatNum(scheduler.getSeatNum());
-            newTicket.setPrice(scheduler.getPrice(i));
-            newTicket.setDuration(scheduler.getDuration(i));
-            newTicket.setDate(date);
+            // 为每个区间段创建车票信息
+            storeLock.lock();
+            try {
+                for (int i = 0; i + 1 < scheduler.getPassingStationNum(); i++) {
+                    long key = inventoryKey(train, date, scheduler.getStation(i).value());
+                    if (ticketInfo.find(key).Empty()) {
+                        ticketInfo.insert(key, newTicket(scheduler, i, date));
+                    }
+                }
+            } finally {
+                storeLock.unlock();
+            }
+        } finally {
+            shard.unlock();
+        }
+    }
 
-            // 插入到B+树中
-            ticketInfo.insert(newTicket.getTrainID(), newTicket);
+    /**
+     * 批量开售车票
+     * 一次开售若干列车在一段日期内的全部车票，整批排序后写入B+树（车票索引为空时自底向上构建）
+     *
+     * @param schedulers 列车调度计划
+     * @param startDate 开售的第一天
+     * @param days 开售天数
+     */
+    public void releaseTickets(SeqList<TrainScheduler> schedulers, Date startDate, int days) {
+        storeLock.lock();
+        try {
+            boolean checkExisting = ticketInfo.size() > 0;
+            SeqList<Pair<Long, TicketInfo>> tickets = new SeqList<>();
+            for (int k = 0; k < schedulers.length(); k++) {
+                TrainScheduler scheduler = schedulers.visit(k);
+                int train = trainIndexOf(scheduler.getTrainID(), true);
+                for (int d = 0; d < days; d++) {
+                    Date date = startDate.addDays(d);
+                    for (int i = 0; i + 1 < scheduler.getPassingStationNum(); i++) {
+                        long key = inventoryKey(train, date, scheduler.getStation(i).value());
+                        if (!checkExisting || ticketInfo.find(key).Empty()) {
+                            tickets.pushBack(new Pair<>(key, newTicket(scheduler, i, date)));
+                        }
+                    }
+                }
+            }
+            ticketInfo.insertAll(tickets);
+        } finally {
+            storeLock.unlock();
         }
     }
 
     /**
      * 停售车票
      * 给定车次与日期，停售该列车运行计划分段、逐日的车票
+     * 同一车次同一天的车票在复合键上是连续的一段，范围扫描即可取出
      *
      * @param trainID 列车ID
      * @param date 日期
      */
     public void expireTicket(FixedString trainID, Date date) {
-        SeqList<TicketInfo> relatedInfo = ticketInfo.find(trainID);
+        ReentrantLock shard = shardLock(trainID);
+        shard.lock();
+        try {
+            int train = trainIndexOf(trainID, false);
+            if (train < 0) {
+                return;
+            }
+
+            // 删除所有匹配日期的车票信息
+            dropInventory(inventoryKey(train, date, 0));
+            seatMaps.remove(inventoryKey(train, date, 0));
+            removeTickets(inventoryKey(train, date, 0), inventoryKey(train, date, (1 << STATION_BITS) - 1));
+        } finally {
+            shard.unlock();
+        }
+    }
+
+    /**
+     * 停售某车次已开售的全部车票（删除运行计划时调用）
+     * 同一车次的车票在复合键上也是连续的一段
+     *
+     * @param trainID 列车ID
+     */
+    public void expireTrain(FixedString trainID) {
+        ReentrantLock shard = shardLock(trainID);
+        shard.lock();
+        try {
+            int train = trainIndexOf(trainID, false);
+            if (train < 0) {
+                return;
+            }
+            for (Long key : inventories.keySet()) {
+                if (key >>> (DAY_BITS + STATION_BITS) == train) {
+                    dropInventory(key);
+                }
+            }
+            seatMaps.keySet().removeIf(key -> key >>> (DAY_BITS + STATION_BITS) == train);
+            removeTickets((long) train << (DAY_BITS + STATION_BITS), ((long) train + 1 << (DAY_BITS + STATION_BITS)) - 1);
+        } finally {
+            shard.unlock();
+        }
+    }
 
-        if (relatedInfo == null) {
-            return;
+    /**
+     * 停售并丢弃一个（列车，日期）的内存余票：先关闭，仍持有它的无锁购退票随后都会失败，再从映射中移除
+     * 调用时须持有该车次的分片锁
+     */
+    private void dropInventory(long trainDay) {
+        DayInventory inventory = inventories.get(trainDay);
+        if (inventory != null) {
+            inventory.seats.close();
+            inventories.remove(trainDay);
         }
+    }
 
-        // 删除所有匹配日期的车票信息
-        for (int i = 0; i < relatedInfo.length(); i++) {
-            TicketInfo info = relatedInfo.visit(i);
-            if (info.getDate().equals(date)) {
-                ticketInfo.remove(trainID, info);
+    /**
+     * 删除复合键在 [from, to] 内的全部车票记录
+     */
+    private void removeTickets(long from, long to) {
+        storeLock.lock();
+        try {
+            SeqList<Pair<Long, TicketInfo>> expired = new SeqList<>();
+            try (BPlusTree<Long, TicketInfo>.Cursor cursor = ticketInfo.scan(from, to)) {
+                while (cursor.hasNext()) {
+                    expired.pushBack(cursor.next());
+                }
             }
+            for (int i = 0; i < expired.length(); i++) {
+                ticketInfo.remove(expired.visit(i).getKey(), expired.visit(i).getValue());
+            }
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * 把内存余票的修改写回B+树并提交重做日志，此前的修改在崩溃后可以恢复
+     */
+    public void sync() {
+        storeLock.lock();
+        try {
+            flushInventories();
+            ticketInfo.sync();
+            trainIndex.sync();
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭数据文件，保存B+树状态
+     */
+    public void close() {
+        storeLock.lock();
+        try {
+            flushInventories();
+            ticketInfo.close();
+            trainIndex.close();
+        } finally {
+            storeLock.unlock();
         }
     }
 
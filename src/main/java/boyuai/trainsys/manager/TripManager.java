@@ -1,12 +1,18 @@
 package boyuai.trainsys.manager;
 
+import boyuai.trainsys.config.Config;
 import boyuai.trainsys.info.TripInfo;
 import boyuai.trainsys.datastructure.BPlusTree;
+import boyuai.trainsys.datastructure.Pair;
 import boyuai.trainsys.datastructure.SeqList;
+import boyuai.trainsys.util.Codecs;
+
+import java.util.function.BiConsumer;
 
 /**
  * 行程管理器
  * 负责管理用户的购票记录和行程信息
+ * 公开方法都是同步的，可以被多个线程同时使用
  */
 public class TripManager {
 
@@ -18,7 +24,7 @@ public class TripManager {
      * @param filename 数据文件名
      */
     public TripManager(String filename) {
-        this.tripInfo = new BPlusTree<>(filename);
+        this.tripInfo = new BPlusTree<>(filename, Codecs.LONG, Codecs.TRIP_INFO, Config.PAGE_FILE_TYPE);
     }
 
     /**
@@ -26,16 +32,24 @@ public class TripManager {
      * @param userID 用户ID
      * @param trip 行程信息
      */
-    public void addTrip(long userID, TripInfo trip) {
+    public synchronized void addTrip(long userID, TripInfo trip) {
         tripInfo.insert(userID, trip);
     }
 
+    /**
+     * 批量添加行程记录，按用户ID排序后一起插入
+     * @param trips （用户ID，行程）列表
+     */
+    public synchronized void addTrips(SeqList<Pair<Long, TripInfo>> trips) {
+        tripInfo.insertAll(trips);
+    }
+
     /**
      * 查询用户的所有行程
      * @param userID 用户ID
      * @return 用户的多个 TripInfo
      */
-    public SeqList<TripInfo> queryTrip(long userID) {
+    public synchronized SeqList<TripInfo> queryTrip(long userID) {
         SeqList<TripInfo> trips = tripInfo.find(userID);
         if (trips == null) {
             return new SeqList<>();
@@ -43,13 +57,42 @@ public class TripManager {
         return trips;
     }
 
+    /**
+     * 按用户ID顺序遍历一段用户ID范围内的全部行程，逐条交给 visitor，不构造结果列表
+     * @param lowUserID 最小用户ID（包含）
+     * @param highUserID 最大用户ID（包含）
+     * @param visitor 接收（用户ID，行程）
+     */
+    public synchronized void forEachTrip(long lowUserID, long highUserID, BiConsumer<Long, TripInfo> visitor) {
+        try (BPlusTree<Long, TripInfo>.Cursor cursor = tripInfo.scan(lowUserID, highUserID)) {
+            while (cursor.hasNext()) {
+                Pair<Long, TripInfo> pair = cursor.next();
+                visitor.accept(pair.getKey(), pair.getValue());
+            }
+        }
+    }
+
     /**
      * 删除用户的某个行程记录
      * @param userID 用户ID
      * @param trip 要删除的行程信息
      */
-    public void removeTrip(long userID, TripInfo trip) {
+    public synchronized void removeTrip(long userID, TripInfo trip) {
         tripInfo.remove(userID, trip);
     }
 
+    /**
+     * 提交B+树的重做日志，此前的修改在崩溃后可以恢复
+     */
+    public synchronized void sync() {
+        tripInfo.sync();
+    }
+
+    /**
+     * 关闭数据文件，保存B+树状态
+     */
+    public synchronized void close() {
+        tripInfo.close();
+    }
+
 }
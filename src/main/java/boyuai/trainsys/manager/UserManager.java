@@ -1,8 +1,11 @@
 package boyuai.trainsys.manager;
 
+import boyuai.trainsys.config.Config;
 import boyuai.trainsys.datastructure.BPlusTree;
+import boyuai.trainsys.datastructure.Pair;
 import boyuai.trainsys.datastructure.SeqList;
 import boyuai.trainsys.info.UserInfo;
+import boyuai.trainsys.util.Codecs;
 import boyuai.trainsys.util.Types.UserID;
 
 import java.util.HashMap;
@@ -10,6 +13,8 @@ import java.util.Map;
 
 /**
  * 用户管理器
+ * 公开方法都是同步的，可以被多个线程同时使用。
+ * 缓存中的 UserInfo 会被其他线程读取，修改用户时换上新的对象，不改动已有的对象
  */
 public class UserManager {
     private BPlusTree<Long, UserInfo> userInfoTable;
@@ -22,22 +27,34 @@ public class UserManager {
      * @param filename 数据文件名
      */
     public UserManager(String filename) {
-        userInfoTable = new BPlusTree<>(filename);
+        userInfoTable = new BPlusTree<>(filename, Codecs.LONG, Codecs.USER_INFO, Config.PAGE_FILE_TYPE);
     }
 
     /**
      * 插入用户
      */
-    public void insertUser(UserID userID, String username, String password, int privilege) {
+    public synchronized void insertUser(UserID userID, String username, String password, int privilege) {
         UserInfo userInfo = new UserInfo(userID, username, password, privilege);
         userInfoTable.insert(userID.value(), userInfo);
         cache.put(userID.value(), userInfo);
     }
 
+    /**
+     * 批量导入用户，整批排序后写入B+树（不进入缓存，查询时再按需加载）
+     */
+    public synchronized void importUsers(SeqList<UserInfo> users) {
+        SeqList<Pair<Long, UserInfo>> pairs = new SeqList<>();
+        for (int i = 0; i < users.length(); i++) {
+            UserInfo user = users.visit(i);
+            pairs.pushBack(new Pair<>(user.getUserID().value(), user));
+        }
+        userInfoTable.insertAll(pairs);
+    }
+
     /**
      * 检查用户是否存在
      */
-    public boolean existUser(UserID userID) {
+    public synchronized boolean existUser(UserID userID) {
         if (cache.containsKey(userID.value())) return true;
         SeqList<UserInfo> result = userInfoTable.find(userID.value());
         boolean exists = !result.Empty();
@@ -47,8 +64,9 @@ public class UserManager {
 
     /**
      * 查找用户
+     * @return 用户信息，与缓存共享，调用方不应修改；不存在时返回null
      */
-    public UserInfo findUser(UserID userID) {
+    public synchronized UserInfo findUser(UserID userID) {
         if (cache.containsKey(userID.value())) {
             return cache.get(userID.value());
         }
@@ -64,7 +82,7 @@ public class UserManager {
     /**
      * 删除用户
      */
-    public void removeUser(UserID userID) {
+    public synchronized void removeUser(UserID userID) {
         UserInfo user = findUser(userID);
         if (user != null) {
             userInfoTable.remove(userID.value(), user);
@@ -75,26 +93,42 @@ public class UserManager {
     /**
      * 修改用户权限
      */
-    public void modifyUserPrivilege(UserID userID, int newPrivilege) {
+    public synchronized void modifyUserPrivilege(UserID userID, int newPrivilege) {
         UserInfo user = findUser(userID);
         if (user != null) {
+            UserInfo updated = new UserInfo(user);
+            updated.setPrivilege(newPrivilege);
             userInfoTable.remove(userID.value(), user);
-            user.setPrivilege(newPrivilege);
-            userInfoTable.insert(userID.value(), user);
-            cache.put(userID.value(), user);
+            userInfoTable.insert(userID.value(), updated);
+            cache.put(userID.value(), updated);
         }
     }
 
     /**
      * 修改用户密码
      */
-    public void modifyUserPassword(UserID userID, String newPassword) {
+    public synchronized void modifyUserPassword(UserID userID, String newPassword) {
         UserInfo user = findUser(userID);
         if (user != null) {
+            UserInfo updated = new UserInfo(user);
+            updated.setPassword(newPassword);
             userInfoTable.remove(userID.value(), user);
-            user.setPassword(newPassword);
-            userInfoTable.insert(userID.value(), user);
-            cache.put(userID.value(), user);
+            userInfoTable.insert(userID.value(), updated);
+            cache.put(userID.value(), updated);
         }
     }
+
+    /**
+     * 提交B+树的重做日志，此前的修改在崩溃后可以恢复
+     */
+    public synchronized void sync() {
+        userInfoTable.sync();
+    }
+
+    /**
+     * 关闭数据文件，保存B+树状态
+     */
+    public synchronized void close() {
+        userInfoTable.close();
+    }
 }
@@ -0,0 +1,255 @@
+package boyuai.trainsys.util;
+
+import boyuai.trainsys.config.Config;
+import boyuai.trainsys.core.TrainScheduler;
+import boyuai.trainsys.datastructure.Codec;
+import boyuai.trainsys.info.TicketInfo;
+import boyuai.trainsys.info.TripInfo;
+import boyuai.trainsys.info.UserInfo;
+import boyuai.trainsys.util.Types.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 系统中各持久化类型的定长编解码器
+ * 字符串统一编码为：2字节长度 + 定长的字符区（不足部分补0）
+ */
+public final class Codecs {
+
+    // 工具类禁止实例化
+    private Codecs() {}
+
+    public static final Codec<Long> LONG = new Codec<>() {
+        @Override
+        public int size() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    public static final Codec<Integer> INTEGER = new Codec<>() {
+        @Override
+        public int size() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    public static final Codec<FixedString> FIXED_STRING = new Codec<>() {
+        @Override
+        public int size() {
+            return stringSize(Config.MAX_STRING_LENGTH);
+        }
+
+        @Override
+        public void encode(FixedString value, ByteBuffer buffer) {
+            putString(buffer, value.getValue(), Config.MAX_STRING_LENGTH);
+        }
+
+        @Override
+        public FixedString decode(ByteBuffer buffer) {
+            return new FixedString(getString(buffer, Config.MAX_STRING_LENGTH));
+        }
+    };
+
+    public static final Codec<TicketInfo> TICKET_INFO = new Codec<>() {
+        @Override
+        public int size() {
+            return stringSize(Config.MAX_STRING_LENGTH) + 5 * Integer.BYTES + DATE_SIZE;
+        }
+
+        @Override
+        public void encode(TicketInfo value, ByteBuffer buffer) {
+            putString(buffer, value.getTrainID().getValue(), Config.MAX_STRING_LENGTH);
+            buffer.putInt(value.getDepartureStation().value());
+            buffer.putInt(value.getArrivalStation().value());
+            buffer.putInt(value.getSeatNum());
+            buffer.putInt(value.getPrice());
+            buffer.putInt(value.getDuration());
+            putDate(buffer, value.getDate());
+        }
+
+        @Override
+        public TicketInfo decode(ByteBuffer buffer) {
+            TrainID trainID = new TrainID(getString(buffer, Config.MAX_STRING_LENGTH));
+            StationID departure = new StationID(buffer.getInt());
+            StationID arrival = new StationID(buffer.getInt());
+            int seatNum = buffer.getInt();
+            int price = buffer.getInt();
+            int duration = buffer.getInt();
+            return new TicketInfo(trainID, departure, arrival, seatNum, price, duration, getDate(buffer));
+        }
+    };
+
+    public static final Codec<TripInfo> TRIP_INFO = new Codec<>() {
+        @Override
+        public int size() {
+            return stringSize(Config.MAX_STRING_LENGTH) + 6 * Integer.BYTES + DATE_SIZE;
+        }
+
+        @Override
+        public void encode(TripInfo value, ByteBuffer buffer) {
+            putString(buffer, value.getTrainID().getValue(), Config.MAX_STRING_LENGTH);
+            buffer.putInt(value.getDepartureStation().value());
+            buffer.putInt(value.getArrivalStation().value());
+            buffer.putInt(value.getTicketNumber());
+            buffer.putInt(value.getDuration());
+            buffer.putInt(value.getPrice());
+            putDate(buffer, value.getDate());
+            buffer.putInt(value.getSeat());
+        }
+
+        @Override
+        public TripInfo decode(ByteBuffer buffer) {
+            TrainID trainID = new TrainID(getString(buffer, Config.MAX_STRING_LENGTH));
+            StationID departure = new StationID(buffer.getInt());
+            StationID arrival = new StationID(buffer.getInt());
+            int ticketNumber = buffer.getInt();
+            int duration = buffer.getInt();
+            int price = buffer.getInt();
+            Date date = getDate(buffer);
+            return new TripInfo(trainID, departure, arrival, ticketNumber, duration, price, date, buffer.getInt());
+        }
+    };
+
+    public static final Codec<UserInfo> USER_INFO = new Codec<>() {
+        @Override
+        public int size() {
+            return Long.BYTES + stringSize(Config.MAX_USERNAME_LEN)
+                    + stringSize(Config.MAX_PASSWORD_LEN) + Integer.BYTES;
+        }
+
+        @Override
+        public void encode(UserInfo value, ByteBuffer buffer) {
+            buffer.putLong(value.getUserID().value());
+            putString(buffer, value.getUsername(), Config.MAX_USERNAME_LEN);
+            putString(buffer, value.getPassword(), Config.MAX_PASSWORD_LEN);
+            buffer.putInt(value.getPrivilege());
+        }
+
+        @Override
+        public UserInfo decode(ByteBuffer buffer) {
+            UserID userID = new UserID(buffer.getLong());
+            String username = getString(buffer, Config.MAX_USERNAME_LEN);
+            String password = getString(buffer, Config.MAX_PASSWORD_LEN);
+            return new UserInfo(userID, username, password, buffer.getInt());
+        }
+    };
+
+    public static final Codec<TrainScheduler> TRAIN_SCHEDULER = new Codec<>() {
+        @Override
+        public int size() {
+            return stringSize(Config.MAX_STRING_LENGTH) + 3 * Integer.BYTES
+                    + 3 * Config.MAX_PASSING_STATION_NUMBER * Integer.BYTES;
+        }
+
+        @Override
+        public void encode(TrainScheduler value, ByteBuffer buffer) {
+            putString(buffer, value.getTrainID().getValue(), Config.MAX_STRING_LENGTH);
+            buffer.putInt(value.getSeatNum());
+            buffer.putInt(value.getPassingStationNum());
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                buffer.putInt(i < value.getPassingStationNum() ? value.getStation(i).value() : 0);
+            }
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                buffer.putInt(value.getDuration(i));
+            }
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                buffer.putInt(value.getPrice(i));
+            }
+            buffer.putInt(value.getStartTime());
+        }
+
+        @Override
+        public TrainScheduler decode(ByteBuffer buffer) {
+            TrainScheduler scheduler = new TrainScheduler();
+            scheduler.setTrainID(new TrainID(getString(buffer, Config.MAX_STRING_LENGTH)));
+            scheduler.setSeatNum(buffer.getInt());
+            int passingStationNum = buffer.getInt();
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                int station = buffer.getInt();
+                if (i < passingStationNum) {
+                    scheduler.addStation(new StationID(station));
+                }
+            }
+            // setDuration/setPrice 只拷贝前 passingStationNum-1 段，因此先解码站点
+            int[] duration = new int[Config.MAX_PASSING_STATION_NUMBER];
+            int[] price = new int[Config.MAX_PASSING_STATION_NUMBER];
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                duration[i] = buffer.getInt();
+            }
+            for (int i = 0; i < Config.MAX_PASSING_STATION_NUMBER; i++) {
+                price[i] = buffer.getInt();
+            }
+            scheduler.setDuration(duration);
+            scheduler.setPrice(price);
+            scheduler.setStartTime(buffer.getInt());
+            return scheduler;
+        }
+    };
+
+    // 日期编码为 月、日 两个字节
+    private static final int DATE_SIZE = 2;
+
+    /**
+     * 计算定长字符串编码后的字节数
+     * @param maxLen 最大字符数
+     * @return 字节数
+     */
+    public static int stringSize(int maxLen) {
+        return Short.BYTES + maxLen * Character.BYTES;
+    }
+
+    /**
+     * 写入定长字符串，超长部分截断，不足部分补0
+     */
+    public static void putString(ByteBuffer buffer, String str, int maxLen) {
+        int len = Math.min(str == null ? 0 : str.length(), maxLen);
+        buffer.putShort((short) len);
+        for (int i = 0; i < maxLen; i++) {
+            buffer.putChar(i < len ? str.charAt(i) : '\0');
+        }
+    }
+
+    /**
+     * 读出定长字符串
+     */
+    public static String getString(ByteBuffer buffer, int maxLen) {
+        int len = buffer.getShort();
+        char[] chars = new char[len];
+        for (int i = 0; i < maxLen; i++) {
+            char c = buffer.getChar();
+            if (i < len) chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+    private static void putDate(ByteBuffer buffer, Date date) {
+        buffer.put((byte) date.getMon());
+        buffer.put((byte) date.getMday());
+    }
+
+    private static Date getDate(ByteBuffer buffer) {
+        int mon = buffer.get();
+        int mday = buffer.get();
+        return new Date(mon, mday);
+    }
+}
@@ -1,6 +1,8 @@
 package boyuai.trainsys.util;
 
 import boyuai.trainsys.core.RailwayGraph;
+import boyuai.trainsys.core.SearchMode;
+import boyuai.trainsys.core.Session;
 import boyuai.trainsys.core.TrainSystem;
 import boyuai.trainsys.info.*;
 import boyuai.trainsys.manager.*;
@@ -12,20 +14,36 @@ import java.util.Map;
 /**
  * 命令解析器
  * 负责解析用户输入的命令并调用相应的系统功能
+ * 每个解析器有自己的参数表和会话，只应被一个线程使用；多个客户端各用一个解析器，共享同一个 TrainSystem
  */
 public class CommandParser {
 
     // 存放参数，例如 argMap.get('u') 存放的是 -u 后面的参数
-    private static final Map<Character, String> argMap = new HashMap<>();
+    private final Map<Character, String> argMap = new HashMap<>();
 
     // 外部依赖引用（仅保留实际使用的字段）
     private final RailwayGraph railwayGraph;
     private final SchedulerManager schedulerManager;
     private final StationManager stationManager;
     private final TrainSystem trainSystem;
+    // 本解析器所执行命令的会话
+    private final Session session;
 
+    /**
+     * 构造本地控制台的解析器，会话以默认管理员身份登录
+     */
     public CommandParser(TrainSystem trainSystem) {
+        this(trainSystem, trainSystem.openConsoleSession());
+    }
+
+    /**
+     * 构造函数
+     * @param trainSystem 系统
+     * @param session 命令所在的会话
+     */
+    public CommandParser(TrainSystem trainSystem, Session session) {
         this.trainSystem = trainSystem;
+        this.session = session;
         this.railwayGraph = trainSystem.getRailwayGraph();
         this.schedulerManager = trainSystem.getSchedulerManager();
         this.stationManager = trainSystem.getStationManager();
@@ -91,6 +109,7 @@ public class CommandParser {
                 switch (commandName) {
                     case "register":
                         trainSystem.addUser(
+                                session,
                                 stringToNumber(argMap.get('i')),
                                 argMap.get('u'),
                                 argMap.get('p')
@@ -99,17 +118,19 @@ public class CommandParser {
 
                     case "login":
                         trainSystem.login(
+                                session,
                                 stringToNumber(argMap.get('i')),
                                 argMap.get('p')
                         );
                         break;
 
                     case "logout":
-                        trainSystem.logout();
+                        trainSystem.logout(session);
                         break;
 
                     case "modify_password":
                         trainSystem.modifyUserPassword(
+                                session,
                                 stringToNumber(argMap.get('i')),
                                 argMap.get('p')
                         );
@@ -117,6 +138,7 @@ public class CommandParser {
 
                     case "modify_privilege":
                         trainSystem.modifyUserPrivilege(
+                                session,
                                 stringToNumber(argMap.get('i')),
                                 (int)stringToNumber(argMap.get('g'))
                         );
@@ -124,6 +146,7 @@ public class CommandParser {
 
                     case "query_profile":
                         trainSystem.findUserInfoByUserID(
+                                session,
                                 stringToNumber(argMap.get('i'))
                         );
                         break;
@@ -134,12 +157,21 @@ public class CommandParser {
 
                     case "query_train":
                         trainSystem.queryTrainScheduler(
+                                session,
+                                new FixedString(argMap.get('i'))
+                        );
+                        break;
+
+                    case "delete_train":
+                        trainSystem.deleteTrainScheduler(
+                                session,
                                 new FixedString(argMap.get('i'))
                         );
                         break;
 
                     case "release_ticket":
                         trainSystem.releaseTicket(
+                                session,
                                 schedulerManager.getScheduler(new FixedString(argMap.get('i'))),
                                 new Date(argMap.get('d'))
                         );
@@ -147,11 +179,16 @@ public class CommandParser {
 
                     case "expire_ticket":
                         trainSystem.expireTicket(
+                                session,
                                 new FixedString(argMap.get('i')),
                                 new Date(argMap.get('d'))
                         );
                         break;
 
+                    case "query_order_stats":
+                        trainSystem.printOrderStats(session);
+                        break;
+
                     case "display_route":
                         trainSystem.findAllRoute(
                                 stationManager.getStationID(argMap.get('s')),
@@ -167,28 +204,49 @@ public class CommandParser {
                         int remaining = trainSystem.queryRemainingTicket(
                                 new FixedString(argMap.get('i')),
                                 new Date(argMap.get('d')),
-                                stationManager.getStationID(argMap.get('f'))
+                                stationManager.getStationID(argMap.get('f')),
+                                arrivalStation()
                         );
                         System.out.println("Remaining ticket:" + remaining);
                         break;
 
                     case "buy_ticket":
                         trainSystem.orderTicket(
+                                session,
                                 new FixedString(argMap.get('i')),
                                 new Date(argMap.get('d')),
-                                stationManager.getStationID(argMap.get('f'))
+                                stationManager.getStationID(argMap.get('f')),
+                                arrivalStation()
                         );
                         break;
 
                     case "query_order":
-                        trainSystem.queryMyTicket();
+                        trainSystem.queryMyTicket(session);
                         break;
 
                     case "refund_ticket":
                         trainSystem.refundTicket(
+                                session,
                                 new FixedString(argMap.get('i')),
                                 new Date(argMap.get('d')),
-                                stationManager.getStationID(argMap.get('f'))
+                                stationManager.getStationID(argMap.get('f')),
+                                arrivalStation()
+                        );
+                        break;
+
+                    case "query_earliest":
+                        trainSystem.findEarliestArrival(
+                                stationManager.getStationID(argMap.get('s')),
+                                stationManager.getStationID(argMap.get('t')),
+                                new Time(argMap.get('x') + " " + argMap.get('d'))
+                        );
+                        break;
+
+                    case "query_journeys":
+                        trainSystem.findParetoJourneys(
+                                stationManager.getStationID(argMap.get('s')),
+                                stationManager.getStationID(argMap.get('t')),
+                                new Time(argMap.get('x') + " " + argMap.get('d'))
                         );
                         break;
 
@@ -214,9 +272,12 @@ public class CommandParser {
                         break;
                 }
             } catch (Exception e) {
-                System.err.println("Error executing command: " + e.getMessage());
+                // 写到命令的输出中，远程客户端也能看到
+                System.out.println("Error executing command: " + e.getMessage());
                 exitCode = -1;
             }
+        } else {
+            System.out.println("Invalid arguments: " + command);
         }
 
         return exitCode;
@@ -247,15 +308,34 @@ public class CommandParser {
         }
 
         trainSystem.addTrainScheduler(
+                session,
                 new FixedString(argMap.get('i')),
                 (int)stringToNumber(argMap.get('m')),
                 (int)stringToNumber(argMap.get('n')),
                 stations,
                 durations,
-                prices
+                prices,
+                argMap.containsKey('x') ? clockToMinutes(argMap.get('x')) : 0
         );
     }
 
+    /**
+     * 解析 HH:MM 格式的时刻
+     * @return 零点起的分钟数
+     */
+    private int clockToMinutes(String clock) {
+        Time time = new Time(clock + " 01-01");
+        return time.getHour() * 60 + time.getMin();
+    }
+
+    /**
+     * 可选的到达站参数 -t，未给出时返回null（即出发站的下一站）
+     */
+    private StationID arrivalStation() {
+        String name = argMap.get('t');
+        return name == null ? null : stationManager.getStationID(name);
+    }
+
     /**
      * 解析查询最佳路径命令
      */
@@ -271,12 +351,50 @@ public class CommandParser {
             System.out.println("Invalid preference: " + pref);
         }
 
-        if (preference != -1) {
-            trainSystem.findBestRoute(
+        // 可选的搜索方式 -m，未给出时沿用默认的查询方式
+        SearchMode mode = null;
+        String modeName = argMap.get('m');
+        if (modeName != null) {
+            mode = SearchMode.parse(modeName);
+            if (mode == null) {
+                System.out.println("Invalid search mode: " + modeName);
+                return;
+            }
+        }
+
+        if (preference != -1 && argMap.get('k') != null) {
+            // 给出 -k 时列出前 k 条备选路线，条数须为正整数
+            int k;
+            try {
+                k = Integer.parseInt(argMap.get('k'));
+            } catch (NumberFormatException e) {
+                k = 0;
+            }
+            if (k <= 0) {
+                System.out.println("Invalid number of routes: " + argMap.get('k'));
+                return;
+            }
+            trainSystem.findAlternativeRoutes(
                     stationManager.getStationID(argMap.get('s')),
                     stationManager.getStationID(argMap.get('t')),
-                    preference
+                    preference,
+                    k
             );
+        } else if (preference != -1) {
+            if (mode == null) {
+                trainSystem.findBestRoute(
+                        stationManager.getStationID(argMap.get('s')),
+                        stationManager.getStationID(argMap.get('t')),
+                        preference
+                );
+            } else {
+                trainSystem.findBestRoute(
+                        stationManager.getStationID(argMap.get('s')),
+                        stationManager.getStationID(argMap.get('t')),
+                        preference,
+                        mode
+                );
+            }
         }
     }
 }
@@ -107,6 +107,15 @@ public class Date implements Comparable<Date> {
         }
     }
 
+    /**
+     * 一年中的第几天（1月1日为1）
+     *
+     * @return 1~365
+     */
+    public int dayOfYear() {
+        return PREFIX_TOTAL[this.mon - 1] + this.mday;
+    }
+
     /**
      * 计算与另一个日期的天数差
      *
@@ -4,6 +4,7 @@ import boyuai.trainsys.config.Config;
 import boyuai.trainsys.datastructure.PriorityQueue;
 import boyuai.trainsys.info.PurchaseInfo; /**
  * 优先级等待列表
+ * 公开方法都是同步的，可以被多个线程同时使用
  */
 public class PrioritizedWaitingList {
     private PriorityQueue<PurchaseInfoWrapper> purchaseQueue;
@@ -41,20 +42,20 @@ public class PrioritizedWaitingList {
      * @param purchaseInfo 购票信息
      * @param priority 优先级
      */
-    public void addToWaitingList(PurchaseInfo purchaseInfo, int priority) {
+    public synchronized void addToWaitingList(PurchaseInfo purchaseInfo, int priority) {
         purchaseQueue.enQueue(new PurchaseInfoWrapper(purchaseInfo, priority));
         listSize++;
     }
 
     // 与C++接口兼容的重载：默认优先级为0（FIFO行为可由优先队列稳定性近似）
-    public void addToWaitingList(PurchaseInfo purchaseInfo) {
+    public synchronized void addToWaitingList(PurchaseInfo purchaseInfo) {
         addToWaitingList(purchaseInfo, 0);
     }
 
     /**
      * 从等待列表头部移除
      */
-    public void removeHeadFromWaitingList() {
+    public synchronized void removeHeadFromWaitingList() {
         if (!purchaseQueue.isEmpty()) {
             purchaseQueue.deQueue();
             listSize--;
@@ -65,7 +66,7 @@ public class PrioritizedWaitingList {
      * 获取队首的购票信息
      * @return 购票信息
      */
-    public PurchaseInfo getFrontPurchaseInfo() {
+    public synchronized PurchaseInfo getFrontPurchaseInfo() {
         PurchaseInfoWrapper wrapper = purchaseQueue.getHead();
         return wrapper != null ? wrapper.purchaseInfo : null;
     }
@@ -74,7 +75,7 @@ public class PrioritizedWaitingList {
      * 判断是否为空
      * @return 如果为空返回true
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return purchaseQueue.isEmpty();
     }
 
@@ -82,7 +83,7 @@ public class PrioritizedWaitingList {
      * 判断是否繁忙
      * @return 如果繁忙返回true
      */
-    public boolean isBusy() {
+    public synchronized boolean isBusy() {
         return listSize > Config.BUSY_STATE_THRESHOLD;
     }
 
@@ -90,7 +91,7 @@ public class PrioritizedWaitingList {
      * 获取列表大小
      * @return 列表大小
      */
-    public int getSize() {
+    public synchronized int getSize() {
         return listSize;
     }
 }
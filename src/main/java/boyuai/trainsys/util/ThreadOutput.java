@@ -0,0 +1,56 @@
+package boyuai.trainsys.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按线程分发的输出流
+ * 系统各处直接向 System.out 打印结果。把 System.out 换成包装了本流的 PrintStream 之后，
+ * 线程调用 redirect 指定自己的缓冲区，此后该线程打印的内容只写入这个缓冲区；
+ * 没有指定目标的线程仍写到原来的输出流。
+ */
+public final class ThreadOutput extends OutputStream {
+
+    private final OutputStream fallback;
+    private final ThreadLocal<OutputStream> target = new ThreadLocal<>();
+
+    /**
+     * 构造函数
+     * @param fallback 未指定目标的线程使用的输出流
+     */
+    public ThreadOutput(OutputStream fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * 指定当前线程的输出目标
+     * @param out 目标，为null时恢复为默认输出流
+     */
+    public void redirect(OutputStream out) {
+        if (out == null) {
+            target.remove();
+        } else {
+            target.set(out);
+        }
+    }
+
+    private OutputStream current() {
+        OutputStream out = target.get();
+        return out != null ? out : fallback;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current().flush();
+    }
+}
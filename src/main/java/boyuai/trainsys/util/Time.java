@@ -63,7 +63,7 @@ public class Time implements Comparable<Time> {
             hour++;
             if (hour >= 24) {
                 hour -= 24;
-                date.addDays(1); // 跨日处理
+                date.addDaysInPlace(1); // 跨日处理
             }
         }
     }
@@ -81,7 +81,7 @@ public class Time implements Comparable<Time> {
             hour--;
             if (hour < 0) {
                 hour += 24;
-                date.subtractDays(1); // 跨日处理
+                date.subtractDaysInPlace(1); // 跨日处理
             }
         }
     }
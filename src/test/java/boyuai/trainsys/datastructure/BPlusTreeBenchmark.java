@@ -0,0 +1,68 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.util.Codecs;
+import boyuai.trainsys.util.FixedString;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Random;
+
+// 性能对比：RandomAccessFile 与内存映射两种页面文件实现
+// 缓冲池只留很少的页，使大部分查找都要从页面文件读取
+public class BPlusTreeBenchmark {
+    private static final int N = 200_000;
+    private static final int QUERIES = 200_000;
+    private static final int BULK_N = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("bptree-bench").toFile();
+        for (PageFile.Type type : PageFile.Type.values()) {
+            String name = new File(dir, type.name()).getPath();
+            BPlusTree<Long, FixedString> tree = new BPlusTree<>(name, 100, 100, null,
+                    Codecs.LONG, Codecs.FIXED_STRING, 4, type);
+
+            long start = System.nanoTime();
+            for (long i = 0; i < N; i++) {
+                tree.insert(i, new FixedString("value" + i));
+            }
+            long insertMs = (System.nanoTime() - start) / 1_000_000;
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                found += tree.find((long) random.nextInt(N)).length();
+            }
+            long findMs = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println(type + ": insert " + N + " in " + insertMs + " ms, "
+                    + QUERIES + " finds in " + findMs + " ms (found " + found
+                    + ", pages read " + tree.getPoolMisses() + ")");
+            tree.close();
+        }
+
+        // 批量构建与逐个插入的对比
+        String name = new File(dir, "bulk").getPath();
+        BPlusTree<Long, FixedString> tree = new BPlusTree<>(name, Codecs.LONG, Codecs.FIXED_STRING);
+        long start = System.nanoTime();
+        tree.bulkLoad(new Iterator<>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < BULK_N;
+            }
+
+            @Override
+            public Pair<Long, FixedString> next() {
+                long key = next++;
+                return new Pair<>(key, new FixedString("value" + key));
+            }
+        });
+        long bulkMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("bulkLoad " + BULK_N + " in " + bulkMs + " ms (size " + tree.size() + ")");
+        tree.close();
+    }
+}
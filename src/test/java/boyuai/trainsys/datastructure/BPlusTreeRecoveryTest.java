@@ -0,0 +1,89 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.util.Codecs;
+import boyuai.trainsys.util.FixedString;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+// 测试：BPlusTree 的崩溃恢复（不调用 close 直接丢弃实例，模拟进程被杀）
+public class BPlusTreeRecoveryTest {
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("bptree-wal").toFile();
+        String name = new File(dir, "test").getPath();
+
+        // sync 之后的修改都应在重新打开后恢复，未 sync 的修改丢失
+        BPlusTree<Long, FixedString> crashed = new BPlusTree<>(name, 8, 8, null,
+                Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        for (long i = 0; i < 3000; i++) {
+            crashed.insert(i, new FixedString("v" + i));
+        }
+        crashed.remove(7L, new FixedString("v7"));
+        crashed.sync();
+        for (long i = 3000; i < 3010; i++) {
+            crashed.insert(i, new FixedString("lost" + i));
+        }
+
+        BPlusTree<Long, FixedString> tree = new BPlusTree<>(name, 8, 8, null,
+                Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        System.out.println("Size after crash: " + tree.size()); // Expected: 2999
+        System.out.println("Find 7: " + tree.find(7L)); // Expected: []
+        System.out.println("Find 2999: " + tree.find(2999L)); // Expected: [v2999]
+        System.out.println("Find 3005: " + tree.find(3005L)); // Expected: []
+
+        // 原地修改同样经日志恢复
+        tree.modify(2999L, new FixedString("m2999"));
+        tree.sync();
+        tree = new BPlusTree<>(name, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        System.out.println("Find 2999 after modify: " + tree.find(2999L)); // Expected: [m2999]
+
+        // 日志尾部被写坏（崩溃时写了一半）：坏掉的记录被丢弃，之前的记录照常回放
+        for (long i = 3000; i < 3100; i++) {
+            tree.insert(i, new FixedString("v" + i));
+        }
+        tree.sync();
+        try (RandomAccessFile log = new RandomAccessFile(name + "_wal", "rw")) {
+            log.seek(log.length());
+            log.write(new byte[] {0, 0, 0, 0, 0, 0, 0, 42, 1, 0, 0});
+        }
+        tree = new BPlusTree<>(name, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        System.out.println("Size with torn log tail: " + tree.size()); // Expected: 3099
+
+        // 双写日志不完整：说明原地写入尚未开始，应被忽略
+        tree.close();
+        try (RandomAccessFile journal = new RandomAccessFile(name + "_ckpt", "rw")) {
+            journal.write(new byte[] {0, 0, 0, 3, 1, 2, 3, 4, 5});
+        }
+        tree = new BPlusTree<>(name, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        System.out.println("Size with torn journal: " + tree.size()); // Expected: 3099
+        System.out.println("Find 3050: " + tree.find(3050L)); // Expected: [v3050]
+        tree.close();
+
+        // 页布局不一致（阶数改变）时应报错并指出文件与字段，原有数据保持不动
+        String message = "";
+        try {
+            new BPlusTree<>(name, 10, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        } catch (IllegalStateException e) {
+            message = e.getMessage();
+        }
+        System.out.println("Layout mismatch names the field: " + message.contains("_treeNodeFile page size")); // Expected: true
+        tree = new BPlusTree<>(name, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        System.out.println("Size after rejected open: " + tree.size()); // Expected: 3099
+        tree.close();
+
+        // 头部格式正确但内容损坏时应报错，而不是清空数据
+        try (RandomAccessFile treeNodeFile = new RandomAccessFile(name + "_treeNodeFile", "rw")) {
+            treeNodeFile.seek(8);
+            treeNodeFile.writeInt(-5);
+        }
+        boolean rejected = false;
+        try {
+            new BPlusTree<>(name, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        } catch (RuntimeException e) {
+            rejected = true;
+        }
+        System.out.println("Corrupted files rejected: " + rejected); // Expected: true
+    }
+}
@@ -0,0 +1,133 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.util.Codecs;
+import boyuai.trainsys.util.FixedString;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+// 测试：BPlusTree 的持久化（关闭后重新打开，数据应完整保留）
+public class BPlusTreeTest {
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("bptree").toFile();
+        String name = new File(dir, "test").getPath();
+
+        BPlusTree<Long, FixedString> tree = new BPlusTree<>(name, Codecs.LONG, Codecs.FIXED_STRING);
+        for (long i = 0; i < 5000; i++) {
+            tree.insert(i % 1000, new FixedString("v" + i));
+        }
+        tree.remove(7L, new FixedString("v7"));
+        System.out.println("Size before close: " + tree.size()); // Expected: 4999
+        tree.close();
+
+        tree = new BPlusTree<>(name, Codecs.LONG, Codecs.FIXED_STRING);
+        System.out.println("Size after reopen: " + tree.size()); // Expected: 4999
+        System.out.println("Find 7: " + tree.find(7L)); // Expected: [v1007, v2007, v3007, v4007]
+        System.out.println("Find 999: " + tree.find(999L)); // Expected: [v1999, v2999, v3999, v4999, v999]
+        System.out.println("Find 1000: " + tree.find(1000L)); // Expected: []
+        tree.close();
+
+        // 测试：缓冲池容量很小时，页面频繁淘汰、写回，数据仍应正确
+        String smallName = new File(dir, "small").getPath();
+        BPlusTree<Long, FixedString> small = new BPlusTree<>(smallName, 8, 8, null,
+                Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.RANDOM_ACCESS);
+        for (long i = 0; i < 2000; i++) {
+            small.insert((i * 7919) % 2000, new FixedString("s" + i));
+        }
+        System.out.println("Small pool find 1234: " + small.find(1234L)); // Expected: [s1886]
+        small.checkpoint();
+        small.close();
+        small = new BPlusTree<>(smallName, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6,
+                PageFile.Type.RANDOM_ACCESS);
+        int found = 0;
+        for (long i = 0; i < 2000; i++) {
+            found += small.find(i).length();
+        }
+        System.out.println("Small pool found after reopen: " + found); // Expected: 2000
+        small.close();
+
+        // 测试：重复点查询时，上层节点常驻缓冲池
+        tree = new BPlusTree<>(name, Codecs.LONG, Codecs.FIXED_STRING);
+        for (int round = 0; round < 10; round++) {
+            tree.find(42L);
+        }
+        System.out.println("Pool hits: " + tree.getPoolHits() + ", misses: " + tree.getPoolMisses());
+        tree.close();
+
+        // 测试：批量构建后查找、继续插入，并在重新打开后保持不变
+        String bulkName = new File(dir, "bulk").getPath();
+        BPlusTree<Long, FixedString> bulk = new BPlusTree<>(bulkName, 8, 8, null,
+                Codecs.LONG, Codecs.FIXED_STRING, 6, PageFile.Type.MAPPED);
+        SeqList<Pair<Long, FixedString>> pairs = new SeqList<>();
+        for (long i = 0; i < 3000; i++) {
+            pairs.pushBack(new Pair<>((i * 7919) % 1000, new FixedString("b" + i)));
+        }
+        bulk.insertAll(pairs);
+        bulk.insert(500L, new FixedString("extra"));
+        bulk.remove(919L, new FixedString("b1"));
+        bulk.close();
+        bulk = new BPlusTree<>(bulkName, 8, 8, null, Codecs.LONG, Codecs.FIXED_STRING, 6,
+                PageFile.Type.MAPPED);
+        System.out.println("Bulk size: " + bulk.size()); // Expected: 3000
+        System.out.println("Bulk find 500: " + bulk.find(500L)); // Expected: [b1500, b2500, b500, extra]
+        found = 0;
+        for (long i = 0; i < 1000; i++) {
+            found += bulk.find(i).length();
+        }
+        System.out.println("Bulk found: " + found); // Expected: 3000
+
+        // 测试：游标沿叶子链做范围扫描
+        int scanned = 0;
+        long lastKey = -1;
+        boolean ordered = true;
+        try (BPlusTree<Long, FixedString>.Cursor cursor = bulk.scan(100L, 199L)) {
+            while (cursor.hasNext()) {
+                long key = cursor.next().getKey();
+                ordered &= key >= lastKey && key >= 100 && key <= 199;
+                lastKey = key;
+                scanned++;
+            }
+        }
+        System.out.println("Scan [100, 199]: " + scanned + ", ordered: " + ordered); // Expected: 300, ordered: true
+        BPlusTree<Long, FixedString>.Cursor all = bulk.cursor();
+        all.next();
+        bulk.insert(-1L, new FixedString("first"));
+        try {
+            all.hasNext();
+            System.out.println("Modification not detected");
+        } catch (java.util.ConcurrentModificationException e) {
+            System.out.println("Modification detected"); // Expected: Modification detected
+        }
+        all.close();
+        System.out.println("Seek 999 then next: " + bulk.seek(999L).next().getKey()); // Expected: 999
+
+        // 测试：原地修改后，分隔关键字随之更新，仍能按新值删除
+        bulk.clear();
+        for (long i = 0; i < 1000; i++) {
+            bulk.insert(i, new FixedString("old" + i));
+        }
+        boolean modified = true;
+        for (long i = 0; i < 1000; i += 2) {
+            modified &= bulk.modify(i, new FixedString("new" + i));
+        }
+        System.out.println("Modify missing key: " + bulk.modify(5000L, new FixedString("x"))); // Expected: false
+        for (long i = 0; i < 1000; i += 2) {
+            bulk.remove(i, new FixedString("new" + i));
+        }
+        System.out.println("Modified: " + modified + ", size after removing modified: " + bulk.size()); // Expected: true, 500
+        System.out.println("Find 501: " + bulk.find(501L)); // Expected: [old501]
+
+        // 测试：未排序的输入被拒绝，树保持为空
+        bulk.clear();
+        java.util.List<Pair<Long, FixedString>> unsorted = java.util.List.of(
+                new Pair<>(2L, new FixedString("x")), new Pair<>(1L, new FixedString("y")));
+        try {
+            bulk.bulkLoad(unsorted.iterator());
+            System.out.println("Unsorted input accepted");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unsorted input rejected, size: " + bulk.size()); // Expected: 0
+        }
+        bulk.close();
+    }
+}
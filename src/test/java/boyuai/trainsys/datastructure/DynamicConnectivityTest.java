@@ -0,0 +1,65 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+// 测试：DynamicConnectivity 的加边、删边与连通性查询（与每次重新 BFS 的结果对照）
+public class DynamicConnectivityTest {
+    public static void main(String[] args) {
+        DynamicConnectivity dc = new DynamicConnectivity();
+        dc.addEdge(1, 2);
+        dc.addEdge(2, 3);
+        dc.addEdge(3, 1);
+        System.out.println("1-3 connected: " + dc.connected(1, 3)); // Expected: true
+        dc.removeEdge(2, 3);
+        System.out.println("1-3 after removing 2-3: " + dc.connected(1, 3)); // Expected: true
+        dc.removeEdge(1, 3);
+        System.out.println("1-3 after removing 1-3: " + dc.connected(1, 3)); // Expected: false
+        dc.addEdge(1, 2);
+        dc.removeEdge(1, 2);
+        System.out.println("1-2 with one parallel edge left: " + dc.connected(1, 2)); // Expected: true
+        System.out.println("Remove missing edge: " + dc.removeEdge(5, 6)); // Expected: false
+
+        // 随机加边、删边，与邻接矩阵上的 BFS 对照
+        Random random = new Random(19);
+        int n = 60;
+        int[][] count = new int[n][n];
+        dc = new DynamicConnectivity();
+        boolean ok = true;
+        for (int round = 0; round < 20000; round++) {
+            int u = random.nextInt(n);
+            int v = random.nextInt(n);
+            if (random.nextInt(100) < 55) {
+                dc.addEdge(u, v);
+                count[u][v]++;
+                if (u != v) count[v][u]++;
+            } else if (count[u][v] > 0) {
+                dc.removeEdge(u, v);
+                count[u][v]--;
+                if (u != v) count[v][u]--;
+            }
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            ok &= dc.connected(a, b) == bfs(count, a, b);
+        }
+        System.out.println("Random operations match: " + ok); // Expected: true
+    }
+
+    private static boolean bfs(int[][] count, int from, int to) {
+        boolean[] seen = new boolean[count.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        seen[from] = true;
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            if (u == to) return true;
+            for (int v = 0; v < count.length; v++) {
+                if (count[u][v] > 0 && !seen[v]) {
+                    seen[v] = true;
+                    queue.add(v);
+                }
+            }
+        }
+        return false;
+    }
+}
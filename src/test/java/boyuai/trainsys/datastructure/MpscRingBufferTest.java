@@ -0,0 +1,57 @@
+package boyuai.trainsys.datastructure;
+
+// 测试：MpscRingBuffer 的容量、先进先出与多生产者并发放入
+public class MpscRingBufferTest {
+    public static void main(String[] args) throws InterruptedException {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(3);
+        System.out.println("Capacity: " + ring.capacity()); // Expected: 4
+        System.out.println("Poll empty: " + ring.poll()); // Expected: null
+        for (int i = 1; i <= 4; i++) {
+            ring.offer(i);
+        }
+        System.out.println("Offer when full: " + ring.offer(5)); // Expected: false
+        System.out.println("Poll: " + ring.poll()); // Expected: 1
+        System.out.println("Offer after poll: " + ring.offer(5)); // Expected: true
+        StringBuilder sb = new StringBuilder();
+        ring.drain(e -> sb.append(e).append(' '), 10);
+        System.out.println("Drain: " + sb); // Expected: 2 3 4 5
+        System.out.println("Empty: " + ring.isEmpty()); // Expected: true
+
+        // 4 个生产者各放入 100000 个元素，缓冲区满时重试；消费者检查每个生产者的元素保持先后顺序
+        int producers = 4;
+        int perProducer = 100000;
+        MpscRingBuffer<Long> shared = new MpscRingBuffer<>(1024);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long id = p;
+            threads[p] = new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!shared.offer(id << 32 | i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        long[] next = new long[producers];
+        long received = 0;
+        boolean ordered = true;
+        while (received < (long) producers * perProducer) {
+            Long e = shared.poll();
+            if (e == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int p = (int) (e >>> 32);
+            ordered &= (e & 0xffffffffL) == next[p];
+            next[p]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("Received: " + received); // Expected: 400000
+        System.out.println("Per-producer order kept: " + ordered); // Expected: true
+        System.out.println("Empty at end: " + shared.isEmpty()); // Expected: true
+    }
+}
@@ -0,0 +1,141 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.core.OrderOutcome;
+import boyuai.trainsys.core.OrderPipeline;
+import boyuai.trainsys.core.TrainScheduler;
+import boyuai.trainsys.info.PurchaseInfo;
+import boyuai.trainsys.info.TripInfo;
+import boyuai.trainsys.manager.SchedulerManager;
+import boyuai.trainsys.manager.TicketManager;
+import boyuai.trainsys.manager.TripManager;
+import boyuai.trainsys.util.Date;
+import boyuai.trainsys.util.FixedString;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+import boyuai.trainsys.util.Types.UserID;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 测试：OrderPipeline 出错时的撤销：某一组出错只让该组失败并退还已扣的余票，提交出错时整批撤销
+public class OrderPipelineTest {
+
+    private static final CountDownLatch gate = new CountDownLatch(1);
+    private static volatile boolean failSync;
+
+    // 列车 W 的第一次扣减等待 gate，使之后放入的请求落在同一批
+    private static class GatedTicketManager extends TicketManager {
+        GatedTicketManager(String filename) {
+            super(filename);
+        }
+
+        @Override
+        public boolean[] applySeatDeltas(TrainScheduler scheduler, Date date, int[] from, int[] to, int[] counts) {
+            if (scheduler.getTrainID().toString().equals("W")) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.applySeatDeltas(scheduler, date, from, to, counts);
+        }
+    }
+
+    // 查询用户 2 的行程时出错；failSync 为true时提交日志出错
+    private static class FailingTripManager extends TripManager {
+        FailingTripManager(String filename) {
+            super(filename);
+        }
+
+        @Override
+        public SeqList<TripInfo> queryTrip(long userID) {
+            if (userID == 2) {
+                throw new IllegalStateException("trip store unavailable");
+            }
+            return super.queryTrip(userID);
+        }
+
+        @Override
+        public void sync() {
+            if (failSync) {
+                throw new IllegalStateException("log commit failed");
+            }
+            super.sync();
+        }
+    }
+
+    private static String outcome(CompletableFuture<OrderOutcome> future) {
+        try {
+            return future.join().name();
+        } catch (RuntimeException e) {
+            return "FAILED";
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("pipeline").toFile();
+        SchedulerManager schedulers = new SchedulerManager(new File(dir, "schedulers").getPath());
+        TicketManager tickets = new GatedTicketManager(new File(dir, "tickets").getPath());
+        FailingTripManager trips = new FailingTripManager(new File(dir, "trips").getPath());
+        Date date = new Date("05-01");
+        for (String train : new String[] {"W", "G", "B"}) {
+            schedulers.addScheduler(new FixedString(train), 10, 2, new int[] {1, 2}, new int[] {30}, new int[] {50});
+            tickets.releaseTicket(schedulers.getScheduler(new FixedString(train)), date);
+        }
+        OrderPipeline pipeline = new OrderPipeline(schedulers, tickets, trips, 1, 64, 64);
+
+        // 第一批只有 W，处理线程停在 W 上；随后的 G、B、G 落在同一批
+        CompletableFuture<OrderOutcome> w = pipeline.submit(order(1, "W", 1));
+        Thread.sleep(50);
+        CompletableFuture<OrderOutcome> g1 = pipeline.submit(order(1, "G", 1));
+        CompletableFuture<OrderOutcome> b = pipeline.submit(order(2, "B", 1));
+        CompletableFuture<OrderOutcome> bRefund = pipeline.submit(order(2, "B", -2));
+        CompletableFuture<OrderOutcome> g3 = pipeline.submit(order(3, "G", 1));
+        gate.countDown();
+        System.out.println("W: " + outcome(w)); // Expected: ORDERED
+        System.out.println("G for user 1: " + outcome(g1)); // Expected: ORDERED
+        // B 组的购票已扣减余票，组内退两张票时本批没有相同的行程、查询已写入的行程时出错：整组失败，余票退还
+        System.out.println("B order: " + outcome(b)); // Expected: FAILED
+        System.out.println("B refund: " + outcome(bRefund)); // Expected: FAILED
+        System.out.println("G for user 3: " + outcome(g3)); // Expected: ORDERED
+        System.out.println("B remaining: " + remaining(tickets, schedulers, "B", date)); // Expected: 10
+        System.out.println("G remaining: " + remaining(tickets, schedulers, "G", date)); // Expected: 8
+        System.out.println("Trips of user 1, 2, 3: " + count(trips, 1) + " " + count(trips, 2) + " " + count(trips, 3)); // Expected: 2 0 1
+
+        // 提交日志出错：整批（退票与购票）撤销，已写入的行程也恢复原样
+        failSync = true;
+        CompletableFuture<OrderOutcome> refund = pipeline.submit(order(1, "G", -1));
+        CompletableFuture<OrderOutcome> g4 = pipeline.submit(order(4, "G", 2));
+        System.out.println("Refund when commit fails: " + outcome(refund)); // Expected: FAILED
+        System.out.println("Order when commit fails: " + outcome(g4)); // Expected: FAILED
+        failSync = false;
+        System.out.println("G remaining: " + remaining(tickets, schedulers, "G", date)); // Expected: 8
+        System.out.println("Trips of user 1, 4: " + count(trips, 1) + " " + count(trips, 4)); // Expected: 2 0
+
+        System.out.println("Refund afterwards: " + outcome(pipeline.submit(order(1, "G", -1)))); // Expected: REFUNDED
+        System.out.println("G remaining: " + remaining(tickets, schedulers, "G", date)); // Expected: 9
+        pipeline.close();
+        tickets.close();
+        trips.close();
+        schedulers.close();
+    }
+
+    private static PurchaseInfo order(long userID, String train, int type) {
+        return new PurchaseInfo(new UserID(userID), new TrainID(train), new Date("05-01"), new StationID(1), type);
+    }
+
+    private static int remaining(TicketManager tickets, SchedulerManager schedulers, String train, Date date) {
+        return tickets.querySeat(schedulers.getScheduler(new FixedString(train)), date, 0, 1);
+    }
+
+    private static int count(TripManager trips, long userID) {
+        AtomicInteger count = new AtomicInteger();
+        trips.forEachTrip(userID, userID, (user, trip) -> count.incrementAndGet());
+        return count.get();
+    }
+}
@@ -34,5 +34,26 @@ public class QueueTest {
         System.out.println("出队元素：" + pq.deQueue());
         System.out.println("出队元素：" + pq.deQueue());
         System.out.println("队列是否为空：" + pq.isEmpty());
+        System.out.println();
+        /**
+         * 测试IndexedPriorityQueue
+         */
+        IndexedPriorityQueue ipq = new IndexedPriorityQueue(5);
+        System.out.println("IndexedPriorityQueue测试：");
+        ipq.offer(0, 30);
+        ipq.offer(1, 10);
+        ipq.offer(2, 20);
+        ipq.offer(3, 40);
+        System.out.println("降低优先级：" + ipq.offer(3, 5));   // true
+        System.out.println("提高优先级：" + ipq.offer(1, 50));  // false，保持10
+        System.out.println("出队元素：" + ipq.deQueue());  // 3
+        System.out.println("出队元素：" + ipq.deQueue());  // 1
+        System.out.println("下标1是否在队列中：" + ipq.contains(1));  // false
+        ipq.ensureCapacity(10);
+        ipq.offer(9, 1);
+        System.out.println("出队元素：" + ipq.deQueue());  // 9
+        System.out.println("出队元素：" + ipq.deQueue());  // 2
+        System.out.println("出队元素：" + ipq.deQueue());  // 0
+        System.out.println("队列是否为空：" + ipq.isEmpty());
     }
 }
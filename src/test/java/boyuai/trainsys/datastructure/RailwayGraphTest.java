@@ -0,0 +1,363 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.core.ConnectionScan;
+import boyuai.trainsys.core.ContractionHierarchy;
+import boyuai.trainsys.core.DistanceTable;
+import boyuai.trainsys.core.RailwayGraph;
+import boyuai.trainsys.core.RailwaySnapshot;
+import boyuai.trainsys.core.Raptor;
+import boyuai.trainsys.core.RouteEnumerator;
+import boyuai.trainsys.core.SearchMode;
+import boyuai.trainsys.core.TrainScheduler;
+import boyuai.trainsys.info.JourneyInfo;
+import boyuai.trainsys.info.PathInfo;
+import boyuai.trainsys.util.Time;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// 测试：运行图上的各种查询
+// 1. 随机图上各搜索方式、收缩层次、距离表与朴素 Dijkstra 对照，前 k 条最短路与穷举简单路径对照
+// 2. 连接扫描与 RAPTOR 在小时刻表上的最早到达与 Pareto 方案
+// 3. 路线枚举的条数、边数、代价上限与超时
+public class RailwayGraphTest {
+
+    private static final long INF = Long.MAX_VALUE;
+
+    public static void main(String[] args) {
+        randomGraphs();
+        kShortestPaths();
+        timetable();
+        routeEnumeration();
+    }
+
+    /**
+     * 随机图：每条边属于一趟车次，两站之间可以有多趟车次（平行边），边是有向的
+     */
+    private static RailwayGraph randomGraph(Random random, int n, int m, long[][][] minWeight) {
+        RailwayGraph graph = new RailwayGraph();
+        for (long[][] metric : minWeight) {
+            for (long[] row : metric) {
+                Arrays.fill(row, INF);
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n - 1);
+            if (to >= from) {
+                to++;
+            }
+            int duration = 1 + random.nextInt(100);
+            int price = 1 + random.nextInt(100);
+            graph.addRoute(from, to, duration, price, new TrainID("T" + random.nextInt(m / 3 + 1)));
+            minWeight[0][from][to] = Math.min(minWeight[0][from][to], price);
+            minWeight[1][from][to] = Math.min(minWeight[1][from][to], duration);
+        }
+        return graph;
+    }
+
+    /**
+     * 朴素 Dijkstra（O(n^2)），作为对照
+     */
+    private static long[] reference(long[][] weight, int source) {
+        int n = weight.length;
+        long[] dist = new long[n];
+        boolean[] done = new boolean[n];
+        Arrays.fill(dist, INF);
+        dist[source] = 0;
+        for (int round = 0; round < n; round++) {
+            int u = -1;
+            for (int v = 0; v < n; v++) {
+                if (!done[v] && dist[v] != INF && (u < 0 || dist[v] < dist[u])) {
+                    u = v;
+                }
+            }
+            if (u < 0) {
+                break;
+            }
+            done[u] = true;
+            for (int v = 0; v < n; v++) {
+                if (weight[u][v] != INF && dist[u] + weight[u][v] < dist[v]) {
+                    dist[v] = dist[u] + weight[u][v];
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * 检查结果与最短距离一致，且给出的站点序列确实是一条代价为该值的路径
+     */
+    private static boolean matches(PathInfo path, int from, int to, long expected, long[][] weight) {
+        if (expected == INF) {
+            return !path.isFound();
+        }
+        if (!path.isFound() || path.getTotalCost() != expected) {
+            return false;
+        }
+        SeqList<Integer> stations = path.getStations();
+        if (stations.visit(0) != from || stations.visit(stations.length() - 1) != to) {
+            return false;
+        }
+        long cost = 0;
+        for (int i = 0; i + 1 < stations.length(); i++) {
+            long w = weight[stations.visit(i)][stations.visit(i + 1)];
+            if (w == INF) {
+                return false;
+            }
+            cost += w;
+        }
+        return cost == expected;
+    }
+
+    private static void randomGraphs() {
+        Random random = new Random(42);
+        int graphs = 10;
+        int n = 60;
+        int queries = 0;
+        int[] mismatches = new int[SearchMode.values().length];
+        int hierarchyMismatches = 0;
+        int tableMismatches = 0;
+        int cachedMismatches = 0;
+        for (int g = 0; g < graphs; g++) {
+            long[][][] weight = new long[2][n][n];
+            RailwayGraph graph = randomGraph(random, n, 3 * n, weight);
+            RailwaySnapshot snapshot = graph.snapshot();
+            ContractionHierarchy[] hierarchies = {
+                    ContractionHierarchy.build(snapshot, 0), ContractionHierarchy.build(snapshot, 1)};
+            DistanceTable table = DistanceTable.build(snapshot, ForkJoinPool.commonPool(), null);
+            for (int type = 0; type < 2; type++) {
+                for (int from = 0; from < n; from += 3) {
+                    long[] dist = reference(weight[type], from);
+                    for (int to = 0; to < n; to++) {
+                        if (to == from) {
+                            continue;
+                        }
+                        queries++;
+                        for (SearchMode mode : SearchMode.values()) {
+                            if (!matches(graph.shortestPath(from, to, type, mode), from, to, dist[to], weight[type])) {
+                                mismatches[mode.ordinal()]++;
+                            }
+                        }
+                        if (!matches(hierarchies[type].query(from, to), from, to, dist[to], weight[type])) {
+                            hierarchyMismatches++;
+                        }
+                        if (!matches(table.query(from, to, type), from, to, dist[to], weight[type])) {
+                            tableMismatches++;
+                        }
+                        if (!matches(graph.shortestPath(from, to, type), from, to, dist[to], weight[type])) {
+                            cachedMismatches++;
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Random queries: " + queries); // Expected: 23600
+        for (SearchMode mode : SearchMode.values()) {
+            System.out.println(mode + " mismatches: " + mismatches[mode.ordinal()]); // Expected: 0
+        }
+        System.out.println("Contraction hierarchy mismatches: " + hierarchyMismatches); // Expected: 0
+        System.out.println("Distance table mismatches: " + tableMismatches); // Expected: 0
+        System.out.println("Cached shortestPath mismatches: " + cachedMismatches); // Expected: 0
+    }
+
+    /**
+     * 穷举 from 到 to 的全部简单路径的代价（平行边取最小者），从小到大排列
+     */
+    private static List<Long> allSimplePathCosts(long[][] weight, int from, int to) {
+        List<Long> costs = new ArrayList<>();
+        boolean[] visited = new boolean[weight.length];
+        visited[from] = true;
+        enumerate(weight, from, to, 0, visited, costs);
+        Collections.sort(costs);
+        return costs;
+    }
+
+    private static void enumerate(long[][] weight, int u, int to, long cost, boolean[] visited, List<Long> costs) {
+        if (u == to) {
+            costs.add(cost);
+            return;
+        }
+        for (int v = 0; v < weight.length; v++) {
+            if (weight[u][v] != INF && !visited[v]) {
+                visited[v] = true;
+                enumerate(weight, v, to, cost + weight[u][v], visited, costs);
+                visited[v] = false;
+            }
+        }
+    }
+
+    private static void kShortestPaths() {
+        Random random = new Random(7);
+        int n = 9;
+        int k = 8;
+        int pairs = 0;
+        int costMismatches = 0;
+        int invalidPaths = 0;
+        for (int g = 0; g < 30; g++) {
+            long[][][] weight = new long[2][n][n];
+            RailwayGraph graph = randomGraph(random, n, 24, weight);
+            for (int type = 0; type < 2; type++) {
+                for (int from = 0; from < n; from++) {
+                    for (int to = 0; to < n; to++) {
+                        if (from == to) {
+                            continue;
+                        }
+                        pairs++;
+                        List<Long> expected = allSimplePathCosts(weight[type], from, to);
+                        SeqList<PathInfo> paths = graph.kShortestPaths(from, to, k, type);
+                        if (paths.length() != Math.min(k, expected.size())) {
+                            costMismatches++;
+                            continue;
+                        }
+                        List<String> seen = new ArrayList<>();
+                        for (int i = 0; i < paths.length(); i++) {
+                            PathInfo path = paths.visit(i);
+                            if (path.getTotalCost() != expected.get(i)) {
+                                costMismatches++;
+                            }
+                            // 路径须从出发站到到达站、不重复经过站点、代价正确、互不相同
+                            SeqList<Integer> stations = path.getStations();
+                            boolean[] onPath = new boolean[n];
+                            boolean valid = stations.visit(0) == from && stations.visit(stations.length() - 1) == to;
+                            long cost = 0;
+                            for (int j = 0; j < stations.length() && valid; j++) {
+                                int s = stations.visit(j);
+                                valid = !onPath[s];
+                                onPath[s] = true;
+                                if (j + 1 < stations.length()) {
+                                    long w = weight[type][s][stations.visit(j + 1)];
+                                    valid &= w != INF;
+                                    cost += w;
+                                }
+                            }
+                            valid &= cost == path.getTotalCost() && !seen.contains(stations.toString());
+                            seen.add(stations.toString());
+                            if (!valid) {
+                                invalidPaths++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("k-shortest pairs: " + pairs); // Expected: 4320
+        System.out.println("k-shortest cost mismatches: " + costMismatches); // Expected: 0
+        System.out.println("k-shortest invalid paths: " + invalidPaths); // Expected: 0
+
+        // 3^30 条路径中求前一百万条，100 毫秒后应停止并返回已确定的路径
+        RailwayGraph huge = layeredGraph(30, 3);
+        long start = System.nanoTime();
+        SeqList<PathInfo> partial = huge.kShortestPaths(0, 1 + 30 * 3, 1_000_000, 0, 100);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("k-shortest stopped early: " + (partial.length() > 0 && partial.length() < 1_000_000)); // Expected: true
+        System.out.println("k-shortest stopped within 2 s: " + (elapsedMs < 2000)); // Expected: true
+    }
+
+    private static TrainScheduler train(String id, int startTime, int[] stations, int[] duration, int[] price) {
+        TrainScheduler scheduler = new TrainScheduler();
+        scheduler.setTrainID(new TrainID(id));
+        for (int station : stations) {
+            scheduler.addStation(new StationID(station));
+        }
+        scheduler.setDuration(duration);
+        scheduler.setPrice(price);
+        scheduler.setSeatNumber(100);
+        scheduler.setStartTime(startTime);
+        return scheduler;
+    }
+
+    private static void timetable() {
+        // A：1 -> 2 -> 3，08:00 发车，每段 60 分钟；B：2 -> 3，09:10 发车，20 分钟；
+        // C：3 -> 4，23:30 发车，60 分钟（跨过午夜）
+        SeqList<TrainScheduler> schedulers = new SeqList<>();
+        schedulers.pushBack(train("A", 8 * 60, new int[] {1, 2, 3}, new int[] {60, 60}, new int[] {100, 100}));
+        schedulers.pushBack(train("B", 9 * 60 + 10, new int[] {2, 3}, new int[] {20}, new int[] {150}));
+        schedulers.pushBack(train("C", 23 * 60 + 30, new int[] {3, 4}, new int[] {60}, new int[] {50}));
+
+        ConnectionScan scan = new ConnectionScan(schedulers);
+        JourneyInfo journey = scan.earliestArrival(1, 3, new Time(7, 0, 5, 1));
+        System.out.println("CSA 1 -> 3 after 07:00: " + journey.getArrivalTime() + ", legs " + journey.getLegs().length()); // Expected: 09:30 05-01, legs 2
+        journey = scan.earliestArrival(1, 3, new Time(8, 30, 5, 1));
+        System.out.println("CSA 1 -> 3 after 08:30: " + journey.getArrivalTime()); // Expected: 09:30 05-02
+        journey = scan.earliestArrival(1, 4, new Time(7, 0, 5, 1));
+        System.out.println("CSA 1 -> 4 after 07:00: " + journey.getArrivalTime()); // Expected: 00:30 05-02
+        System.out.println("CSA 4 -> 1 found: " + scan.earliestArrival(4, 1, new Time(7, 0, 5, 1)).isFound()); // Expected: false
+
+        // Pareto 方案：换乘到 B 更早到达但更贵；坐 A 直达更晚、更便宜、不换乘
+        Raptor raptor = new Raptor(schedulers);
+        SeqList<JourneyInfo> journeys = raptor.paretoJourneys(1, 3, new Time(7, 0, 5, 1));
+        System.out.println("RAPTOR 1 -> 3 journeys: " + journeys.length()); // Expected: 2
+        for (int i = 0; i < journeys.length(); i++) {
+            JourneyInfo j = journeys.visit(i);
+            // Expected: 09:30 05-01, price 250, transfers 1
+            // Expected: 10:00 05-01, price 200, transfers 0
+            System.out.println("  " + j.getArrivalTime() + ", price " + j.getPrice() + ", transfers " + j.getTransfers());
+        }
+        System.out.println("RAPTOR 4 -> 1 journeys: " + raptor.paretoJourneys(4, 1, new Time(7, 0, 5, 1)).length()); // Expected: 0
+    }
+
+    /**
+     * 分层图：出发站0，之后 layers 层每层 width 个站点，相邻两层之间全连接，最后一层都连到终点；
+     * 每条边的代价为1，简单路径共 width^layers 条，每条 layers + 1 条边
+     */
+    private static RailwayGraph layeredGraph(int layers, int width) {
+        RailwayGraph graph = new RailwayGraph();
+        TrainID train = new TrainID("L");
+        int sink = 1 + layers * width;
+        for (int j = 0; j < width; j++) {
+            graph.addRoute(0, 1 + j, 1, 1, train);
+            graph.addRoute(1 + (layers - 1) * width + j, sink, 1, 1, train);
+        }
+        for (int i = 0; i + 1 < layers; i++) {
+            for (int a = 0; a < width; a++) {
+                for (int b = 0; b < width; b++) {
+                    graph.addRoute(1 + i * width + a, 1 + (i + 1) * width + b, 1, 1, train);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static int drain(RouteEnumerator routes, int maxHops) {
+        int count = 0;
+        while (routes.hasNext()) {
+            if (routes.next().getStations().length() - 1 > maxHops) {
+                return -1;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static void routeEnumeration() {
+        RailwayGraph graph = layeredGraph(12, 2);
+        int sink = 1 + 12 * 2;
+        RouteEnumerator routes = graph.routes(0, sink, 0, 16, 10000, Long.MAX_VALUE, 10_000);
+        System.out.println("All routes: " + drain(routes, 16) + ", truncated " + routes.isTruncated()); // Expected: 4096, truncated false
+        routes = graph.routes(0, sink, 0, 16, 100, Long.MAX_VALUE, 10_000);
+        System.out.println("Limited to 100: " + drain(routes, 16) + ", truncated " + routes.isTruncated()); // Expected: 100, truncated true
+        routes = graph.routes(0, sink, 0, 12, 10000, Long.MAX_VALUE, 10_000);
+        System.out.println("At most 12 hops: " + drain(routes, 12) + ", truncated " + routes.isTruncated()); // Expected: 0, truncated false
+        routes = graph.routes(0, sink, 0, 16, 10000, 13, 10_000);
+        System.out.println("Cost at most 13: " + drain(routes, 16)); // Expected: 4096
+        routes = graph.routes(0, sink, 0, 16, 10000, 12, 10_000);
+        System.out.println("Cost at most 12: " + drain(routes, 16)); // Expected: 0
+
+        // 3^30 条路径不可能列完，100 毫秒后应停止并标记为截断
+        RailwayGraph huge = layeredGraph(30, 3);
+        long start = System.nanoTime();
+        routes = huge.routes(0, 1 + 30 * 3, 0, 40, Integer.MAX_VALUE, Long.MAX_VALUE, 100);
+        int found = drain(routes, 40);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Timed out: " + routes.isTruncated()); // Expected: true
+        System.out.println("Found some before timeout: " + (found > 0)); // Expected: true
+        System.out.println("Stopped within 2 s: " + (elapsedMs < 2000)); // Expected: true
+    }
+}
@@ -0,0 +1,61 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.Random;
+
+// 测试：SeatBitmap 的按座位分配（与逐座位逐区间段的朴素数组对照）
+public class SeatBitmapTest {
+    public static void main(String[] args) {
+        SeatBitmap map = new SeatBitmap(2, 2);
+        System.out.println("Allocate [0, 0]: " + map.allocate(0, 0)); // Expected: 0
+        System.out.println("Allocate [1, 1]: " + map.allocate(1, 1)); // Expected: 0
+        System.out.println("Free on [0, 1]: " + map.countFree(0, 1)); // Expected: 1
+        System.out.println("Allocate [0, 1]: " + map.allocate(0, 1)); // Expected: 1
+        System.out.println("Allocate [0, 1] when full: " + map.allocate(0, 1)); // Expected: -1
+        map.release(0, 1, 1);
+        System.out.println("Seat 0 free on [1, 1]: " + map.isFree(0, 1, 1)); // Expected: true
+
+        // 座位数跨越多个64位字
+        map = new SeatBitmap(130, 29);
+        for (int i = 0; i < 129; i++) {
+            map.allocate(3, 10);
+        }
+        System.out.println("Last seat: " + map.allocate(0, 28)); // Expected: 129
+        System.out.println("Free on [0, 2]: " + map.countFree(0, 2)); // Expected: 129
+        System.out.println("Size in bytes: " + map.sizeInBytes()); // Expected: 696
+
+        // 随机操作与朴素数组对照
+        Random random = new Random(7);
+        int seats = 100;
+        int segments = 12;
+        map = new SeatBitmap(seats, segments);
+        boolean[][] naive = new boolean[seats][segments];
+        boolean ok = true;
+        for (int round = 0; round < 20000; round++) {
+            int from = random.nextInt(segments);
+            int to = from + random.nextInt(segments - from);
+            int expectedSeat = -1;
+            int expectedFree = 0;
+            for (int seat = seats - 1; seat >= 0; seat--) {
+                boolean free = true;
+                for (int k = from; k <= to; k++) free &= !naive[seat][k];
+                if (free) {
+                    expectedSeat = seat;
+                    expectedFree++;
+                }
+            }
+            ok &= map.countFree(from, to) == expectedFree;
+            if (random.nextInt(3) > 0) {
+                int seat = map.allocate(from, to);
+                ok &= seat == expectedSeat;
+                if (seat >= 0) {
+                    for (int k = from; k <= to; k++) naive[seat][k] = true;
+                }
+            } else {
+                int seat = random.nextInt(seats);
+                map.release(seat, from, to);
+                for (int k = from; k <= to; k++) naive[seat][k] = false;
+            }
+        }
+        System.out.println("Random operations match: " + ok); // Expected: true
+    }
+}
@@ -0,0 +1,86 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.core.TrainScheduler;
+import boyuai.trainsys.manager.TicketManager;
+import boyuai.trainsys.util.Date;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 性能测试：多个线程同时在同一（列车，日期）上无锁预订，统计每秒的预订尝试次数，并检查没有超售
+public class SeatCountersBenchmark {
+    private static final int THREADS = 8;
+    private static final int ATTEMPTS_PER_THREAD = 1_000_000;
+    private static final int SEATS = 100_000;
+    private static final int SEGMENTS = 4;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("seat-bench").toFile();
+        TicketManager manager = new TicketManager(new File(dir, "tickets").getPath());
+        TrainScheduler scheduler = new TrainScheduler();
+        scheduler.setTrainID(new TrainID("H1"));
+        for (int station = 1; station <= SEGMENTS + 1; station++) {
+            scheduler.addStation(new StationID(station));
+        }
+        scheduler.setDuration(new int[] {10, 10, 10, 10});
+        scheduler.setPrice(new int[] {1, 1, 1, 1});
+        scheduler.setSeatNumber(SEATS);
+        Date date = new Date("06-01");
+        manager.releaseTicket(scheduler, date);
+
+        // 各线程预订不同的区间，统计每个区间段被成功预订的次数
+        AtomicLong[] sold = new AtomicLong[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            sold[i] = new AtomicLong();
+        }
+        AtomicLong reserved = new AtomicLong();
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                long[] local = new long[SEGMENTS];
+                long count = 0;
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    int from = (id + i) % SEGMENTS;
+                    int to = from + 1 + i % (SEGMENTS - from);
+                    if (reserve(manager, scheduler, date, from, to, 1)) {
+                        count++;
+                        for (int s = from; s < to; s++) {
+                            local[s]++;
+                        }
+                    }
+                }
+                reserved.addAndGet(count);
+                for (int s = 0; s < SEGMENTS; s++) {
+                    sold[s].addAndGet(local[s]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        boolean consistent = true;
+        for (int s = 0; s < SEGMENTS; s++) {
+            consistent &= manager.querySeat(scheduler, date, s, s + 1) == SEATS - sold[s].get();
+        }
+        long attempts = (long) THREADS * ATTEMPTS_PER_THREAD;
+        System.out.printf("%d threads: %d attempts in %.2f s (%.1f M/s), %d reserved%n",
+                THREADS, attempts, seconds, attempts / seconds / 1e6, reserved.get());
+        System.out.println("Remaining matches sold: " + consistent);
+        manager.close();
+    }
+
+    // 经由订单流水线使用的批量接口预订 count 张票
+    private static boolean reserve(TicketManager manager, TrainScheduler scheduler, Date date, int from, int to, int count) {
+        boolean[] ok = manager.applySeatDeltas(scheduler, date, new int[] {from}, new int[] {to}, new int[] {count});
+        return ok != null && ok[0];
+    }
+}
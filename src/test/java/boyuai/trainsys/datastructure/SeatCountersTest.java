@@ -0,0 +1,119 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// 测试：SeatCounters 的区间扣减、回滚、多线程并发扣减不超售，以及与停售并发时的回滚
+public class SeatCountersTest {
+    public static void main(String[] args) throws InterruptedException {
+        SeatCounters counters = new SeatCounters(new int[] {5, 3, 8, 6});
+        System.out.println("Min [0, 3]: " + counters.queryMin(0, 3)); // Expected: 3
+        System.out.println("Reserve 4 on [0, 2]: " + counters.tryReserve(0, 2, 4)); // Expected: false
+        System.out.println("Rolled back: " + counters.get(0) + " " + counters.get(1) + " " + counters.get(2)); // Expected: 5 3 8
+        System.out.println("Reserve 2 on [2, 3]: " + counters.tryReserve(2, 3, 2)); // Expected: true
+        System.out.println("After reserve: " + counters.get(2) + " " + counters.get(3)); // Expected: 6 4
+        counters.add(1, 3, 1);
+        System.out.println("After refund: " + counters.queryMin(1, 3)); // Expected: 4
+
+        boolean rejected = false;
+        try {
+            counters.tryReserve(2, 4, 1);
+        } catch (IndexOutOfBoundsException e) {
+            rejected = true;
+        }
+        System.out.println("Out of range rejected: " + rejected); // Expected: true
+
+        // 8 个线程在 20 个区间段上随机预订并偶尔退票，结束后每段的余票应等于初值减去成功预订、加上退票
+        int segments = 20;
+        int initial = 1000;
+        int[] values = new int[segments];
+        Arrays.fill(values, initial);
+        SeatCounters shared = new SeatCounters(values);
+        AtomicIntegerArray sold = new AtomicIntegerArray(segments);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int round = 0; round < 50000; round++) {
+                    int from = random.nextInt(segments);
+                    int to = from + random.nextInt(Math.min(5, segments - from));
+                    int count = 1 + random.nextInt(2);
+                    if (shared.tryReserve(from, to, count)) {
+                        for (int i = from; i <= to; i++) {
+                            sold.getAndAdd(i, count);
+                        }
+                        if (random.nextInt(4) == 0) {
+                            shared.add(from, to, count);
+                            for (int i = from; i <= to; i++) {
+                                sold.getAndAdd(i, -count);
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean consistent = true;
+        boolean neverNegative = true;
+        for (int i = 0; i < segments; i++) {
+            consistent &= shared.get(i) == initial - sold.get(i);
+            neverNegative &= shared.get(i) >= 0;
+        }
+        System.out.println("Counts consistent: " + consistent); // Expected: true
+        System.out.println("Not oversold: " + neverNegative); // Expected: true
+        System.out.println("Sold out somewhere: " + (shared.queryMin(0, segments - 1) < 3)); // Expected: true
+
+        // 停售之后扣减与退还都失败
+        SeatCounters closing = new SeatCounters(new int[] {10, 10});
+        closing.close();
+        System.out.println("Reserve after close: " + closing.tryReserve(0, 1, 1)); // Expected: false
+        System.out.println("Refund after close: " + closing.add(0, 1, 1)); // Expected: false
+        System.out.println("Unchanged after close: " + closing.get(0) + " " + closing.get(1)); // Expected: 10 10
+
+        // 4 个线程持续预订，主线程中途停售：开始于停售之后的预订都失败，回滚后的余票与成功的预订数一致
+        SeatCounters racing = new SeatCounters(new int[] {1_000_000, 1_000_000, 1_000_000});
+        AtomicIntegerArray reserved = new AtomicIntegerArray(4);
+        AtomicIntegerArray lateSuccess = new AtomicIntegerArray(4);
+        Thread[] reservers = new Thread[4];
+        for (int t = 0; t < reservers.length; t++) {
+            int id = t;
+            reservers[t] = new Thread(() -> {
+                while (true) {
+                    boolean closedBefore = racing.isClosed();
+                    boolean ok = racing.tryReserve(0, 2, 1);
+                    if (ok) {
+                        reserved.incrementAndGet(id);
+                        if (closedBefore) {
+                            lateSuccess.incrementAndGet(id);
+                        }
+                    } else if (closedBefore) {
+                        return;
+                    }
+                }
+            });
+            reservers[t].start();
+        }
+        Thread.sleep(50);
+        racing.close();
+        for (Thread thread : reservers) {
+            thread.join();
+        }
+        int totalReserved = 0;
+        int totalLate = 0;
+        for (int t = 0; t < reservers.length; t++) {
+            totalReserved += reserved.get(t);
+            totalLate += lateSuccess.get(t);
+        }
+        boolean balanced = true;
+        for (int i = 0; i < 3; i++) {
+            balanced &= racing.get(i) == 1_000_000 - totalReserved;
+        }
+        System.out.println("Reserved after close: " + totalLate); // Expected: 0
+        System.out.println("Counts balanced after close: " + balanced); // Expected: true
+    }
+}
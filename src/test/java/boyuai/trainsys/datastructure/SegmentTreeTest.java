@@ -0,0 +1,66 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.Random;
+
+// 测试：SegmentTree 的区间加、区间最小值与整体扣减（与朴素数组对照）
+public class SegmentTreeTest {
+    public static void main(String[] args) {
+        SegmentTree tree = new SegmentTree(new int[] {5, 3, 8, 6}, 4);
+        System.out.println("Min [0, 3]: " + tree.queryMin(0, 3)); // Expected: 3
+        System.out.println("Min [2, 3]: " + tree.queryMin(2, 3)); // Expected: 6
+
+        System.out.println("Reserve 4 on [0, 2]: " + tree.tryReserve(0, 2, 4)); // Expected: false
+        System.out.println("Unchanged: " + tree.get(0) + " " + tree.get(1) + " " + tree.get(2)); // Expected: 5 3 8
+        System.out.println("Reserve 2 on [2, 3]: " + tree.tryReserve(2, 3, 2)); // Expected: true
+        System.out.println("After reserve: " + tree.get(2) + " " + tree.get(3)); // Expected: 6 4
+        tree.add(1, 3, 1);
+        System.out.println("After refund: " + tree.queryMin(1, 3)); // Expected: 4
+
+        boolean rejected = false;
+        try {
+            tree.queryMin(2, 4);
+        } catch (IndexOutOfBoundsException e) {
+            rejected = true;
+        }
+        System.out.println("Out of range rejected: " + rejected); // Expected: true
+
+        // 随机操作与朴素数组对照
+        Random random = new Random(42);
+        int n = 37;
+        int[] naive = new int[n];
+        for (int i = 0; i < n; i++) {
+            naive[i] = random.nextInt(100);
+        }
+        tree = new SegmentTree(naive, n);
+        boolean ok = true;
+        for (int round = 0; round < 20000; round++) {
+            int from = random.nextInt(n);
+            int to = from + random.nextInt(n - from);
+            int expected = Integer.MAX_VALUE;
+            for (int i = from; i <= to; i++) {
+                expected = Math.min(expected, naive[i]);
+            }
+            switch (random.nextInt(3)) {
+                case 0:
+                    ok &= tree.queryMin(from, to) == expected;
+                    break;
+                case 1:
+                    int delta = random.nextInt(21) - 10;
+                    tree.add(from, to, delta);
+                    for (int i = from; i <= to; i++) naive[i] += delta;
+                    break;
+                default:
+                    int count = random.nextInt(5);
+                    boolean reserved = tree.tryReserve(from, to, count);
+                    ok &= reserved == (expected >= count);
+                    if (reserved) {
+                        for (int i = from; i <= to; i++) naive[i] -= count;
+                    }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            ok &= tree.get(i) == naive[i];
+        }
+        System.out.println("Random operations match: " + ok); // Expected: true
+    }
+}
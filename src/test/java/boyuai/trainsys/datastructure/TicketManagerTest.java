@@ -0,0 +1,95 @@
+package boyuai.trainsys.datastructure;
+
+import boyuai.trainsys.core.TrainScheduler;
+import boyuai.trainsys.manager.TicketManager;
+import boyuai.trainsys.util.Date;
+import boyuai.trainsys.util.FixedString;
+import boyuai.trainsys.util.Types.StationID;
+import boyuai.trainsys.util.Types.TrainID;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 测试：TicketManager 的无锁预订与停售并发：停售之后开始的预订都失败，写回不会复活已删除的车票，重新开售后余票完整
+public class TicketManagerTest {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("tickets").toFile();
+        TicketManager manager = new TicketManager(new File(dir, "tickets").getPath());
+        TrainScheduler scheduler = new TrainScheduler();
+        scheduler.setTrainID(new TrainID("G1"));
+        for (int station = 1; station <= 4; station++) {
+            scheduler.addStation(new StationID(station));
+        }
+        scheduler.setDuration(new int[] {10, 10, 10});
+        scheduler.setPrice(new int[] {5, 5, 5});
+        scheduler.setSeatNumber(100000);
+        FixedString trainID = new FixedString("G1");
+
+        Date date = new Date("05-01");
+        manager.releaseTicket(scheduler, date);
+        System.out.println("Reserve 2 on [0, 3): " + reserve(manager, scheduler, date, 0, 3, 2)); // Expected: true
+        System.out.println("Remaining: " + manager.querySeat(scheduler, date, 0, 3)); // Expected: 99998
+        manager.sync();
+        System.out.println("Written back: " + manager.querySeat(trainID, date, 1)); // Expected: 99998
+
+        // 20 轮：每轮开售，4 个线程持续预订、1 个线程持续写回，主线程中途停售
+        int rounds = 20;
+        AtomicInteger lateSuccess = new AtomicInteger();
+        boolean noneResurrected = true;
+        boolean fullAfterRelease = true;
+        for (int round = 0; round < rounds; round++) {
+            Date day = new Date("06-01").addDays(round);
+            manager.releaseTicket(scheduler, day);
+            manager.querySeat(scheduler, day, 0, 3);  // 构建内存余票
+            AtomicBoolean expired = new AtomicBoolean();
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread[] threads = new Thread[5];
+            for (int t = 0; t < 4; t++) {
+                int from = t % 3;
+                threads[t] = new Thread(() -> {
+                    while (!stop.get()) {
+                        boolean after = expired.get();
+                        if (reserve(manager, scheduler, day, from, from + 1, 1) && after) {
+                            lateSuccess.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            threads[4] = new Thread(() -> {
+                while (!stop.get()) {
+                    manager.sync();
+                }
+            });
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            Thread.sleep(10);
+            manager.expireTicket(trainID, day);
+            expired.set(true);
+            Thread.sleep(5);
+            stop.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            manager.sync();
+            for (int station = 1; station <= 3; station++) {
+                noneResurrected &= manager.querySeat(trainID, day, station) == -1;
+            }
+            manager.releaseTicket(scheduler, day);
+            fullAfterRelease &= manager.querySeat(scheduler, day, 0, 3) == 100000;
+        }
+        System.out.println("Reserved after expiry: " + lateSuccess.get()); // Expected: 0
+        System.out.println("No expired ticket written back: " + noneResurrected); // Expected: true
+        System.out.println("Full inventory after release: " + fullAfterRelease); // Expected: true
+        manager.close();
+    }
+
+    // 经由订单流水线使用的批量接口预订 count 张票
+    private static boolean reserve(TicketManager manager, TrainScheduler scheduler, Date date, int from, int to, int count) {
+        boolean[] ok = manager.applySeatDeltas(scheduler, date, new int[] {from}, new int[] {to}, new int[] {count});
+        return ok != null && ok[0];
+    }
+}
@@ -0,0 +1,49 @@
+package boyuai.trainsys.datastructure;
+
+import java.util.Random;
+
+// 测试：TinyLfuCache 的容量约束、计数器与抗扫描能力
+public class TinyLfuCacheTest {
+    public static void main(String[] args) {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(3);
+        System.out.println("Get missing: " + cache.get(1)); // Expected: null
+        cache.put(1, "a");
+        cache.put(2, "b");
+        System.out.println("Get 1: " + cache.get(1)); // Expected: a
+        cache.put(1, "c");
+        System.out.println("Get updated 1: " + cache.get(1)); // Expected: c
+        cache.remove(2);
+        System.out.println("Get removed 2: " + cache.get(2)); // Expected: null
+        System.out.println("Hits / misses: " + cache.getHits() + " / " + cache.getMisses()); // Expected: 2 / 2
+
+        // 条目数不超过容量
+        cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i);
+            cache.put(i, "v" + i);
+        }
+        System.out.println("Size bounded: " + (cache.size() <= 100)); // Expected: true
+        System.out.println("Evictions: " + cache.getEvictions()); // Expected: 900
+
+        // 热门条目在大量一次性访问之后仍然命中
+        cache = new TinyLfuCache<>(200);
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            for (int hot = 0; hot < 100; hot++) {
+                if (cache.get(hot) == null) cache.put(hot, "hot");
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            int key = 1000 + random.nextInt(1_000_000);
+            if (cache.get(key) == null) cache.put(key, "cold");
+        }
+        int hotHits = 0;
+        for (int hot = 0; hot < 100; hot++) {
+            if (cache.get(hot) != null) hotHits++;
+        }
+        System.out.println("Hot entries kept after scan: " + (hotHits >= 95)); // Expected: true
+
+        cache.clear();
+        System.out.println("Size after clear: " + cache.size()); // Expected: 0
+    }
+}